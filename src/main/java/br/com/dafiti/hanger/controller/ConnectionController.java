@@ -25,8 +25,10 @@ package br.com.dafiti.hanger.controller;
 
 import br.com.dafiti.hanger.exception.Message;
 import br.com.dafiti.hanger.model.Connection;
+import br.com.dafiti.hanger.service.CatalogService;
 import br.com.dafiti.hanger.service.ConnectionService;
 import java.util.List;
+import java.util.Map;
 import javax.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataIntegrityViolationException;
@@ -50,10 +52,15 @@ import org.springframework.web.bind.annotation.ResponseBody;
 public class ConnectionController {
 
     private final ConnectionService connectionService;
+    private final CatalogService catalogService;
 
     @Autowired
-    public ConnectionController(ConnectionService connectionService) {
+    public ConnectionController(
+            ConnectionService connectionService,
+            CatalogService catalogService) {
+
         this.connectionService = connectionService;
+        this.catalogService = catalogService;
     }
 
     /**
@@ -77,6 +84,7 @@ public class ConnectionController {
 
         try {
             connectionService.save(connection);
+            catalogService.evict(connection.getId());
         } catch (Exception ex) {
             model.addAttribute("errorMessage", new Message().getErrorMessage(ex));
         } finally {
@@ -140,6 +148,7 @@ public class ConnectionController {
 
         try {
             connectionService.delete(id);
+            catalogService.evict(id);
         } catch (Exception ex) {
             if (ex.getClass() == DataIntegrityViolationException.class) {
                 model.addAttribute("errorMessage", "This connection is being used. Remove the dependencies before deleting the connection!");
@@ -166,10 +175,10 @@ public class ConnectionController {
             Model model) {
 
         try {
-            List<ConnectionService.Entity> entity = connectionService.getSchemas(connection);
+            List<ConnectionService.Entity> entity = catalogService.getSchemas(connection);
 
             if (entity.isEmpty()) {
-                entity = connectionService.getCatalogs(connection);
+                entity = catalogService.getCatalogs(connection);
             }
 
             model.addAttribute("connection", connection);
@@ -192,7 +201,7 @@ public class ConnectionController {
     public List<ConnectionService.Entity> connectionSchemas(
             @PathVariable(name = "id") Connection connection) {
 
-        return connectionService.getSchemas(connection);
+        return catalogService.getSchemas(connection);
     }
 
     /**
@@ -210,7 +219,7 @@ public class ConnectionController {
             @PathVariable(name = "catalog") String catalog,
             @PathVariable(name = "schema") String schema) {
 
-        return connectionService.getTables(connection, catalog, schema);
+        return catalogService.getTables(connection, catalog, schema);
     }
 
     /**
@@ -230,7 +239,7 @@ public class ConnectionController {
             Model model) {
 
         try {
-            List<ConnectionService.Entity> tables = connectionService.getTables(connection, catalog, schema);
+            List<ConnectionService.Entity> tables = catalogService.getTables(connection, catalog, schema);
 
             model.addAttribute("connection", connection);
             model.addAttribute("catalog", catalog);
@@ -267,9 +276,9 @@ public class ConnectionController {
             model.addAttribute("catalog", catalog);
             model.addAttribute("schema", schema);
             model.addAttribute("table", table);
-            model.addAttribute("pk", connectionService.getPrimaryKey(connection, catalog, schema, table));
-            model.addAttribute("column", connectionService.getColumns(connection, catalog, schema, table));
-            model.addAttribute("indexes", connectionService.getIndexes(connection, catalog, schema, table));
+            model.addAttribute("pk", catalogService.getPrimaryKey(connection, catalog, schema, table));
+            model.addAttribute("column", catalogService.getColumns(connection, catalog, schema, table));
+            model.addAttribute("indexes", catalogService.getIndexes(connection, catalog, schema, table));
         } catch (Exception ex) {
             model.addAttribute("errorMessage", "Fail listing columns " + new Message().getErrorMessage(ex));
         }
@@ -297,9 +306,9 @@ public class ConnectionController {
 
         try {
             model.addAttribute("table", table);
-            model.addAttribute("pk", connectionService.getPrimaryKey(connection, catalog, schema, table));
-            model.addAttribute("column", connectionService.getColumns(connection, catalog, schema, table));
-            model.addAttribute("indexes", connectionService.getIndexes(connection, catalog, schema, table));
+            model.addAttribute("pk", catalogService.getPrimaryKey(connection, catalog, schema, table));
+            model.addAttribute("column", catalogService.getColumns(connection, catalog, schema, table));
+            model.addAttribute("indexes", catalogService.getIndexes(connection, catalog, schema, table));
             model.addAttribute("connection", connection);
             model.addAttribute("catalog", catalog);
             model.addAttribute("schema", schema);
@@ -353,15 +362,33 @@ public class ConnectionController {
     }
 
     /**
-     * Refresh connection cache.
+     * Refresh connection metadata.
      *
      * @param connection
+     * @param catalog Catalog, refreshes a single schema when informed.
+     * @param schema Schema, refreshes a single schema when informed.
      */
     @GetMapping(path = "/evict/{id}")
     @ResponseBody
     public void evictConnection(
+            @PathVariable(name = "id") Connection connection,
+            @RequestParam(name = "catalog", defaultValue = "") String catalog,
+            @RequestParam(name = "schema", defaultValue = "") String schema) {
+
+        catalogService.refresh(connection, catalog, schema);
+    }
+
+    /**
+     * Column names by table, for autocomplete.
+     *
+     * @param connection Connection
+     * @return Column names by qualified table name.
+     */
+    @GetMapping(path = "/{id}/hint")
+    @ResponseBody
+    public Map<String, List<String>> getHint(
             @PathVariable(name = "id") Connection connection) {
 
-        connectionService.refreshConnection(connection);
+        return catalogService.getHint(connection);
     }
 }
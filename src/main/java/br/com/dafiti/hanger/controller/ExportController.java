@@ -23,19 +23,27 @@
  */
 package br.com.dafiti.hanger.controller;
 
+import br.com.dafiti.hanger.exception.Message;
 import br.com.dafiti.hanger.model.Connection;
 import br.com.dafiti.hanger.option.ExportType;
 import br.com.dafiti.hanger.service.ExportService;
+import br.com.dafiti.hanger.service.ExportService.Spool;
 import java.io.IOException;
 import java.security.Principal;
+import java.sql.SQLException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpEntity;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
 /**
@@ -79,17 +87,113 @@ public class ExportController {
         return fileName;
     }
 
+    /**
+     * Stream a query as CSV straight to the response.
+     *
+     * @param connection Connection
+     * @param query String query of the user.
+     * @param gzip Identify if the CSV should be gzipped.
+     * @param principal Logged User.
+     * @param response HttpServletResponse
+     * @throws IOException
+     */
+    @PostMapping(path = "/query/{id}/csv")
+    public void stream(
+            @PathVariable(name = "id") Connection connection,
+            @RequestParam(name = "query") String query,
+            @RequestParam(name = "gzip", defaultValue = "false") boolean gzip,
+            Principal principal,
+            HttpServletResponse response)
+            throws IOException {
+
+        response.setContentType(gzip ? "application/gzip" : "text/csv");
+        response.setHeader(
+                "Content-disposition",
+                "attachment; filename=\"" + connection.getName().replaceAll("[^A-Za-z0-9_-]", "_") + (gzip ? ".csv.gz" : ".csv") + "\"");
+
+        try {
+            this.exportService.export(
+                    connection,
+                    query,
+                    principal,
+                    gzip,
+                    response.getOutputStream());
+        } catch (DataAccessException | SQLException ex) {
+            //Reports the error while nothing was sent yet.
+            if (!response.isCommitted()) {
+                response.reset();
+                response.sendError(
+                        HttpServletResponse.SC_BAD_REQUEST,
+                        new Message().getErrorMessage(ex));
+            }
+        }
+    }
+
+    /**
+     * Export a query to CSV in background.
+     *
+     * @param connection Connection
+     * @param query String query of the user.
+     * @param gzip Identify if the CSV should be gzipped.
+     * @param principal Logged User.
+     * @return Spooled export, or TOO_MANY_REQUESTS when the limit of running
+     * exports was reached.
+     */
+    @PostMapping(path = "/query/{id}/spool")
+    @ResponseBody
+    public ResponseEntity<Spool> spool(
+            @PathVariable(name = "id") Connection connection,
+            @RequestParam(name = "query") String query,
+            @RequestParam(name = "gzip", defaultValue = "true") boolean gzip,
+            Principal principal) {
+
+        Spool spool = this.exportService.spool(connection, query, principal, gzip);
+
+        if (spool == null) {
+            return new ResponseEntity(HttpStatus.TOO_MANY_REQUESTS);
+        }
+
+        return new ResponseEntity(spool, HttpStatus.OK);
+    }
+
+    /**
+     * Get a spooled export status.
+     *
+     * @param id Spool ID.
+     * @param principal Logged User.
+     * @return Spooled export.
+     */
+    @GetMapping(path = "/spool/{id}")
+    @ResponseBody
+    public ResponseEntity<Spool> spool(
+            @PathVariable(name = "id") String id,
+            Principal principal) {
+
+        Spool spool = this.exportService.getSpool(id, principal.getName());
+
+        if (spool == null) {
+            return new ResponseEntity(HttpStatus.NOT_FOUND);
+        }
+
+        return new ResponseEntity(spool, HttpStatus.OK);
+    }
+
     /**
      * Donwload a file.
      *
      * @param file
-     * @return
+     * @param principal Logged User.
+     * @param request HttpServletRequest
+     * @param response HttpServletResponse
      * @throws java.io.IOException
      */
-    @GetMapping(value = "/download/{file}")
-    public HttpEntity<?> dowload(
-            @PathVariable(name = "file") String file) throws IOException {
+    @GetMapping(value = "/download/{file:.+}")
+    public void dowload(
+            @PathVariable(name = "file") String file,
+            Principal principal,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
 
-        return this.exportService.download(file);
+        this.exportService.download(file, principal.getName(), request, response);
     }
 }
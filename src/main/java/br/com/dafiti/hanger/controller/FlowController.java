@@ -27,7 +27,7 @@ import br.com.dafiti.hanger.exception.Message;
 import br.com.dafiti.hanger.model.Job;
 import br.com.dafiti.hanger.model.JobDetails;
 import br.com.dafiti.hanger.service.FlowService;
-import br.com.dafiti.hanger.service.FlowService.Flow;
+import br.com.dafiti.hanger.service.FlowService.Topology;
 import br.com.dafiti.hanger.service.JobApprovalService;
 import br.com.dafiti.hanger.service.JobDetailsService;
 import br.com.dafiti.hanger.service.ServerService;
@@ -37,11 +37,13 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 
 /**
  *
@@ -88,14 +90,15 @@ public class FlowController {
             Model model) {
 
         if (job != null) {
-        	Flow flow = flowService.getJobFlow(job, false, expanded);
-        	
+            Topology topology = flowService.getTopology(job, false);
+
             model.addAttribute("job", job);
             model.addAttribute("subjectSummary", subjectDetailsService.getSummaryOf(job.getSubject()));
             model.addAttribute("warnings", flowService.getFlowWarning(job));
-            model.addAttribute("chart", flow.getConfiguration());
-            model.addAttribute("reach", flow.getReach());
-            model.addAttribute("level", flow.getLevel());
+            model.addAttribute("reverse", false);
+            model.addAttribute("expanded", expanded);
+            model.addAttribute("reach", topology.getReach());
+            model.addAttribute("level", topology.getLevel());
             model.addAttribute("approval", this.jobApprovalService.hasApproval(job, principal));
             model.addAttribute("servers", this.serverService.list());
         }
@@ -118,13 +121,14 @@ public class FlowController {
             Model model) {
 
         if (job != null) {
-        	Flow flow = flowService.getJobFlow(job, true, false);
+            Topology topology = flowService.getTopology(job, true);
 
             model.addAttribute("job", job);
             model.addAttribute("subjectSummary", subjectDetailsService.getSummaryOf(job.getSubject()));
-            model.addAttribute("chart", flow.getConfiguration());
-            model.addAttribute("reach", flow.getReach());
-            model.addAttribute("level", flow.getLevel());
+            model.addAttribute("reverse", true);
+            model.addAttribute("expanded", false);
+            model.addAttribute("reach", topology.getReach());
+            model.addAttribute("level", topology.getLevel());
             model.addAttribute("approval", this.jobApprovalService.hasApproval(job, principal));
             model.addAttribute("servers", this.serverService.list());
         }
@@ -132,6 +136,39 @@ public class FlowController {
         return "flow/display";
     }
 
+    /**
+     * Get the job flow graph with the current status of each job.
+     *
+     * @param reverse Identify if is flow or propagation
+     * @param expanded Identify if should show the flow expanded
+     * @param depth Number of levels shown before summarizing
+     * @param group Summarize jobs by depth or by subject
+     * @param expand Clusters to be expanded
+     * @param job Job
+     * @return Flow graph as JSON
+     */
+    @ResponseBody
+    @GetMapping(path = "/flow/graph/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public String graph(
+            @RequestParam(value = "reverse", required = false) boolean reverse,
+            @RequestParam(value = "expanded", required = false) boolean expanded,
+            @RequestParam(value = "depth", required = false) Integer depth,
+            @RequestParam(value = "group", required = false, defaultValue = "depth") String group,
+            @RequestParam(value = "expand", required = false) List<String> expand,
+            @PathVariable("id") Job job) {
+
+        if (job == null) {
+            return "{}";
+        }
+
+        return flowService.getJobGraph(
+                job,
+                reverse,
+                depth == null ? flowService.getDepth(flowService.getTopology(job, reverse), reverse, expanded) : depth,
+                group.equals("subject"),
+                expand == null ? new ArrayList<>() : expand).toString();
+    }
+
     /**
      * Show the job flow warning modal.
      *
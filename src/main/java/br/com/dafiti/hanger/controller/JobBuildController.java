@@ -30,14 +30,14 @@ import br.com.dafiti.hanger.model.JobBuildMetricFilter;
 import br.com.dafiti.hanger.option.Phase;
 import br.com.dafiti.hanger.service.ConfigurationService;
 import br.com.dafiti.hanger.service.JobBuildGraphService;
+import br.com.dafiti.hanger.service.JobBuildRetentionService;
 import br.com.dafiti.hanger.service.JobService;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 import java.util.stream.Collectors;
+import javax.servlet.http.HttpServletResponse;
 import org.joda.time.LocalDate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -50,7 +50,6 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.web.bind.annotation.ResponseBody;
 
 /**
  *
@@ -63,16 +62,19 @@ public class JobBuildController {
     private final JobService jobService;
     private final JobBuildGraphService jobBuildGraphService;
     private final ConfigurationService configurationService;
+    private final JobBuildRetentionService jobBuildRetentionService;
 
     @Autowired
     public JobBuildController(
             JobBuildGraphService jobBuildGraphService,
             JobService jobService,
-            ConfigurationService configurationService) {
+            ConfigurationService configurationService,
+            JobBuildRetentionService jobBuildRetentionService) {
 
         this.jobBuildGraphService = jobBuildGraphService;
         this.jobService = jobService;
         this.configurationService = configurationService;
+        this.jobBuildRetentionService = jobBuildRetentionService;
     }
 
     /**
@@ -173,40 +175,41 @@ public class JobBuildController {
     }
 
     /**
-     * Build gantt date in a DHTMLXGantt fashion.
+     * Stream the gantt data in a DHTMLXGantt fashion. Only the builds running
+     * at some moment of the filter period are sent, so the client can load a
+     * long period by slices.
      *
-     * @param filter
-     * @param model Model
-     * @return Gantt data in a DHTMLXGantt fashion.
+     * @param filter Gantt filter
+     * @param response HttpServletResponse
+     * @throws IOException
      */
-    @ResponseBody
     @PostMapping(path = "/gantt/filtered", produces = MediaType.APPLICATION_JSON_VALUE)
-    public Map<String, List> ganttFilter(
+    public void ganttFilter(
             @RequestBody JobBuildGanttFilter filter,
-            Model model) {
+            HttpServletResponse response) throws IOException {
 
-        Map<String, List> data = new HashMap<>();
-        data.put("data",
-                jobBuildGraphService.getDHTMLXGanttData(
-                        filter.getJobs(),
-                        filter.getFrom(),
-                        filter.getTo()
-                )
-        );
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
 
-        return data;
+        jobBuildGraphService.writeDHTMLXGanttData(
+                filter.getJobs(),
+                filter.getFrom(),
+                filter.getTo(),
+                response.getOutputStream());
     }
 
     /**
      * Build history modal.
      *
      * @param job Job
+     * @param archived Identify if should show the archived builds
      * @param model Model
      * @return Build history modal
      */
     @GetMapping({"/history/{id}"})
     public String history(
             @PathVariable(value = "id") Job job,
+            @RequestParam(value = "archived", defaultValue = "false") boolean archived,
             Model model) {
 
         //Identifies the retention period. 
@@ -215,6 +218,16 @@ public class JobBuildController {
                 .getValue();
 
         model.addAttribute("job", job);
+        model.addAttribute("archived", archived);
+
+        //Builds older than the retention period are read from the archive.
+        if (archived) {
+            model.addAttribute("history",
+                    jobBuildRetentionService.findArchivedHistory(job, Integer.valueOf(retentionPeriod)));
+
+            return "build/modalBuildHistory::history";
+        }
+
         model.addAttribute("history",
                 jobBuildGraphService.findBuildHistory(
                         Arrays.asList(job),
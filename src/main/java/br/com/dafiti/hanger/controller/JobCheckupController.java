@@ -25,14 +25,23 @@ package br.com.dafiti.hanger.controller;
 
 import br.com.dafiti.hanger.model.CommandLog;
 import br.com.dafiti.hanger.model.Job;
+import br.com.dafiti.hanger.model.JobCheckup;
+import br.com.dafiti.hanger.model.JobCheckupLog;
+import br.com.dafiti.hanger.service.JobActionService;
+import br.com.dafiti.hanger.service.JobActionService.ActionTask;
 import br.com.dafiti.hanger.service.JobApprovalService;
 import br.com.dafiti.hanger.service.JobCheckupLogService;
+import br.com.dafiti.hanger.service.JobCheckupService;
 import java.text.SimpleDateFormat;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.stereotype.Controller;
@@ -42,6 +51,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 
 /**
  *
@@ -53,14 +63,20 @@ public class JobCheckupController {
 
     private final JobApprovalService jobApprovalService;
     private final JobCheckupLogService jobCheckupLogService;
+    private final JobCheckupService jobCheckupService;
+    private final JobActionService jobActionService;
 
     @Autowired
     public JobCheckupController(
             JobApprovalService jobApprovalService,
-            JobCheckupLogService jobCheckupLogService) {
+            JobCheckupLogService jobCheckupLogService,
+            JobCheckupService jobCheckupService,
+            JobActionService jobActionService) {
 
         this.jobApprovalService = jobApprovalService;
         this.jobCheckupLogService = jobCheckupLogService;
+        this.jobCheckupService = jobCheckupService;
+        this.jobActionService = jobActionService;
     }
 
     /**
@@ -130,6 +146,73 @@ public class JobCheckupController {
             Model model) {
 
         model.addAttribute("log", commandLog);
+        model.addAttribute("checkupLog", jobCheckupLogService.findByCommandLog(commandLog));
         return "checkup/log";
     }
+
+    /**
+     * Evaluate the checkups of a job without side effects.
+     *
+     * @param job Job
+     * @return Value, threshold, result and phase timing of each checkup.
+     */
+    @PostMapping(path = "/job/{id}/dryrun")
+    @ResponseBody
+    public List<Map<String, Object>> dryRun(@PathVariable(name = "id") Job job) {
+        List<Map<String, Object>> dryRun = new ArrayList();
+
+        for (JobCheckupLog checkupLog : jobCheckupService.dryRun(job)) {
+            Map<String, Object> checkup = new LinkedHashMap();
+
+            checkup.put("id", checkupLog.getCheckup().getId());
+            checkup.put("name", checkupLog.getCheckup().getName());
+            checkup.put("prevalidation", checkupLog.getCheckup().isPrevalidation());
+            checkup.put("scope", checkupLog.getScope());
+            checkup.put("value", checkupLog.getValue());
+            checkup.put("conditional", checkupLog.getConditional());
+            checkup.put("threshold", checkupLog.getThreshold());
+            checkup.put("success", checkupLog.isSuccess());
+            checkup.put("timing", checkupLog.getTiming());
+            checkup.put("elapsed", checkupLog.getElapsedTime());
+
+            dryRun.add(checkup);
+        }
+
+        return dryRun;
+    }
+
+    /**
+     * Preview the jobs affected by the action of a checkup.
+     *
+     * @param checkup JobCheckup
+     * @return Action task not submitted.
+     */
+    @GetMapping(path = "/{id}/action/preview")
+    @ResponseBody
+    public ActionTask actionPreview(@PathVariable(name = "id") JobCheckup checkup) {
+        return jobActionService.preview(checkup.getJob(), checkup);
+    }
+
+    /**
+     * List the checkup action tasks.
+     *
+     * @return Action task list.
+     */
+    @GetMapping(path = "/action/list")
+    @ResponseBody
+    public List<ActionTask> actionList() {
+        return jobActionService.list();
+    }
+
+    /**
+     * Cancel a checkup action task.
+     *
+     * @param id Task ID.
+     * @return Identify if the task was canceled.
+     */
+    @PostMapping(path = "/action/{id}/cancel")
+    @ResponseBody
+    public boolean actionCancel(@PathVariable(name = "id") String id) {
+        return jobActionService.cancel(id);
+    }
 }
@@ -35,6 +35,8 @@ import br.com.dafiti.hanger.model.Template;
 import br.com.dafiti.hanger.model.WorkbenchEmail;
 import br.com.dafiti.hanger.option.Flow;
 import br.com.dafiti.hanger.option.Status;
+import br.com.dafiti.hanger.service.CatalogService;
+import br.com.dafiti.hanger.service.QueryCacheService;
 import br.com.dafiti.hanger.service.ConnectionService;
 import br.com.dafiti.hanger.service.AuditorService;
 import br.com.dafiti.hanger.service.FlowService;
@@ -46,6 +48,7 @@ import br.com.dafiti.hanger.service.JobService;
 import br.com.dafiti.hanger.service.JobStatusService;
 import br.com.dafiti.hanger.service.RetryService;
 import br.com.dafiti.hanger.service.ServerService;
+import br.com.dafiti.hanger.service.ShellCommandService;
 import br.com.dafiti.hanger.service.SlackService;
 import br.com.dafiti.hanger.service.SubjectService;
 import br.com.dafiti.hanger.service.TemplateService;
@@ -94,6 +97,8 @@ public class JobController {
     private final SubjectService subjectService;
     private final JenkinsService jenkinsService;
     private final ConnectionService connectionService;
+    private final CatalogService catalogService;
+    private final QueryCacheService queryCacheService;
     private final UserService userService;
     private final RetryService retryService;
     private final JobStatusService jobStatusService;
@@ -105,6 +110,7 @@ public class JobController {
     private final AuditorService auditorService;
     private final WorkbenchEmailService workbenchEmailService;
     private final TemplateService templateService;
+    private final ShellCommandService shellCommandService;
 
     private static final Logger LOG = LogManager.getLogger(JobController.class.getName());
 
@@ -114,6 +120,8 @@ public class JobController {
             SubjectService subjectService,
             JenkinsService jenkinsService,
             ConnectionService connectionService,
+            CatalogService catalogService,
+            QueryCacheService queryCacheService,
             UserService userService,
             RetryService retryService,
             JobStatusService jobStatusService,
@@ -124,13 +132,16 @@ public class JobController {
             JobDetailsService jobDetailsService,
             AuditorService auditorService,
             WorkbenchEmailService workbenchEmailService,
-            TemplateService templateService) {
+            TemplateService templateService,
+            ShellCommandService shellCommandService) {
 
         this.jobService = jobService;
         this.serverService = serverService;
         this.subjectService = subjectService;
         this.jenkinsService = jenkinsService;
         this.connectionService = connectionService;
+        this.catalogService = catalogService;
+        this.queryCacheService = queryCacheService;
         this.userService = userService;
         this.retryService = retryService;
         this.jobStatusService = jobStatusService;
@@ -142,6 +153,7 @@ public class JobController {
         this.auditorService = auditorService;
         this.workbenchEmailService = workbenchEmailService;
         this.templateService = templateService;
+        this.shellCommandService = shellCommandService;
     }
 
     /**
@@ -1039,7 +1051,8 @@ public class JobController {
             jobService.refresh();
             jenkinsService.refresh();
             slackService.refresh();
-            connectionService.refresh();
+            catalogService.refresh();
+            queryCacheService.clear();
 
             redirectAttributes.addFlashAttribute("successMessage", "Cache updated successfully!");
         } catch (Exception ex) {
@@ -1224,7 +1237,6 @@ public class JobController {
 
             model.addAttribute("job", job);
             model.addAttribute("warnings", flowService.getFlowWarning(job));
-            model.addAttribute("chart", flowService.getJobFlow(job, children, true));
             model.addAttribute("approval", this.jobApprovalService.hasApproval(job, principal));
             model.addAttribute("servers", this.serverService.list());
 
@@ -1346,6 +1358,9 @@ public class JobController {
                         .addData("name", job.getName())
                         .getData());
 
+        //Kill checkup shell commands running on behalf of the job.
+        shellCommandService.abort(job);
+
         return jenkinsService.abort(job, jobDetails.getBuildNumber());
 
     }
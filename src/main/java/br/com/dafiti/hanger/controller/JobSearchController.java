@@ -27,6 +27,7 @@ import br.com.dafiti.hanger.model.Job;
 import br.com.dafiti.hanger.model.JobDetails;
 import br.com.dafiti.hanger.model.Subject;
 import br.com.dafiti.hanger.service.JobDetailsService;
+import br.com.dafiti.hanger.service.JobSearchService;
 import br.com.dafiti.hanger.service.JobService;
 import br.com.dafiti.hanger.service.SubjectDetailsService;
 import br.com.dafiti.hanger.service.SubjectService;
@@ -43,12 +44,15 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 
 /**
  *
@@ -60,6 +64,7 @@ public class JobSearchController {
 
     private final JobService jobService;
     private final JobDetailsService jobDetailsService;
+    private final JobSearchService jobSearchService;
     private final String SEARCH_COOKIE = "a212aa8752164cfa1bde02b00c6af44a";
 
     private static final Logger LOG = LogManager.getLogger(JobSearchController.class.getName());
@@ -69,10 +74,12 @@ public class JobSearchController {
             JobService jobService,
             SubjectService subjectService,
             JobDetailsService jobDetails,
-            SubjectDetailsService subjectDetailsService) {
+            SubjectDetailsService subjectDetailsService,
+            JobSearchService jobSearchService) {
 
         this.jobService = jobService;
         this.jobDetailsService = jobDetails;
+        this.jobSearchService = jobSearchService;
     }
 
     /**
@@ -122,7 +129,7 @@ public class JobSearchController {
             Model model,
             @RequestBody String search) {
 
-        List<Job> jobs = (List) jobService.findByNameContainingOrAliasContaining(search);
+        List<Job> jobs = jobSearchService.find(search);
         List<String> searches = new ArrayList();
 
         if (!jobs.isEmpty()) {
@@ -170,4 +177,20 @@ public class JobSearchController {
 
         return "monitor/fragmentJobDetails::jobDetails";
     }
+
+    /**
+     * Suggest jobs while typing a search.
+     *
+     * @param search Search expression.
+     * @param limit Max number of suggestions.
+     * @return Job suggestion list
+     */
+    @GetMapping(path = "/suggest", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public String suggest(
+            @RequestParam(value = "search") String search,
+            @RequestParam(value = "limit", defaultValue = "10") int limit) {
+
+        return jobSearchService.suggest(search, limit);
+    }
 }
@@ -28,6 +28,7 @@ import br.com.dafiti.hanger.model.JobDetails;
 import br.com.dafiti.hanger.service.JobDetailsService;
 import br.com.dafiti.hanger.model.Subject;
 import br.com.dafiti.hanger.service.JobService;
+import br.com.dafiti.hanger.service.MonitorService;
 import br.com.dafiti.hanger.service.SubjectDetailsService;
 import br.com.dafiti.hanger.service.SubjectService;
 import br.com.dafiti.hanger.service.UserService;
@@ -43,6 +44,7 @@ import java.util.stream.Collectors;
 import javax.servlet.http.HttpServletRequest;
 import org.apache.commons.lang.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -50,6 +52,8 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 /**
  *
@@ -65,6 +69,7 @@ public class MonitorController {
     private final JobDetailsService jobDetailsService;
     private final SubjectDetailsService subjectDetailsService;
     private final UserService userService;
+    private final MonitorService monitorService;
 
     private static final Logger LOG = LogManager.getLogger(MonitorController.class.getName());
 
@@ -74,13 +79,15 @@ public class MonitorController {
             SubjectService subjectService,
             JobDetailsService jobDetails,
             SubjectDetailsService subjectDetailsService,
-            UserService userService) {
+            UserService userService,
+            MonitorService monitorService) {
 
         this.jobService = jobService;
         this.subjectService = subjectService;
         this.jobDetailsService = jobDetails;
         this.subjectDetailsService = subjectDetailsService;
         this.userService = userService;
+        this.monitorService = monitorService;
     }
 
     /**
@@ -96,6 +103,17 @@ public class MonitorController {
         return "monitor/monitor";
     }
 
+    /**
+     * Stream job and subject status changes to the monitor.
+     *
+     * @return Event stream.
+     */
+    @GetMapping(path = "/monitor/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public SseEmitter stream() {
+        return monitorService.subscribe();
+    }
+
     /**
      * List jobs by subject.
      *
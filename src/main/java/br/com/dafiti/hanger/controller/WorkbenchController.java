@@ -32,12 +32,20 @@ import br.com.dafiti.hanger.service.ConfigurationService;
 import br.com.dafiti.hanger.service.ConnectionService;
 import br.com.dafiti.hanger.service.WorkbenchService;
 import br.com.dafiti.hanger.service.ConnectionService.QueryResultSet;
+import br.com.dafiti.hanger.service.QueryCursorService;
+import br.com.dafiti.hanger.service.QueryCursorService.Page;
+import br.com.dafiti.hanger.service.QueryJobService;
+import br.com.dafiti.hanger.service.QueryJobService.QueryJob;
 import br.com.dafiti.hanger.service.TemplateService;
 import br.com.dafiti.hanger.service.UserService;
+import java.io.IOException;
 import java.security.Principal;
+import java.sql.SQLException;
 import java.util.List;
+import javax.servlet.http.HttpServletResponse;
 import org.json.JSONArray;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
@@ -62,6 +70,8 @@ public class WorkbenchController {
     private final ConfigurationService configurationService;
     private final UserService userService;
     private final TemplateService templateService;
+    private final QueryJobService queryJobService;
+    private final QueryCursorService queryCursorService;
 
     @Autowired
     public WorkbenchController(
@@ -69,13 +79,17 @@ public class WorkbenchController {
             WorkbenchService workbenchService,
             ConfigurationService configurationService,
             UserService userService,
-            TemplateService templateService) {
+            TemplateService templateService,
+            QueryJobService queryJobService,
+            QueryCursorService queryCursorService) {
 
         this.connectionService = connectionService;
         this.workbenchService = workbenchService;
         this.configurationService = configurationService;
         this.userService = userService;
         this.templateService = templateService;
+        this.queryJobService = queryJobService;
+        this.queryCursorService = queryCursorService;
     }
 
     /**
@@ -122,6 +136,275 @@ public class WorkbenchController {
         return "workbench/fragmentQueryResultSet::resultSet";
     }
 
+    /**
+     * Workbench query resultset streamed as NDJSON.
+     *
+     * @param connection Connection
+     * @param query SQL Expression
+     * @param parameters
+     * @param principal
+     * @param response HttpServletResponse
+     * @throws IOException
+     */
+    @PostMapping(path = "/query/{id}/stream")
+    public void queryStream(
+            @PathVariable(name = "id") Connection connection,
+            @RequestParam(name = "query") String query,
+            @RequestParam(name = "parameters", required = false) JSONArray parameters,
+            Principal principal,
+            HttpServletResponse response) throws IOException {
+
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        response.setHeader("X-Accel-Buffering", "no");
+
+        connectionService.streamQueryResultSet(
+                connection,
+                templateService.setParameters(query, parameters),
+                userService.findByUsername(principal.getName()),
+                response.getOutputStream());
+    }
+
+    /**
+     * Submit a workbench query to run in background.
+     *
+     * @param connection Connection
+     * @param query SQL Expression
+     * @param parameters
+     * @param cache Identifies if the result cache can be used.
+     * @param principal
+     * @return Query job, or TOO_MANY_REQUESTS when the limit of running
+     * queries was reached.
+     */
+    @PostMapping(path = "/query/{id}/job")
+    @ResponseBody
+    public ResponseEntity<QueryJob> querySubmit(
+            @PathVariable(name = "id") Connection connection,
+            @RequestParam(name = "query") String query,
+            @RequestParam(name = "parameters", required = false) JSONArray parameters,
+            @RequestParam(name = "cache", defaultValue = "true") boolean cache,
+            Principal principal) {
+
+        QueryJob job = queryJobService.submit(
+                connection,
+                templateService.setParameters(query, parameters),
+                userService.findByUsername(principal.getName()),
+                cache);
+
+        if (job == null) {
+            return new ResponseEntity(HttpStatus.TOO_MANY_REQUESTS);
+        }
+
+        return new ResponseEntity(job, HttpStatus.OK);
+    }
+
+    /**
+     * Workbench query job status.
+     *
+     * @param id Query job ID.
+     * @param principal
+     * @return Query job.
+     */
+    @GetMapping(path = "/query/job/{id}")
+    @ResponseBody
+    public ResponseEntity<QueryJob> queryStatus(
+            @PathVariable(name = "id") String id,
+            Principal principal) {
+
+        QueryJob job = queryJobService.get(id, principal.getName());
+
+        if (job == null) {
+            return new ResponseEntity(HttpStatus.NOT_FOUND);
+        }
+
+        return new ResponseEntity(job, HttpStatus.OK);
+    }
+
+    /**
+     * Workbench query job rows.
+     *
+     * @param id Query job ID.
+     * @param offset First row.
+     * @param limit Row count.
+     * @param principal
+     * @return Rows.
+     */
+    @GetMapping(path = "/query/job/{id}/page")
+    @ResponseBody
+    public ResponseEntity<List<List<Object>>> queryPage(
+            @PathVariable(name = "id") String id,
+            @RequestParam(name = "offset", defaultValue = "0") int offset,
+            @RequestParam(name = "limit", defaultValue = "100") int limit,
+            Principal principal) {
+
+        QueryJob job = queryJobService.get(id, principal.getName());
+
+        if (job == null) {
+            return new ResponseEntity(HttpStatus.NOT_FOUND);
+        }
+
+        return new ResponseEntity(queryJobService.getPage(job, offset, limit), HttpStatus.OK);
+    }
+
+    /**
+     * Workbench query job resultset.
+     *
+     * @param id Query job ID.
+     * @param principal
+     * @param model Model
+     * @return Query result set fragment.
+     */
+    @GetMapping(path = "/query/job/{id}/resultset")
+    public String queryResultSet(
+            @PathVariable(name = "id") String id,
+            Principal principal,
+            Model model) {
+
+        QueryJob job = queryJobService.get(id, principal.getName());
+
+        if (job == null) {
+            model.addAttribute("errorMessage", "Query result expired or not found, run the query again.");
+        } else if (job.getResult().hasError()) {
+            model.addAttribute("errorMessage", job.getResult().getError());
+        } else {
+            model.addAttribute("resultset", job.getResult());
+        }
+
+        return "workbench/fragmentQueryResultSet::resultSet";
+    }
+
+    /**
+     * Cancel a workbench query job.
+     *
+     * @param id Query job ID.
+     * @param principal
+     * @return OK when the cancel was sent.
+     */
+    @PostMapping(path = "/query/job/{id}/cancel")
+    public ResponseEntity queryJobCancel(
+            @PathVariable(name = "id") String id,
+            Principal principal) {
+
+        QueryJob job = queryJobService.get(id, principal.getName());
+
+        if (job != null && queryJobService.cancel(job)) {
+            return new ResponseEntity(HttpStatus.OK);
+        }
+
+        return new ResponseEntity(HttpStatus.PRECONDITION_FAILED);
+    }
+
+    /**
+     * Open a workbench query cursor.
+     *
+     * @param connection Connection
+     * @param query SQL Expression
+     * @param parameters
+     * @param principal
+     * @return Cursor session ID.
+     */
+    @PostMapping(path = "/query/cursor/{id}")
+    @ResponseBody
+    public ResponseEntity<String> cursorOpen(
+            @PathVariable(name = "id") Connection connection,
+            @RequestParam(name = "query") String query,
+            @RequestParam(name = "parameters", required = false) JSONArray parameters,
+            Principal principal) {
+
+        try {
+            return new ResponseEntity(
+                    queryCursorService.open(
+                            connection,
+                            templateService.setParameters(query, parameters),
+                            userService.findByUsername(principal.getName())),
+                    HttpStatus.OK);
+        } catch (SQLException | DataAccessException ex) {
+            return new ResponseEntity(new Message().getErrorMessage(ex), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Open a workbench cursor browsing a table.
+     *
+     * @param connection Connection
+     * @param catalog Catalog
+     * @param schema Schema
+     * @param table Table
+     * @param fields Fields
+     * @param principal
+     * @return Cursor session ID.
+     */
+    @PostMapping(path = "/query/cursor/table/{id}")
+    @ResponseBody
+    public ResponseEntity<String> cursorTable(
+            @PathVariable(name = "id") Connection connection,
+            @RequestParam(name = "catalog", required = false) String catalog,
+            @RequestParam(name = "schema", required = false) String schema,
+            @RequestParam(name = "table") String table,
+            @RequestParam(name = "fields") List<String> fields,
+            Principal principal) {
+
+        try {
+            return new ResponseEntity(
+                    queryCursorService.open(
+                            connection,
+                            catalog,
+                            schema,
+                            table,
+                            fields,
+                            userService.findByUsername(principal.getName())),
+                    HttpStatus.OK);
+        } catch (SQLException | DataAccessException ex) {
+            return new ResponseEntity(new Message().getErrorMessage(ex), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Next page of a workbench cursor.
+     *
+     * @param id Cursor session ID.
+     * @param size Page size.
+     * @param principal
+     * @return Page.
+     */
+    @GetMapping(path = "/query/cursor/session/{id}/next")
+    @ResponseBody
+    public ResponseEntity<Page> cursorNext(
+            @PathVariable(name = "id") String id,
+            @RequestParam(name = "size", defaultValue = "100") int size,
+            Principal principal) {
+
+        try {
+            Page page = queryCursorService.next(id, principal.getName(), size);
+
+            if (page == null) {
+                return new ResponseEntity(HttpStatus.NOT_FOUND);
+            }
+
+            return new ResponseEntity(page, HttpStatus.OK);
+        } catch (SQLException | DataAccessException ex) {
+            return new ResponseEntity(new Message().getErrorMessage(ex), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Close a workbench cursor.
+     *
+     * @param id Cursor session ID.
+     * @param principal
+     * @return OK.
+     */
+    @PostMapping(path = "/query/cursor/session/{id}/close")
+    public ResponseEntity cursorClose(
+            @PathVariable(name = "id") String id,
+            Principal principal) {
+
+        queryCursorService.close(id, principal.getName());
+
+        return new ResponseEntity(HttpStatus.OK);
+    }
+
     /**
      * Cancel
      *
@@ -220,6 +503,8 @@ public class WorkbenchController {
      * @param connection Connection
      * @param catalog Catalog
      * @param schema Schema
+     * @param prefix Table name prefix.
+     * @param offset First table of the page.
      * @return List Tree.
      */
     @GetMapping(path = "/tree/{id}")
@@ -227,9 +512,11 @@ public class WorkbenchController {
     public List<WorkbenchService.Tree> workbenchTree(
             @PathVariable(name = "id") Connection connection,
             @RequestParam(name = "catalog") String catalog,
-            @RequestParam(name = "schema") String schema) {
+            @RequestParam(name = "schema") String schema,
+            @RequestParam(name = "prefix", defaultValue = "") String prefix,
+            @RequestParam(name = "offset", defaultValue = "0") int offset) {
 
-        return workbenchService.JSTreeExchange(connection, catalog, schema);
+        return workbenchService.JSTreeExchange(connection, catalog, schema, prefix, offset);
     }
 
     /**
@@ -254,6 +541,10 @@ public class WorkbenchController {
 
         if (fields != null && fields.size() > 0) {
             model.addAttribute("connection", connection);
+            model.addAttribute("catalog", catalog);
+            model.addAttribute("schema", schema);
+            model.addAttribute("table", table);
+            model.addAttribute("fields", fields);
             model.addAttribute("query", this.workbenchService.doQuery(fields, catalog, schema, table,connection));
         }
 
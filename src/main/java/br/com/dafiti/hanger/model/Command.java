@@ -44,6 +44,7 @@ public class Command implements Serializable {
     private Long id;
     private String command;
     private CommandType commandType;
+    private Integer timeout;
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -73,6 +74,14 @@ public class Command implements Serializable {
         this.commandType = commandType;
     }
 
+    public Integer getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(Integer timeout) {
+        this.timeout = timeout;
+    }
+
     @Override
     public int hashCode() {
         int hash = 7;
@@ -50,6 +50,7 @@ public class CommandLog implements Serializable {
     private String command;
     private String log;
     private boolean success;
+    private Long elapsedTime;
 
     public CommandLog() {
     }
@@ -61,6 +62,11 @@ public class CommandLog implements Serializable {
         this.success = success;
     }
 
+    public CommandLog(Command command, String log, boolean success, Long elapsedTime) {
+        this(command, log, success);
+        this.elapsedTime = elapsedTime;
+    }
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     public Long getId() {
@@ -115,6 +121,14 @@ public class CommandLog implements Serializable {
         this.success = success;
     }
 
+    public Long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    public void setElapsedTime(Long elapsedTime) {
+        this.elapsedTime = elapsedTime;
+    }
+
     @Override
     public int hashCode() {
         int hash = 7;
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2018 Dafiti Group
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package br.com.dafiti.hanger.model;
+
+import br.com.dafiti.hanger.option.Phase;
+import br.com.dafiti.hanger.option.Status;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import java.io.Serializable;
+import java.util.Date;
+import java.util.Objects;
+import javax.persistence.ConstraintMode;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.ForeignKey;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import javax.persistence.Transient;
+import javax.persistence.UniqueConstraint;
+
+/**
+ * Lifecycle of a job build number.
+ *
+ * @author Valdiney V GOMES
+ */
+@Entity
+@Table(
+        indexes = {
+            @Index(name = "IDX_job_id_queued", columnList = "job_id,queued", unique = false),
+            @Index(name = "IDX_queued", columnList = "queued", unique = false)},
+        uniqueConstraints = {
+            @UniqueConstraint(name = "UK_job_id_number", columnNames = {"job_id", "number"})})
+public class JobBuildLifecycle implements Serializable {
+
+    private Long id;
+    private Job job;
+    private int number;
+    private Date queued;
+    private Date started;
+    private Date finalized;
+    private long duration;
+    private Status status;
+
+    public JobBuildLifecycle() {
+    }
+
+    public JobBuildLifecycle(Job job, int number) {
+        this.job = job;
+        this.number = number;
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    @ManyToOne(optional = true)
+    @JoinColumn(name = "job_id", referencedColumnName = "id", foreignKey = @ForeignKey(value = ConstraintMode.NO_CONSTRAINT))
+    @JsonIgnore
+    public Job getJob() {
+        return job;
+    }
+
+    public void setJob(Job job) {
+        this.job = job;
+    }
+
+    public int getNumber() {
+        return number;
+    }
+
+    public void setNumber(int number) {
+        this.number = number;
+    }
+
+    /**
+     * Date of the first phase of the build.
+     *
+     * @return Queue date
+     */
+    @Temporal(TemporalType.TIMESTAMP)
+    public Date getQueued() {
+        return queued;
+    }
+
+    public void setQueued(Date queued) {
+        this.queued = queued;
+    }
+
+    @Temporal(TemporalType.TIMESTAMP)
+    public Date getStarted() {
+        return started;
+    }
+
+    public void setStarted(Date started) {
+        this.started = started;
+    }
+
+    @Temporal(TemporalType.TIMESTAMP)
+    public Date getFinalized() {
+        return finalized;
+    }
+
+    public void setFinalized(Date finalized) {
+        this.finalized = finalized;
+    }
+
+    /**
+     * Seconds between the first and the last phase of the build.
+     *
+     * @return Build duration
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    public void setDuration(long duration) {
+        this.duration = duration;
+    }
+
+    @Enumerated(EnumType.STRING)
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    /**
+     * Get the build duration as hours, minutes and seconds.
+     *
+     * @return Build duration
+     */
+    @Transient
+    public String getElapsedTime() {
+        return String.format("%02d:%02d:%02d", duration / 3600, (duration % 3600) / 60, duration % 60);
+    }
+
+    /**
+     * Add a build phase to the lifecycle. A phase can be added more than
+     * once.
+     *
+     * @param jobBuild Build phase
+     */
+    public void add(JobBuild jobBuild) {
+        Date date = jobBuild.getDate();
+        Date last = queued == null ? date : new Date(queued.getTime() + duration * 1000);
+
+        if (queued == null || date.before(queued)) {
+            queued = date;
+        }
+
+        if (date.after(last)) {
+            last = date;
+        }
+
+        duration = (last.getTime() - queued.getTime()) / 1000;
+
+        if (jobBuild.getPhase().equals(Phase.STARTED)) {
+            if (started == null || date.after(started)) {
+                started = date;
+            }
+        } else if (jobBuild.getPhase().equals(Phase.FINALIZED)) {
+            if (finalized == null || date.after(finalized)) {
+                finalized = date;
+            }
+
+            status = jobBuild.getStatus();
+        }
+
+        if (status == null) {
+            status = jobBuild.getStatus();
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 61 * hash + Objects.hashCode(this.id);
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (obj == null) {
+            return false;
+        }
+
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+
+        final JobBuildLifecycle other = (JobBuildLifecycle) obj;
+        return Objects.equals(this.id, other.id);
+    }
+}
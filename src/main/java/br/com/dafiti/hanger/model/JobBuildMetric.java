@@ -36,6 +36,7 @@ public class JobBuildMetric {
     private Job job;
     private int hour;
     private Long build;
+    private int number;
     private Date queueDate;
     private Date startDate;
     private Date finishDate;
@@ -103,6 +104,14 @@ public class JobBuildMetric {
         this.build = build;
     }
 
+    public int getNumber() {
+        return number;
+    }
+
+    public void setNumber(int number) {
+        this.number = number;
+    }
+
     public Date getQueueDate() {
         return queueDate;
     }
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2018 Dafiti Group
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package br.com.dafiti.hanger.model;
+
+import br.com.dafiti.hanger.option.Phase;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import java.io.Serializable;
+import java.util.Date;
+import java.util.Objects;
+import javax.persistence.ConstraintMode;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.ForeignKey;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import javax.persistence.UniqueConstraint;
+
+/**
+ * Job builds by day, hour and phase.
+ *
+ * @author Valdiney V GOMES
+ */
+@Entity
+@Table(
+        indexes = {
+            @Index(name = "IDX_phase_date_hour", columnList = "phase,date,hour", unique = false)},
+        uniqueConstraints = {
+            @UniqueConstraint(name = "UK_job_id_date_hour_phase", columnNames = {"job_id", "date", "hour", "phase"})})
+public class JobBuildRollup implements Serializable {
+
+    private Long id;
+    private Job job;
+    private Date date;
+    private int hour;
+    private Phase phase;
+    private long builds;
+    private long duration;
+
+    public JobBuildRollup() {
+    }
+
+    public JobBuildRollup(Job job, Date date, int hour, Phase phase) {
+        this.job = job;
+        this.date = date;
+        this.hour = hour;
+        this.phase = phase;
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    @ManyToOne(optional = true)
+    @JoinColumn(name = "job_id", referencedColumnName = "id", foreignKey = @ForeignKey(value = ConstraintMode.NO_CONSTRAINT))
+    @JsonIgnore
+    public Job getJob() {
+        return job;
+    }
+
+    public void setJob(Job job) {
+        this.job = job;
+    }
+
+    @Temporal(TemporalType.DATE)
+    public Date getDate() {
+        return date;
+    }
+
+    public void setDate(Date date) {
+        this.date = date;
+    }
+
+    public int getHour() {
+        return hour;
+    }
+
+    public void setHour(int hour) {
+        this.hour = hour;
+    }
+
+    @Enumerated(EnumType.STRING)
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public void setPhase(Phase phase) {
+        this.phase = phase;
+    }
+
+    public long getBuilds() {
+        return builds;
+    }
+
+    public void setBuilds(long builds) {
+        this.builds = builds;
+    }
+
+    /**
+     * Build duration in seconds, from start to finalization.
+     *
+     * @return Build duration
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    public void setDuration(long duration) {
+        this.duration = duration;
+    }
+
+    /**
+     * Add builds to the rollup.
+     *
+     * @param builds Number of builds
+     * @param duration Build duration in seconds
+     */
+    public void add(long builds, long duration) {
+        this.builds += builds;
+        this.duration += duration;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 59 * hash + Objects.hashCode(this.id);
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (obj == null) {
+            return false;
+        }
+
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+
+        final JobBuildRollup other = (JobBuildRollup) obj;
+        return Objects.equals(this.id, other.id);
+    }
+}
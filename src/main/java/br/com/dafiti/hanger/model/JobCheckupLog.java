@@ -29,7 +29,9 @@ import br.com.dafiti.hanger.option.Scope;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
@@ -49,6 +51,7 @@ import javax.persistence.OneToMany;
 import javax.persistence.Table;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
+import javax.persistence.Transient;
 
 /**
  *
@@ -70,6 +73,12 @@ public class JobCheckupLog implements Serializable {
     private Action action;
     private Scope scope;
     private List<CommandLog> commandLog = new ArrayList();
+    private Long macroTime;
+    private Long connectionTime;
+    private Long queryTime;
+    private Long fetchTime;
+    private Long commandTime;
+    private Long revalidationTime;
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -193,6 +202,104 @@ public class JobCheckupLog implements Serializable {
         this.commandLog.add(commandLog);
     }
 
+    public Long getMacroTime() {
+        return macroTime;
+    }
+
+    public void setMacroTime(Long macroTime) {
+        this.macroTime = macroTime;
+    }
+
+    public Long getConnectionTime() {
+        return connectionTime;
+    }
+
+    public void setConnectionTime(Long connectionTime) {
+        this.connectionTime = connectionTime;
+    }
+
+    public Long getQueryTime() {
+        return queryTime;
+    }
+
+    public void setQueryTime(Long queryTime) {
+        this.queryTime = queryTime;
+    }
+
+    public Long getFetchTime() {
+        return fetchTime;
+    }
+
+    public void setFetchTime(Long fetchTime) {
+        this.fetchTime = fetchTime;
+    }
+
+    public Long getCommandTime() {
+        return commandTime;
+    }
+
+    public void setCommandTime(Long commandTime) {
+        this.commandTime = commandTime;
+    }
+
+    public Long getRevalidationTime() {
+        return revalidationTime;
+    }
+
+    public void setRevalidationTime(Long revalidationTime) {
+        this.revalidationTime = revalidationTime;
+    }
+
+    /**
+     * Get the elapsed time, in milliseconds, of each evaluated phase.
+     *
+     * @return Phase timing.
+     */
+    @Transient
+    public Map<String, Long> getTiming() {
+        Map<String, Long> timing = new LinkedHashMap();
+
+        if (macroTime != null) {
+            timing.put("macro", macroTime);
+        }
+
+        if (connectionTime != null) {
+            timing.put("connection", connectionTime);
+        }
+
+        if (queryTime != null) {
+            timing.put("query", queryTime);
+        }
+
+        if (fetchTime != null) {
+            timing.put("fetch", fetchTime);
+        }
+
+        if (commandTime != null) {
+            timing.put("command", commandTime);
+        }
+
+        if (revalidationTime != null) {
+            timing.put("revalidation", revalidationTime);
+        }
+
+        return timing;
+    }
+
+    /**
+     * Get the total elapsed time, in milliseconds, of the evaluation.
+     *
+     * @return Elapsed time.
+     */
+    @Transient
+    public long getElapsedTime() {
+        return this.getTiming()
+                .values()
+                .stream()
+                .mapToLong(Long::longValue)
+                .sum();
+    }
+
     @Override
     public int hashCode() {
         int hash = 3;
@@ -45,6 +45,7 @@ public class WorkbenchQuery extends Tracker<WorkbenchQuery> implements Serializa
     private String name;
     private String query;
     private boolean shared;
+    private Integer cacheTtl;
     private Connection connection;
     private User user;
 
@@ -92,6 +93,14 @@ public class WorkbenchQuery extends Tracker<WorkbenchQuery> implements Serializa
         this.shared = shared;
     }
 
+    public Integer getCacheTtl() {
+        return cacheTtl;
+    }
+
+    public void setCacheTtl(Integer cacheTtl) {
+        this.cacheTtl = cacheTtl;
+    }
+
     @ManyToOne
     @JoinColumn(name = "connection_id", referencedColumnName = "id")
     public Connection getConnection() {
@@ -144,6 +153,7 @@ public class WorkbenchQuery extends Tracker<WorkbenchQuery> implements Serializa
         object.put("name", name);
         object.put("query", query);
         object.put("shared", shared);
+        object.put("cacheTtl", cacheTtl);
         object.put("connection", connection.getName());
         return object.toString(2);
     }
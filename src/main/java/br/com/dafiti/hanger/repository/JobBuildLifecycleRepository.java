@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2018 Dafiti Group
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package br.com.dafiti.hanger.repository;
+
+import br.com.dafiti.hanger.model.Job;
+import br.com.dafiti.hanger.model.JobBuildLifecycle;
+import java.util.Date;
+import java.util.List;
+import javax.transaction.Transactional;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+public interface JobBuildLifecycleRepository extends CrudRepository<JobBuildLifecycle, Long> {
+
+    JobBuildLifecycle findByJobAndNumber(Job job, int number);
+
+    List<JobBuildLifecycle> findByJobInAndQueuedBetween(List<Job> job, Date startDate, Date endDate);
+
+    List<JobBuildLifecycle> findByQueuedBetween(Date startDate, Date endDate);
+
+    boolean existsByQueuedBetween(Date startDate, Date endDate);
+
+    List<JobBuildLifecycle> findByQueuedBeforeOrderByQueued(Date date, Pageable page);
+
+    @Modifying
+    @Transactional
+    @Query("delete from JobBuildLifecycle l where l.id in (:id)")
+    void deleteByIdIn(@Param("id") List<Long> id);
+
+    /**
+     * Get the builds running at some moment of a period.
+     *
+     * @param job Job list
+     * @param queueDate Earliest queue date
+     * @param startDate Start Date
+     * @param endDate End Date
+     * @return Build lifecycle list
+     */
+    @Query("select "
+            + "     l "
+            + " from "
+            + "     JobBuildLifecycle l "
+            + " where "
+            + "     l.job in (:job) "
+            + " and "
+            + "     l.queued between :queuedate and :enddate "
+            + " and "
+            + "     ( l.finalized is null or l.finalized >= :startdate ) "
+            + " order by "
+            + "     l.queued")
+    List<JobBuildLifecycle> findBuildWindow(
+            @Param("job") List<Job> job,
+            @Param("queuedate") Date queueDate,
+            @Param("startdate") Date startDate,
+            @Param("enddate") Date endDate);
+}
@@ -29,31 +29,15 @@ import br.com.dafiti.hanger.model.JobBuildMetric;
 import br.com.dafiti.hanger.option.Phase;
 import java.util.Date;
 import java.util.List;
+import javax.transaction.Transactional;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
 
 public interface JobBuildRepository extends CrudRepository<JobBuild, Long> {
 
-    /**
-     * Get a job build elapsed time.
-     *
-     * @param job Job
-     * @param buildNumber Build number
-     * @return Elapsed time
-     */
-    @Query("select "
-            + "     timediff( max(date), min(date) ) "
-            + " from "
-            + "     JobBuild j "
-            + " where "
-            + "     j.job = :job "
-            + " and "
-            + "     j.number = :buildNumber")
-    String findJobBuildTime(
-            @Param("job") Job job,
-            @Param("buildNumber") int buildNumber);
-
     /**
      * Get job build count by hour.
      *
@@ -83,30 +67,71 @@ public interface JobBuildRepository extends CrudRepository<JobBuild, Long> {
             @Param("enddate") Date endDate);
 
     /**
-     * Get job build history.
+     * Get the last build of a job in a phase.
+     *
+     * @param job Job
+     * @param number Build number
+     * @param phase Phase
+     * @return Job build
+     */
+    JobBuild findTopByJobAndNumberAndPhaseOrderByDateDesc(
+            Job job,
+            int number,
+            Phase phase);
+
+    /**
+     * Get the date of the first build.
+     *
+     * @return First build date
+     */
+    @Query("select min(b.date) from JobBuild b")
+    Date findFirstBuildDate();
+
+    /**
+     * Get the builds of a period.
      *
-     * @param job Job list filter
      * @param startDate Start Date
      * @param endDate End Date
-     * @return Build information by number.
+     * @return Job id, build number, phase, date and status
      */
     @Query("select "
-            + "new br.com.dafiti.hanger.model.JobBuildMetric "
-            + "( "
-            + "     b.job "
-            + "     , min( b.date ) "
-            + "     , case when max(case when b.phase = 'STARTED' then b.date end) is null then now() else max(case when b.phase = 'STARTED' then b.date end) end"
-            + "     , case when max(case when b.phase = 'FINALIZED' then b.date end) is null then now() else max(case when b.phase = 'FINALIZED' then b.date end) end"
-            + "     , case when min( b.status ) = 'SUCCESS' then true else false end"
-            + ") "
-            + " from JobBuild b "
+            + "     b.job.id, b.number, b.phase, b.date, b.status "
+            + " from "
+            + "     JobBuild b "
             + " where "
-            + "     b.job in (:job) "
-            + "     and "
             + "     b.date between :startdate and :enddate"
-            + " group by b.job,  b.number")
-    List<JobBuildMetric> findBuildHistory(
-            @Param("job") List<Job> job,
+            + " order by "
+            + "     b.date")
+    List<Object[]> findBuildByDate(
             @Param("startdate") Date startDate,
             @Param("enddate") Date endDate);
+
+    /**
+     * Get the builds of a period already summarized by a lifecycle and not
+     * referenced by any job status.
+     *
+     * @param startDate Start Date
+     * @param endDate End Date
+     * @param page Batch
+     * @return Build id list
+     */
+    @Query("select "
+            + "     b.id "
+            + " from "
+            + "     JobBuild b "
+            + " where "
+            + "     b.date between :startdate and :enddate"
+            + " and "
+            + "     not exists ( select 1 from JobStatus s where s.build = b )"
+            + " and "
+            + "     exists ( select 1 from JobBuildLifecycle l where l.job = b.job and l.number = b.number )")
+    List<Long> findCompactable(
+            @Param("startdate") Date startDate,
+            @Param("enddate") Date endDate,
+            Pageable page);
+
+    @Modifying
+    @Transactional
+    @Query("delete from JobBuild b where b.id in (:id)")
+    void deleteByIdIn(@Param("id") List<Long> id);
 }
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2018 Dafiti Group
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package br.com.dafiti.hanger.repository;
+
+import br.com.dafiti.hanger.model.Job;
+import br.com.dafiti.hanger.model.JobBuildMetric;
+import br.com.dafiti.hanger.model.JobBuildRollup;
+import br.com.dafiti.hanger.option.Phase;
+import java.util.Date;
+import java.util.List;
+import javax.transaction.Transactional;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+public interface JobBuildRollupRepository extends CrudRepository<JobBuildRollup, Long> {
+
+    /**
+     * Get job build count by hour, except for one hour of one day.
+     *
+     * @param phase Phase
+     * @param startDate Start Date
+     * @param endDate End Date
+     * @param date Excluded day
+     * @param hour Excluded hour
+     * @return Job build count by hour
+     */
+    @Query("select "
+            + " new br.com.dafiti.hanger.model.JobBuildMetric"
+            + "( "
+            + "     r.job"
+            + "     , r.hour, sum( r.builds ) "
+            + ") "
+            + " from "
+            + "     JobBuildRollup r "
+            + " where "
+            + "     r.phase = :phase"
+            + " and "
+            + "     r.date between :startdate and :enddate"
+            + " and "
+            + "     not ( r.date = :date and r.hour = :hour )"
+            + " group by "
+            + "     r.job, r.hour")
+    List<JobBuildMetric> findJobBuildCountByHour(
+            @Param("phase") Phase phase,
+            @Param("startdate") Date startDate,
+            @Param("enddate") Date endDate,
+            @Param("date") Date date,
+            @Param("hour") int hour);
+
+    /**
+     * Add builds to a rollup in a single statement.
+     *
+     * @param job Job
+     * @param date Day
+     * @param hour Hour
+     * @param phase Phase
+     * @param builds Build count
+     * @param duration Duration in seconds
+     * @return Updated rollup count
+     */
+    @Modifying
+    @Transactional
+    @Query("update "
+            + "     JobBuildRollup r "
+            + " set "
+            + "     r.builds = r.builds + :builds"
+            + "     , r.duration = r.duration + :duration "
+            + " where "
+            + "     r.job = :job"
+            + " and "
+            + "     r.date = :date"
+            + " and "
+            + "     r.hour = :hour"
+            + " and "
+            + "     r.phase = :phase")
+    int increment(
+            @Param("job") Job job,
+            @Param("date") Date date,
+            @Param("hour") int hour,
+            @Param("phase") Phase phase,
+            @Param("builds") long builds,
+            @Param("duration") long duration);
+
+    boolean existsByDate(Date date);
+
+    @Modifying
+    @Transactional
+    @Query("delete from JobBuildRollup r where r.date = :date")
+    void deleteByDate(@Param("date") Date date);
+}
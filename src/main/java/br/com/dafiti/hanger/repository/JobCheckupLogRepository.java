@@ -23,6 +23,7 @@
  */
 package br.com.dafiti.hanger.repository;
 
+import br.com.dafiti.hanger.model.CommandLog;
 import br.com.dafiti.hanger.model.JobCheckup;
 import br.com.dafiti.hanger.model.JobCheckupLog;
 import java.util.Date;
@@ -39,4 +40,6 @@ public interface JobCheckupLogRepository extends CrudRepository<JobCheckupLog, L
     public void deleteByDateBefore(Date date);
 
     List<JobCheckupLog> findByCheckupAndDateBetweenOrderByDateDesc(JobCheckup jobCheckup, Date from, Date to, Pageable pageable);
+
+    JobCheckupLog findFirstByCommandLog(CommandLog commandLog);
 }
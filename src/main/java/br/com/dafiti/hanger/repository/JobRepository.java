@@ -27,9 +27,12 @@ import br.com.dafiti.hanger.model.Job;
 import br.com.dafiti.hanger.model.Server;
 import br.com.dafiti.hanger.model.Subject;
 import br.com.dafiti.hanger.model.User;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 
 public interface JobRepository extends CrudRepository<Job, Long> {
 
@@ -46,4 +49,23 @@ public interface JobRepository extends CrudRepository<Job, Long> {
     public long countByEnabledTrueAndSubject(Subject subject);
 
     public List<Job> findByServer(Server server);
+
+    public List<Job> findByStatusIdIn(Collection<Long> id);
+
+    /**
+     * Get the subjects of a set of jobs.
+     *
+     * @param id Job id list
+     * @return Job id, subject id and subject name
+     */
+    @Query("select "
+            + "     j.id, s.id, s.name "
+            + " from "
+            + "     Job j "
+            + "     join j.subject s "
+            + " where "
+            + "     j.id in :id "
+            + " order by "
+            + "     s.name")
+    public List<Object[]> findSubjectByIdIn(@Param("id") Collection<Long> id);
 }
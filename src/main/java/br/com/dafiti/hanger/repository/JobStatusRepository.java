@@ -24,7 +24,18 @@
 package br.com.dafiti.hanger.repository;
 
 import br.com.dafiti.hanger.model.JobStatus;
+import br.com.dafiti.hanger.option.Flow;
+import java.util.Collection;
+import javax.transaction.Transactional;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 
 public interface JobStatusRepository extends CrudRepository<JobStatus, Long> {
+
+    @Modifying
+    @Transactional
+    @Query("update JobStatus s set s.flow = :flow where s.id in :id")
+    int updateFlow(@Param("flow") Flow flow, @Param("id") Collection<Long> id);
 }
@@ -36,4 +36,6 @@ public interface WorkbenchQueryRepository
         extends CrudRepository<WorkbenchQuery, Long> {
     
     public List<WorkbenchQuery> findByUserOrSharedTrue(User user);
+
+    public List<WorkbenchQuery> findByCacheTtlGreaterThan(Integer cacheTtl);
 }
@@ -125,6 +125,7 @@ public class SpringSecurityConfig extends WebSecurityConfigurerAdapter {
                                 "/**/detail/**",
                                 "/**/search/**",
                                 "/**/log/**",
+                                "/monitor/stream",
                                 "/flow/**",
                                 "/propagation/**",
                                 "/**/user/confirmation/**",
@@ -145,7 +146,9 @@ public class SpringSecurityConfig extends WebSecurityConfigurerAdapter {
                             "/configuration/**").access("hasRole('HERO')")
                     .antMatchers(
                             "/**/delete/**",
-                            "/**/rebuild/**").access("hasRole('ADMIN') || hasRole('HERO')")
+                            "/**/rebuild/**",
+                            "/checkup/action/*/cancel",
+                            "/checkup/job/*/dryrun").access("hasRole('ADMIN') || hasRole('HERO')")
                     .antMatchers(
                             "/**/edit/**",
                             "/**/add/**").access("hasRole('USER') || hasRole('ADMIN') || hasRole('HERO')")
@@ -0,0 +1,1056 @@
+/*
+ * Copyright (c) 2018 Dafiti Group
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package br.com.dafiti.hanger.service;
+
+import br.com.dafiti.hanger.model.Connection;
+import br.com.dafiti.hanger.service.ConnectionService.Column;
+import br.com.dafiti.hanger.service.ConnectionService.Entity;
+import br.com.dafiti.hanger.service.ConnectionService.Index;
+import br.com.dafiti.hanger.option.Database;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.PreDestroy;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps a snapshot of the catalogs, schemas, tables and columns of each
+ * connection.
+ *
+ * The snapshot is crawled schema by schema in background and saved to disk,
+ * so metadata is served without touching the database, even after a restart.
+ * Primary keys and indexes are read on first use and kept until the schema is
+ * crawled again.
+ *
+ * @author Valdiney V GOMES
+ */
+@Service
+public class CatalogService {
+
+    private final ConnectionService connectionService;
+    private final Map<Long, Snapshot> snapshots;
+    private final ThreadPoolExecutor executor;
+    private final AtomicBoolean crawling;
+    private final String path;
+    private final long refresh;
+    private final int batch;
+
+    private static final Logger LOG = LogManager.getLogger(CatalogService.class.getName());
+
+    @Autowired
+    public CatalogService(
+            ConnectionService connectionService,
+            @Value("${hanger.metadata.path:${user.home}/.hanger/metadata}") String path,
+            @Value("${hanger.metadata.refresh:3600}") long refresh,
+            @Value("${hanger.metadata.crawl.batch:10}") int batch) {
+
+        this.connectionService = connectionService;
+        this.snapshots = new ConcurrentHashMap();
+        this.executor = new ThreadPoolExecutor(
+                1,
+                1,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue(),
+                new CustomizableThreadFactory("catalog-"));
+        this.crawling = new AtomicBoolean();
+        this.path = path;
+        this.refresh = refresh;
+        this.batch = batch;
+    }
+
+    /**
+     * Get catalogs.
+     *
+     * @param connection Connection
+     * @return Catalogs.
+     */
+    public List<Entity> getCatalogs(Connection connection) {
+        return this.getSnapshot(connection, false).getCatalog();
+    }
+
+    /**
+     * Get schemas.
+     *
+     * @param connection Connection
+     * @return Schemas.
+     */
+    public List<Entity> getSchemas(Connection connection) {
+        return this.getSnapshot(connection, false).getSchema();
+    }
+
+    /**
+     * Get tables, limited to the workbench max entity number.
+     *
+     * @param connection Connection
+     * @param catalog Catalog
+     * @param schema Schema
+     * @return Tables.
+     */
+    public List<Entity> getTables(
+            Connection connection,
+            String catalog,
+            String schema) {
+
+        List<Entity> tables = new ArrayList();
+
+        for (Entity table : this.getSchema(connection, catalog, schema).getTable()) {
+            if (connectionService.isDisplayLimit(tables.size())) {
+                break;
+            }
+
+            tables.add(table);
+        }
+
+        return tables;
+    }
+
+    /**
+     * Get a page of the tables whose name starts with a prefix, in name
+     * order.
+     *
+     * @param connection Connection
+     * @param catalog Catalog
+     * @param schema Schema
+     * @param prefix Table name prefix, case insensitive.
+     * @param offset First table.
+     * @param limit Table count.
+     * @return Table page.
+     */
+    public TablePage getTables(
+            Connection connection,
+            String catalog,
+            String schema,
+            String prefix,
+            int offset,
+            int limit) {
+
+        TableIndex index = this.getSchema(connection, catalog, schema).getSorted();
+        int from = index.from(prefix == null ? "" : prefix);
+        int to = index.to(prefix == null ? "" : prefix);
+        int start = Math.min(from + Math.max(offset, 0), to);
+
+        return new TablePage(
+                index.getTable(start, Math.min(start + limit, to)),
+                offset,
+                to - from);
+    }
+
+    /**
+     * Get columns.
+     *
+     * @param connection Connection
+     * @param catalog Catalog
+     * @param schema Schema
+     * @param table Table
+     * @return Columns.
+     */
+    public List<Column> getColumns(
+            Connection connection,
+            String catalog,
+            String schema,
+            String table) {
+
+        SchemaSnapshot snapshot = this.getSchema(connection, catalog, schema);
+        List<Column> column = snapshot.getColumn().get(table);
+
+        //Views and tables created after the crawl are read on demand.
+        if (column == null) {
+            try {
+                column = connectionService.getColumns(connection, catalog, schema, table);
+
+                if (!column.isEmpty()) {
+                    snapshot.getColumn().put(table, column);
+                }
+            } catch (SQLException ex) {
+                LOG.log(Level.ERROR, "Fail getting columns of " + connection.getName(), ex);
+                column = new ArrayList();
+            }
+        }
+
+        return column;
+    }
+
+    /**
+     * Get primary key.
+     *
+     * @param connection Connection
+     * @param catalog Catalog
+     * @param schema Schema
+     * @param table Table
+     * @return Primary key columns.
+     */
+    public List<Column> getPrimaryKey(
+            Connection connection,
+            String catalog,
+            String schema,
+            String table) {
+
+        SchemaSnapshot snapshot = this.getSchema(connection, catalog, schema);
+        List<Column> key = snapshot.getPrimaryKey().get(table);
+
+        if (key == null) {
+            try {
+                key = connectionService.getPrimaryKey(connection, catalog, schema, table);
+                snapshot.getPrimaryKey().put(table, key);
+            } catch (SQLException ex) {
+                LOG.log(Level.ERROR, "Fail getting primary key of " + connection.getName(), ex);
+                key = new ArrayList();
+            }
+        }
+
+        return key;
+    }
+
+    /**
+     * Get indexes.
+     *
+     * @param connection Connection
+     * @param catalog Catalog
+     * @param schema Schema
+     * @param table Table
+     * @return Indexes.
+     */
+    public List<Index> getIndexes(
+            Connection connection,
+            String catalog,
+            String schema,
+            String table) {
+
+        SchemaSnapshot snapshot = this.getSchema(connection, catalog, schema);
+        List<Index> index = snapshot.getIndex().get(table);
+
+        if (index == null) {
+            try {
+                index = connectionService.getIndexes(connection, catalog, schema, table);
+                snapshot.getIndex().put(table, index);
+            } catch (SQLException ex) {
+                LOG.log(Level.ERROR, "Fail getting indexes of " + connection.getName(), ex);
+                index = new ArrayList();
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Get the column names of every crawled table, for autocomplete.
+     *
+     * @param connection Connection
+     * @return Column names by qualified table name.
+     */
+    public Map<String, List<String>> getHint(Connection connection) {
+        Map<String, List<String>> hint = new LinkedHashMap();
+
+        this.getSnapshot(connection, false).getContent().values().forEach(schema -> {
+            schema.getColumn().forEach((table, column) -> {
+                hint.put(
+                        this.getKey(schema.getCatalogSchema(), table),
+                        column.stream()
+                                .map(Column::getName)
+                                .collect(Collectors.toList()));
+            });
+        });
+
+        return hint;
+    }
+
+    /**
+     * Crawl a schema again. Without catalog and schema, lists the catalogs
+     * and schemas again and discards the crawled schemas, which are crawled
+     * again on demand or in background.
+     *
+     * @param connection Connection
+     * @param catalog Catalog
+     * @param schema Schema
+     */
+    public void refresh(
+            Connection connection,
+            String catalog,
+            String schema) {
+
+        Snapshot snapshot = this.getSnapshot(connection, true);
+
+        if (this.getKey(catalog, schema).isEmpty()) {
+            snapshot.getContent().clear();
+        } else {
+            try {
+                this.crawl(connection, snapshot, catalog, schema);
+            } catch (SQLException ex) {
+                LOG.log(Level.ERROR, "Fail crawling " + connection.getName(), ex);
+            }
+        }
+
+        this.save(connection, snapshot);
+    }
+
+    /**
+     * Mark every snapshot as stale, to be crawled again in background.
+     */
+    public void refresh() {
+        snapshots.values().forEach(snapshot -> {
+            snapshot.setRefreshed(0);
+            snapshot.getContent().values().forEach(schema -> schema.setRefreshed(0));
+        });
+    }
+
+    /**
+     * Remove the snapshot of a connection.
+     *
+     * @param id Connection ID.
+     */
+    public void evict(Long id) {
+        snapshots.remove(id);
+        this.getFile(id).delete();
+    }
+
+    /**
+     * Crawl stale schemas of each connection in background.
+     */
+    @Scheduled(fixedDelay = 60000, initialDelay = 60000)
+    public void crawl() {
+        if (crawling.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                try {
+                    connectionService.list().forEach(this::crawl);
+                } catch (Exception ex) {
+                    LOG.log(Level.ERROR, "Fail crawling connections ", ex);
+                } finally {
+                    crawling.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Stop the crawler.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Crawl the stale schemas of a connection, a batch at a time.
+     *
+     * @param connection Connection
+     */
+    private void crawl(Connection connection) {
+        long stale = System.currentTimeMillis() - (refresh * 1000);
+        Snapshot snapshot = this.getSnapshot(connection, false);
+
+        try {
+            if (snapshot.getRefreshed() < stale) {
+                this.list(connection, snapshot);
+            }
+
+            List<Entity> pending = this.getCrawlable(snapshot)
+                    .stream()
+                    .filter(x -> this.getRefreshed(snapshot, x) < stale)
+                    .sorted(Comparator.comparingLong(x -> this.getRefreshed(snapshot, x)))
+                    .limit(batch)
+                    .collect(Collectors.toList());
+
+            for (Entity entity : pending) {
+                this.crawl(connection, snapshot, entity.getCatalog(), entity.getSchema());
+                this.save(connection, snapshot);
+            }
+        } catch (SQLException ex) {
+            LOG.log(Level.WARN, "Fail crawling " + connection.getName() + ": " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Crawl the tables and columns of a schema.
+     *
+     * @param connection Connection
+     * @param snapshot Snapshot
+     * @param catalog Catalog
+     * @param schema Schema
+     * @return Schema snapshot.
+     * @throws SQLException
+     */
+    private SchemaSnapshot crawl(
+            Connection connection,
+            Snapshot snapshot,
+            String catalog,
+            String schema) throws SQLException {
+
+        SchemaSnapshot crawled = new SchemaSnapshot(
+                this.getKey(catalog, schema),
+                connectionService.getTables(connection, catalog, schema),
+                connectionService.getColumns(connection, catalog, schema));
+
+        snapshot.getContent().put(crawled.getCatalogSchema(), crawled);
+
+        return crawled;
+    }
+
+    /**
+     * List the catalogs and schemas of a connection.
+     *
+     * @param connection Connection
+     * @param snapshot Snapshot
+     * @throws SQLException
+     */
+    private void list(
+            Connection connection,
+            Snapshot snapshot) throws SQLException {
+
+        snapshot.setCatalog(connectionService.getCatalogs(connection));
+        snapshot.setSchema(connectionService.getSchemas(connection));
+        snapshot.setRefreshed(System.currentTimeMillis());
+    }
+
+    /**
+     * Get when the schema of an entity was crawled.
+     *
+     * @param snapshot Snapshot
+     * @param entity Schema or catalog.
+     * @return Crawl time, zero when never crawled.
+     */
+    private long getRefreshed(Snapshot snapshot, Entity entity) {
+        SchemaSnapshot schema = snapshot.getContent().get(this.getKey(entity.getCatalog(), entity.getSchema()));
+
+        return schema == null ? 0 : schema.getRefreshed();
+    }
+
+    /**
+     * Get the entities holding tables, schemas or catalogs when the
+     * database has no schema.
+     *
+     * @param snapshot Snapshot
+     * @return Entities.
+     */
+    private List<Entity> getCrawlable(Snapshot snapshot) {
+        if (!snapshot.getSchema().isEmpty()) {
+            return snapshot.getSchema();
+        }
+
+        return snapshot.getCatalog();
+    }
+
+    /**
+     * Get the snapshot of a schema, crawling it when never crawled.
+     *
+     * @param connection Connection
+     * @param catalog Catalog
+     * @param schema Schema
+     * @return Schema snapshot.
+     */
+    private SchemaSnapshot getSchema(
+            Connection connection,
+            String catalog,
+            String schema) {
+
+        Snapshot snapshot = this.getSnapshot(connection, false);
+        SchemaSnapshot content = snapshot.getContent().get(this.getKey(catalog, schema));
+
+        if (content == null) {
+            try {
+                content = this.crawl(connection, snapshot, catalog, schema);
+                this.save(connection, snapshot);
+            } catch (SQLException ex) {
+                LOG.log(Level.ERROR, "Fail getting tables of " + connection.getName(), ex);
+                content = new SchemaSnapshot(this.getKey(catalog, schema), new ArrayList(), new ConcurrentHashMap());
+            }
+        }
+
+        return content;
+    }
+
+    /**
+     * Get the snapshot of a connection, loading it from disk or listing its
+     * catalogs and schemas when needed.
+     *
+     * @param connection Connection
+     * @param list Identifies if catalogs and schemas should be listed again.
+     * @return Snapshot.
+     */
+    private Snapshot getSnapshot(Connection connection, boolean list) {
+        Snapshot snapshot = snapshots.computeIfAbsent(connection.getId(), x -> this.load(connection));
+
+        if (list || snapshot.getRefreshed() == 0) {
+            synchronized (snapshot) {
+                if (list || snapshot.getRefreshed() == 0) {
+                    try {
+                        this.list(connection, snapshot);
+                        this.save(connection, snapshot);
+                    } catch (SQLException ex) {
+                        LOG.log(Level.ERROR, "Fail getting metadata of " + connection.getName(), ex);
+                    }
+                }
+            }
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Load a snapshot from disk.
+     *
+     * @param connection Connection
+     * @return Snapshot, empty when not found.
+     */
+    private Snapshot load(Connection connection) {
+        File file = this.getFile(connection.getId());
+
+        if (file.isFile()) {
+            try (Reader reader = new InputStreamReader(
+                    new GZIPInputStream(new BufferedInputStream(new FileInputStream(file))),
+                    StandardCharsets.UTF_8)) {
+
+                return this.toSnapshot(new JSONObject(new JSONTokener(reader)));
+            } catch (IOException | JSONException | IllegalArgumentException ex) {
+                LOG.log(Level.WARN, "Discarding metadata snapshot of " + connection.getName() + ": " + ex.getMessage());
+            }
+        }
+
+        return new Snapshot();
+    }
+
+    /**
+     * Save a snapshot to disk.
+     *
+     * @param connection Connection
+     * @param snapshot Snapshot
+     */
+    private void save(Connection connection, Snapshot snapshot) {
+        File file = this.getFile(connection.getId());
+        File temp = new File(file.getPath() + ".tmp");
+
+        synchronized (snapshot) {
+            try {
+                File folder = file.getParentFile();
+
+                //The snapshot describes the databases, so only the owner can read it.
+                if (!folder.isDirectory()) {
+                    if (!folder.mkdirs()) {
+                        throw new IOException("Fail creating metadata folder " + folder.getAbsolutePath());
+                    }
+
+                    folder.setReadable(false, false);
+                    folder.setReadable(true, true);
+                    folder.setWritable(false, false);
+                    folder.setWritable(true, true);
+                    folder.setExecutable(false, false);
+                    folder.setExecutable(true, true);
+                }
+
+                try (Writer writer = new OutputStreamWriter(
+                        new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(temp))),
+                        StandardCharsets.UTF_8)) {
+
+                    this.toJSON(snapshot).write(writer);
+                }
+
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException ex) {
+                LOG.log(Level.ERROR, "Fail saving metadata snapshot of " + connection.getName(), ex);
+            }
+        }
+    }
+
+    /**
+     * Get the snapshot file of a connection.
+     *
+     * @param id Connection ID.
+     * @return Snapshot file.
+     */
+    private File getFile(Long id) {
+        return new File(path, "hanger-metadata-" + id + ".json.gz");
+    }
+
+    /**
+     * Get the JSON of a snapshot.
+     *
+     * @param snapshot Snapshot
+     * @return JSON
+     */
+    private JSONObject toJSON(Snapshot snapshot) {
+        JSONObject json = new JSONObject();
+        JSONObject content = new JSONObject();
+
+        snapshot.getContent().forEach((key, schema) -> {
+            JSONObject value = new JSONObject();
+
+            value.put("catalogSchema", schema.getCatalogSchema());
+            value.put("refreshed", schema.getRefreshed());
+            value.put("table", this.toJSON(schema.getTable()));
+            value.put("column", this.toJSONColumn(schema.getColumn()));
+            value.put("primaryKey", this.toJSONColumn(schema.getPrimaryKey()));
+
+            JSONObject index = new JSONObject();
+
+            schema.getIndex().forEach((table, indexes) -> {
+                JSONArray list = new JSONArray();
+
+                indexes.forEach(x -> list.put(new JSONObject()
+                        .put("nonUnique", x.isNonUnique())
+                        .put("qualifier", x.getQualifier())
+                        .put("name", x.getName())
+                        .put("type", x.getType())
+                        .put("position", x.getPosition())
+                        .put("columnName", x.getColumnName())
+                        .put("ascOrDesc", x.getAscOrDesc())
+                        .put("cardinality", x.getCardinality())));
+
+                index.put(table, list);
+            });
+
+            value.put("index", index);
+            content.put(key, value);
+        });
+
+        json.put("refreshed", snapshot.getRefreshed());
+        json.put("catalog", this.toJSON(snapshot.getCatalog()));
+        json.put("schema", this.toJSON(snapshot.getSchema()));
+        json.put("content", content);
+
+        return json;
+    }
+
+    /**
+     * Get the JSON of an entity list.
+     *
+     * @param entities Entity list
+     * @return JSON
+     */
+    private JSONArray toJSON(List<Entity> entities) {
+        JSONArray json = new JSONArray();
+
+        entities.forEach(x -> json.put(new JSONObject()
+                .put("catalog", x.getCatalog())
+                .put("schema", x.getSchema())
+                .put("table", x.getTable())
+                .put("type", x.getType())
+                .put("target", x.getTarget() == null ? null : x.getTarget().name())));
+
+        return json;
+    }
+
+    /**
+     * Get the JSON of the columns by table.
+     *
+     * @param columns Columns by table
+     * @return JSON
+     */
+    private JSONObject toJSONColumn(Map<String, List<Column>> columns) {
+        JSONObject json = new JSONObject();
+
+        columns.forEach((table, list) -> {
+            JSONArray array = new JSONArray();
+
+            list.forEach(x -> array.put(new JSONObject()
+                    .put("position", x.getPosition())
+                    .put("name", x.getName())
+                    .put("type", x.getType())
+                    .put("size", x.getSize())
+                    .put("decimal", x.getDecimal())
+                    .put("remark", x.getRemark())));
+
+            json.put(table, array);
+        });
+
+        return json;
+    }
+
+    /**
+     * Get a snapshot from JSON.
+     *
+     * @param json JSON
+     * @return Snapshot
+     */
+    private Snapshot toSnapshot(JSONObject json) {
+        Snapshot snapshot = new Snapshot();
+        JSONObject content = json.getJSONObject("content");
+
+        snapshot.setRefreshed(json.getLong("refreshed"));
+        snapshot.setCatalog(this.toEntity(json.getJSONArray("catalog")));
+        snapshot.setSchema(this.toEntity(json.getJSONArray("schema")));
+
+        for (String key : content.keySet()) {
+            JSONObject value = content.getJSONObject(key);
+            JSONObject index = value.getJSONObject("index");
+            SchemaSnapshot schema = new SchemaSnapshot(
+                    value.getString("catalogSchema"),
+                    this.toEntity(value.getJSONArray("table")),
+                    this.toColumn(value.getJSONObject("column")));
+
+            schema.setRefreshed(value.getLong("refreshed"));
+            schema.getPrimaryKey().putAll(this.toColumn(value.getJSONObject("primaryKey")));
+
+            for (String table : index.keySet()) {
+                List<Index> indexes = new ArrayList();
+
+                for (Object item : index.getJSONArray(table)) {
+                    JSONObject x = (JSONObject) item;
+
+                    indexes.add(new Index(
+                            x.getBoolean("nonUnique"),
+                            x.optString("qualifier", null),
+                            x.optString("name", null),
+                            x.optString("type", null),
+                            x.getInt("position"),
+                            x.optString("columnName", null),
+                            x.optString("ascOrDesc", null),
+                            x.getInt("cardinality")));
+                }
+
+                schema.getIndex().put(table, indexes);
+            }
+
+            snapshot.getContent().put(key, schema);
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Get an entity list from JSON.
+     *
+     * @param json JSON
+     * @return Entity list
+     */
+    private List<Entity> toEntity(JSONArray json) {
+        List<Entity> entities = new ArrayList();
+
+        for (Object item : json) {
+            JSONObject x = (JSONObject) item;
+
+            entities.add(new Entity(
+                    x.optString("catalog", null),
+                    x.optString("schema", null),
+                    x.optString("table", null),
+                    x.optString("type", null),
+                    x.has("target") ? Database.valueOf(x.getString("target")) : null));
+        }
+
+        return entities;
+    }
+
+    /**
+     * Get the columns by table from JSON.
+     *
+     * @param json JSON
+     * @return Columns by table
+     */
+    private Map<String, List<Column>> toColumn(JSONObject json) {
+        Map<String, List<Column>> columns = new LinkedHashMap();
+
+        for (String table : json.keySet()) {
+            List<Column> list = new ArrayList();
+
+            for (Object item : json.getJSONArray(table)) {
+                JSONObject x = (JSONObject) item;
+
+                list.add(new Column(
+                        x.getInt("position"),
+                        x.optString("name", null),
+                        x.optString("type", null),
+                        x.getInt("size"),
+                        x.getInt("decimal"),
+                        x.optString("remark", null)));
+            }
+
+            columns.put(table, list);
+        }
+
+        return columns;
+    }
+
+    /**
+     * Get a qualified key.
+     *
+     * @param catalog Catalog
+     * @param schema Schema
+     * @return Key.
+     */
+    private String getKey(String catalog, String schema) {
+        List<String> key = new ArrayList();
+
+        if (catalog != null && !"null".equals(catalog) && !catalog.isEmpty()) {
+            key.add(catalog);
+        }
+
+        if (schema != null && !"null".equals(schema) && !schema.isEmpty()) {
+            key.add(schema);
+        }
+
+        return String.join(".", key);
+    }
+
+    /**
+     * Represents the metadata of a connection.
+     */
+    static class Snapshot {
+
+        private volatile long refreshed;
+        private volatile List<Entity> catalog = new ArrayList();
+        private volatile List<Entity> schema = new ArrayList();
+        private final Map<String, SchemaSnapshot> content = new ConcurrentHashMap();
+
+        public long getRefreshed() {
+            return refreshed;
+        }
+
+        public void setRefreshed(long refreshed) {
+            this.refreshed = refreshed;
+        }
+
+        public List<Entity> getCatalog() {
+            return catalog;
+        }
+
+        public void setCatalog(List<Entity> catalog) {
+            this.catalog = catalog;
+        }
+
+        public List<Entity> getSchema() {
+            return schema;
+        }
+
+        public void setSchema(List<Entity> schema) {
+            this.schema = schema;
+        }
+
+        public Map<String, SchemaSnapshot> getContent() {
+            return content;
+        }
+    }
+
+    /**
+     * Represents the metadata of a schema.
+     */
+    static class SchemaSnapshot {
+
+        private final String catalogSchema;
+        private final List<Entity> table;
+        private final Map<String, List<Column>> column;
+        private final Map<String, List<Column>> primaryKey = new ConcurrentHashMap();
+        private final Map<String, List<Index>> index = new ConcurrentHashMap();
+        private volatile long refreshed = System.currentTimeMillis();
+        private volatile TableIndex sorted;
+
+        public SchemaSnapshot(
+                String catalogSchema,
+                List<Entity> table,
+                Map<String, List<Column>> column) {
+
+            this.catalogSchema = catalogSchema;
+            this.table = table;
+            this.column = new ConcurrentHashMap(column);
+        }
+
+        public String getCatalogSchema() {
+            return catalogSchema;
+        }
+
+        public List<Entity> getTable() {
+            return table;
+        }
+
+        public Map<String, List<Column>> getColumn() {
+            return column;
+        }
+
+        public Map<String, List<Column>> getPrimaryKey() {
+            return primaryKey;
+        }
+
+        public Map<String, List<Index>> getIndex() {
+            return index;
+        }
+
+        public long getRefreshed() {
+            return refreshed;
+        }
+
+        public void setRefreshed(long refreshed) {
+            this.refreshed = refreshed;
+        }
+
+        /**
+         * Get the tables sorted by name, built on first use.
+         *
+         * @return Table index.
+         */
+        public TableIndex getSorted() {
+            if (sorted == null) {
+                sorted = new TableIndex(table);
+            }
+
+            return sorted;
+        }
+    }
+
+    /**
+     * Tables sorted by lower case name, searched by prefix.
+     */
+    static class TableIndex {
+
+        private final String[] name;
+        private final Entity[] table;
+
+        public TableIndex(List<Entity> tables) {
+            List<Entity> sorted = new ArrayList(tables);
+
+            sorted.sort(Comparator.comparing(x -> x.getTable().toLowerCase()));
+
+            this.table = sorted.toArray(new Entity[sorted.size()]);
+            this.name = new String[table.length];
+
+            for (int i = 0; i < table.length; i++) {
+                name[i] = table[i].getTable().toLowerCase();
+            }
+        }
+
+        /**
+         * Get the position of the first table starting with a prefix.
+         *
+         * @param prefix Prefix.
+         * @return Position.
+         */
+        public int from(String prefix) {
+            return this.lowerBound(prefix.toLowerCase());
+        }
+
+        /**
+         * Get the position after the last table starting with a prefix.
+         *
+         * @param prefix Prefix.
+         * @return Position.
+         */
+        public int to(String prefix) {
+            return this.lowerBound(prefix.toLowerCase() + Character.MAX_VALUE);
+        }
+
+        /**
+         * Get a range of tables.
+         *
+         * @param from First position, inclusive.
+         * @param to Last position, exclusive.
+         * @return Tables.
+         */
+        public List<Entity> getTable(int from, int to) {
+            return Arrays.asList(table).subList(from, to);
+        }
+
+        /**
+         * Get the position of the first name not lower than a key.
+         *
+         * @param key Key.
+         * @return Position.
+         */
+        private int lowerBound(String key) {
+            int low = 0;
+            int high = name.length;
+
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+
+                if (name[middle].compareTo(key) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+
+            return low;
+        }
+    }
+
+    /**
+     * Represents a page of tables.
+     */
+    public static class TablePage {
+
+        private final List<Entity> table;
+        private final int offset;
+        private final int total;
+
+        public TablePage(List<Entity> table, int offset, int total) {
+            this.table = table;
+            this.offset = offset;
+            this.total = total;
+        }
+
+        public List<Entity> getTable() {
+            return table;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        /**
+         * Identifies if there are tables after this page.
+         *
+         * @return There are tables after this page.
+         */
+        public boolean hasMore() {
+            return offset + table.size() < total;
+        }
+    }
+}
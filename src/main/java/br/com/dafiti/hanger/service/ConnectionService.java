@@ -31,18 +31,28 @@ import br.com.dafiti.hanger.option.Database;
 import br.com.dafiti.hanger.option.Status;
 import br.com.dafiti.hanger.repository.ConnectionRepository;
 import br.com.dafiti.hanger.security.PasswordCryptor;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Serializable;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.security.Principal;
 import java.sql.Driver;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import java.util.regex.Matcher;
@@ -53,6 +63,7 @@ import org.apache.logging.log4j.Logger;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.Caching;
@@ -75,6 +86,9 @@ public class ConnectionService {
     private final ConfigurationService configurationService;
     private final Map<String, PreparedStatement> inflight;
     private final AuditorService auditorService;
+    private final QueryCacheService queryCacheService;
+    private final int fetchSize;
+    private final int chunkSize;
 
     private static final Logger LOG = LogManager.getLogger(ConnectionService.class.getName());
 
@@ -84,14 +98,20 @@ public class ConnectionService {
             PasswordCryptor passwordCryptor,
             JdbcTemplate jdbcTemplate,
             AuditorService auditorService,
-            ConfigurationService configurationService) {
+            ConfigurationService configurationService,
+            QueryCacheService queryCacheService,
+            @Value("${hanger.workbench.fetch.size:1000}") int fetchSize,
+            @Value("${hanger.workbench.stream.chunk:500}") int chunkSize) {
 
         this.connectionRepository = connectionRepository;
         this.passwordCryptor = passwordCryptor;
         this.jdbcTemplate = jdbcTemplate;
         this.auditorService = auditorService;
         this.configurationService = configurationService;
-        this.inflight = new HashMap();
+        this.queryCacheService = queryCacheService;
+        this.inflight = new ConcurrentHashMap();
+        this.fetchSize = fetchSize;
+        this.chunkSize = Math.max(1, chunkSize);
     }
 
     @Cacheable(value = "connections")
@@ -248,16 +268,13 @@ public class ConnectionService {
      *
      * @param connection Connection
      * @return Database metadata
+     * @throws SQLException
      */
-    @Cacheable(value = "catalogs", key = "#connection")
-    public List<Entity> getCatalogs(Connection connection) {
+    public List<Entity> getCatalogs(Connection connection) throws SQLException {
         List catalog = new ArrayList();
-        DataSource datasource = this.getDataSource(connection);
 
-        try {
-            ResultSet catalogs = datasource.getConnection()
-                    .getMetaData()
-                    .getCatalogs();
+        try (java.sql.Connection conn = this.getDataSource(connection).getConnection();
+                ResultSet catalogs = conn.getMetaData().getCatalogs()) {
 
             while (catalogs.next()) {
                 String catalogName = catalogs.getString("TABLE_CAT");
@@ -273,14 +290,6 @@ public class ConnectionService {
                                     connection.getTarget()));
                 }
             }
-        } catch (SQLException ex) {
-            LOG.log(Level.ERROR, "Fail getting metadata of " + connection.getName(), ex);
-        } finally {
-            try {
-                datasource.getConnection().close();
-            } catch (SQLException ex) {
-                LOG.log(Level.ERROR, "Fail closing connection", ex.getMessage());
-            }
         }
 
         return catalog;
@@ -291,16 +300,13 @@ public class ConnectionService {
      *
      * @param connection Connection
      * @return Database metadata
+     * @throws SQLException
      */
-    @Cacheable(value = "schemas", key = "#connection")
-    public List<Entity> getSchemas(Connection connection) {
+    public List<Entity> getSchemas(Connection connection) throws SQLException {
         List schema = new ArrayList();
-        DataSource datasource = this.getDataSource(connection);
 
-        try {
-            ResultSet schemas = datasource.getConnection()
-                    .getMetaData()
-                    .getSchemas();
+        try (java.sql.Connection conn = this.getDataSource(connection).getConnection();
+                ResultSet schemas = conn.getMetaData().getSchemas()) {
 
             while (schemas.next()) {
                 String catalogName = schemas.getString("TABLE_CATALOG");
@@ -318,15 +324,6 @@ public class ConnectionService {
                                     connection.getTarget()));
                 }
             }
-
-        } catch (SQLException ex) {
-            LOG.log(Level.ERROR, "Fail getting metadata of " + connection.getName(), ex);
-        } finally {
-            try {
-                datasource.getConnection().close();
-            } catch (SQLException ex) {
-                LOG.log(Level.ERROR, "Fail closing connection", ex.getMessage());
-            }
         }
 
         return schema;
@@ -339,47 +336,53 @@ public class ConnectionService {
      * @param catalog String
      * @param schema String
      * @return Database metadata
+     * @throws SQLException
      */
-    @Cacheable(value = "tables", key = "{#connection, #catalog, #schema}")
-    public List<Entity> getTables(Connection connection, String catalog, String schema) {
+    public List<Entity> getTables(
+            Connection connection,
+            String catalog,
+            String schema) throws SQLException {
+
         List table = new ArrayList();
-        DataSource datasource = this.getDataSource(connection);
 
-        try {
-            ResultSet tables = datasource.getConnection()
-                    .getMetaData()
-                    .getTables(
-                            ("null".equals(catalog) || catalog.isEmpty()) ? null : catalog,
-                            ("null".equals(schema) || schema.isEmpty()) ? null : schema,
-                            "%",
-                            new String[]{"TABLE", "EXTERNAL TABLE"});
+        try (java.sql.Connection conn = this.getDataSource(connection).getConnection();
+                ResultSet tables = conn.getMetaData().getTables(
+                        this.getPattern(catalog),
+                        this.getPattern(schema),
+                        "%",
+                        new String[]{"TABLE", "EXTERNAL TABLE"})) {
 
             while (tables.next()) {
-                if (this.isDisplayLimit(table.size())) {
-                    break;
-                } else {
-                    table.add(
-                            new Entity(
-                                    tables.getString("TABLE_CAT"),
-                                    tables.getString("TABLE_SCHEM"),
-                                    tables.getString("TABLE_NAME"),
-                                    tables.getString("TABLE_TYPE"),
-                                    connection.getTarget()));
-                }
-            }
-        } catch (SQLException ex) {
-            LOG.log(Level.ERROR, "Fail getting tables of " + connection.getName(), ex);
-        } finally {
-            try {
-                datasource.getConnection().close();
-            } catch (SQLException ex) {
-                LOG.log(Level.ERROR, "Fail closing connection", ex.getMessage());
+                table.add(
+                        new Entity(
+                                tables.getString("TABLE_CAT"),
+                                tables.getString("TABLE_SCHEM"),
+                                tables.getString("TABLE_NAME"),
+                                tables.getString("TABLE_TYPE"),
+                                connection.getTarget()));
             }
         }
 
         return table;
     }
 
+    /**
+     * Get columns of every table of a schema in a single metadata call.
+     *
+     * @param connection Connection
+     * @param catalog Catalog
+     * @param schema Schema
+     * @return Columns by table name.
+     * @throws SQLException
+     */
+    public Map<String, List<Column>> getColumns(
+            Connection connection,
+            String catalog,
+            String schema) throws SQLException {
+
+        return this.getColumnsByTable(connection, catalog, schema, "%");
+    }
+
     /**
      * Get column.
      *
@@ -388,28 +391,45 @@ public class ConnectionService {
      * @param schema Schema
      * @param table Table
      * @return Table columns
+     * @throws SQLException
      */
     public List<Column> getColumns(
             Connection connection,
             String catalog,
             String schema,
-            String table) {
+            String table) throws SQLException {
 
-        List column = new ArrayList();
-        DataSource datasource = this.getDataSource(connection);
+        return this.getColumnsByTable(connection, catalog, schema, table)
+                .getOrDefault(table, new ArrayList());
+    }
 
-        try {
-            ResultSet columns = datasource.getConnection()
-                    .getMetaData()
-                    .getColumns(
-                            ("null".equals(catalog) || catalog.isEmpty()) ? null : catalog,
-                            ("null".equals(schema) || schema.isEmpty()) ? null : schema,
-                            table,
-                            null
-                    );
+    /**
+     * Get columns by table.
+     *
+     * @param connection Connection
+     * @param catalog Catalog
+     * @param schema Schema
+     * @param table Table name pattern.
+     * @return Columns by table name.
+     * @throws SQLException
+     */
+    private Map<String, List<Column>> getColumnsByTable(
+            Connection connection,
+            String catalog,
+            String schema,
+            String table) throws SQLException {
+
+        Map<String, List<Column>> column = new HashMap();
+
+        try (java.sql.Connection conn = this.getDataSource(connection).getConnection();
+                ResultSet columns = conn.getMetaData().getColumns(
+                        this.getPattern(catalog),
+                        this.getPattern(schema),
+                        table,
+                        null)) {
 
             while (columns.next()) {
-                column.add(
+                column.computeIfAbsent(columns.getString("TABLE_NAME"), x -> new ArrayList()).add(
                         new Column(
                                 columns.getInt("ORDINAL_POSITION"),
                                 columns.getString("COLUMN_NAME"),
@@ -418,14 +438,6 @@ public class ConnectionService {
                                 columns.getInt("DECIMAL_DIGITS"),
                                 columns.getString("REMARKS")));
             }
-        } catch (SQLException ex) {
-            LOG.log(Level.ERROR, "Fail getting columns of " + connection.getName(), ex);
-        } finally {
-            try {
-                datasource.getConnection().close();
-            } catch (SQLException ex) {
-                LOG.log(Level.ERROR, "Fail closing connection", ex.getMessage());
-            }
         }
 
         return column;
@@ -439,20 +451,21 @@ public class ConnectionService {
      * @param schema Schema
      * @param table Table
      * @return Table primary key
+     * @throws SQLException
      */
     public List<Column> getPrimaryKey(
             Connection connection,
             String catalog,
             String schema,
-            String table) {
+            String table) throws SQLException {
 
         List columns = new ArrayList();
-        DataSource datasource = this.getDataSource(connection);
 
-        try {
-            ResultSet tables = datasource.getConnection()
-                    .getMetaData()
-                    .getPrimaryKeys(catalog, schema, table);
+        try (java.sql.Connection conn = this.getDataSource(connection).getConnection();
+                ResultSet tables = conn.getMetaData().getPrimaryKeys(
+                        this.getPattern(catalog),
+                        this.getPattern(schema),
+                        table)) {
 
             while (tables.next()) {
                 columns.add(
@@ -460,19 +473,22 @@ public class ConnectionService {
                                 tables.getInt("KEY_SEQ"),
                                 tables.getString("COLUMN_NAME")));
             }
-        } catch (SQLException ex) {
-            LOG.log(Level.ERROR, "Fail getting primary key of " + connection.getName(), ex);
-        } finally {
-            try {
-                datasource.getConnection().close();
-            } catch (SQLException ex) {
-                LOG.log(Level.ERROR, "Fail closing connection", ex.getMessage());
-            }
         }
 
         return columns;
     }
 
+    /**
+     * Get a metadata filter, null when the catalog or schema is not
+     * informed.
+     *
+     * @param value Catalog or schema.
+     * @return Metadata filter.
+     */
+    private String getPattern(String value) {
+        return (value == null || "null".equals(value) || value.isEmpty()) ? null : value;
+    }
+
     /**
      * Executes a query and returns a QueryResultSet instance.
      *
@@ -486,13 +502,73 @@ public class ConnectionService {
             String query,
             User user) {
 
-        QueryResultSet queryResultSet = new QueryResultSet();
-        DataSource datasource = this.getDataSource(connection);
+        return this.getQueryResultSet(
+                connection,
+                query,
+                user,
+                UUID.randomUUID().toString(),
+                new QueryResultSet());
+    }
+
+    /**
+     * Executes a query filling a QueryResultSet instance.
+     *
+     * @param connection Connection.
+     * @param query Query.
+     * @param user User.
+     * @param id Query ID, used to cancel it.
+     * @param queryResultSet QueryResultSet to be filled, its buffer is
+     * available as soon as the first row arrives.
+     * @return QueryResultSet instance.
+     */
+    public QueryResultSet getQueryResultSet(
+            Connection connection,
+            String query,
+            User user,
+            String id,
+            QueryResultSet queryResultSet) {
+
+        return this.getQueryResultSet(connection, query, user, id, queryResultSet, true);
+    }
+
+    /**
+     * Executes a query filling a QueryResultSet instance.
+     *
+     * @param connection Connection.
+     * @param query Query.
+     * @param user User.
+     * @param id Query ID, used to cancel it.
+     * @param queryResultSet QueryResultSet to be filled, its buffer is
+     * available as soon as the first row arrives.
+     * @param cache Identifies if the result cache can be used.
+     * @return QueryResultSet instance.
+     */
+    public QueryResultSet getQueryResultSet(
+            Connection connection,
+            String query,
+            User user,
+            String id,
+            QueryResultSet queryResultSet,
+            boolean cache) {
+
+        String key = this.getInflightKey(user.getUsername(), id);
+        String original = query;
+        int ttl = queryCacheService.getTtl(connection, original);
+        String cacheStatus = (ttl == 0) ? null : (cache ? "MISS" : "BYPASS");
 
         try {
+            //Serves stored queries with a cache TTL from the result cache.
+            if (cache && ttl > 0 && queryCacheService.get(connection, original, queryResultSet)) {
+                queryResultSet.setCached(true);
+                cacheStatus = "HIT";
+
+                return queryResultSet;
+            }
+
             //Sets a connection to target.
-            jdbcTemplate.setDataSource(datasource);
-            jdbcTemplate.setMaxRows(this.configurationService.getMaxRows());
+            JdbcTemplate template = new JdbcTemplate(this.getDataSource(connection));
+            template.setMaxRows(this.configurationService.getMaxRows());
+            template.setFetchSize(fetchSize);
 
             //Sets default security behavior. 
             if (connection.getTarget().equals(Database.POSTGRES)
@@ -510,22 +586,19 @@ public class ConnectionService {
             //Defines a final statement to be excecuted. 
             final String statement = query;
 
-            jdbcTemplate.query((java.sql.Connection conn) -> {
-                //Creates READ_ONLY and TYPE_FORWARD_ONLY prepared statement.
-                PreparedStatement preparedStatement = conn.prepareStatement(
-                        statement,
-                        ResultSet.TYPE_FORWARD_ONLY,
-                        ResultSet.CONCUR_READ_ONLY);
-
-                //Salves the statement being executed.
-                inflight.put(user.getUsername(), preparedStatement);
-
-                return preparedStatement;
-            }, (ResultSet resultSet) -> {
-                QueryResultSetRow resultSetRow = new QueryResultSetRow();
-
-                //Identifies if should retrieve metadata. 
-                if (queryResultSet.getHeader().isEmpty()) {
+            try {
+                template.query((java.sql.Connection conn) -> {
+                    //Creates READ_ONLY and TYPE_FORWARD_ONLY prepared statement.
+                    PreparedStatement preparedStatement = conn.prepareStatement(
+                            statement,
+                            ResultSet.TYPE_FORWARD_ONLY,
+                            ResultSet.CONCUR_READ_ONLY);
+
+                    //Salves the statement being executed.
+                    inflight.put(key, preparedStatement);
+
+                    return preparedStatement;
+                }, (ResultSet resultSet) -> {
                     //Retrives the metadata. 
                     ResultSetMetaData metaData = resultSet.getMetaData();
 
@@ -545,29 +618,31 @@ public class ConnectionService {
                                 .getClassName()
                                 .put(metaData.getColumnName(i), metaData.getColumnClassName(i));
                     }
-                }
 
-                //Sets columns value to the row. 
-                for (String column : queryResultSet.getHeader()) {
-                    resultSetRow
-                            .getColumn()
-                            .add(resultSet.getString(column));
-                }
+                    //Reads each row by index into typed columns. 
+                    ResultSetBuffer buffer = new ResultSetBuffer(metaData);
+                    queryResultSet.setBuffer(buffer);
 
-                //Sets the row to the resultset. 
-                queryResultSet
-                        .getRow()
-                        .add(resultSetRow);
+                    while (resultSet.next()) {
+                        buffer.read(resultSet);
+                    }
 
+                    return buffer;
+                });
+            } finally {
                 //Removes the statement from inflight when a query finishes.
-                inflight.remove(user.getUsername());
-            });
+                inflight.remove(key);
+            }
 
             //Gets query elapsed time.
             queryResultSet.setElapsedTime(watch.getTotalTimeMillis());
 
             //Stops the query metter.
             watch.stop();
+
+            if (ttl > 0) {
+                queryCacheService.put(connection, original, queryResultSet, ttl);
+            }
         } catch (DataAccessException ex) {
             queryResultSet.setError(new Message().getErrorMessage(ex));
 
@@ -582,28 +657,234 @@ public class ConnectionService {
                 auditorData.addData("error", queryResultSet.getError());
             }
 
+            if (cacheStatus != null) {
+                auditorData.addData("cache", cacheStatus);
+            }
+
             auditorService.publish("QUERY", auditorData.getData());
+        }
 
-            try {
-                //Close the connection. 
-                jdbcTemplate.getDataSource().getConnection().close();
-            } catch (SQLException ex) {
-                LOG.log(Level.ERROR, "Fail closing connection: ", ex);
+        return queryResultSet;
+    }
+
+    /**
+     * Executes a query and writes its resultset as NDJSON.
+     *
+     * The first line holds the header, type and className of each column,
+     * each following line holds a row as an array and the last line holds
+     * the row count and the elapsed time, or the error. Rows are fetched and
+     * flushed in chunks, so memory does not grow with the resultset.
+     *
+     * @param connection Connection.
+     * @param query Query.
+     * @param user User.
+     * @param output Output stream.
+     * @throws IOException
+     */
+    public void streamQueryResultSet(
+            Connection connection,
+            String query,
+            User user,
+            OutputStream output) throws IOException {
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+
+        try {
+            //Starts the query metter.
+            StopWatch watch = new StopWatch();
+            watch.start();
+
+            long rows = this.streamQuery(connection, query, user, new QueryHandler() {
+                long count = 0;
+
+                @Override
+                public void header(List<String> header, Map<String, String> type, Map<String, String> className) throws IOException {
+                    writer.write(new JSONObject()
+                            .put("header", header)
+                            .put("type", type)
+                            .put("className", className)
+                            .toString());
+                    writer.write('\n');
+                    writer.flush();
+                }
+
+                @Override
+                public void row(String[] row) throws IOException {
+                    writer.write('[');
+
+                    for (int i = 0; i < row.length; i++) {
+                        if (i > 0) {
+                            writer.write(',');
+                        }
+
+                        writer.write(row[i] == null ? "null" : JSONObject.quote(row[i]));
+                    }
+
+                    writer.write("]\n");
+
+                    if (++count % chunkSize == 0) {
+                        writer.flush();
+                    }
+                }
+            });
+
+            watch.stop();
+
+            writer.write(new JSONObject()
+                    .put("rows", rows)
+                    .put("elapsedTime", watch.getTotalTimeMillis())
+                    .toString());
+            writer.write('\n');
+        } catch (DataAccessException | SQLException ex) {
+            writer.write(new JSONObject()
+                    .put("error", new Message().getErrorMessage(ex))
+                    .toString());
+            writer.write('\n');
+        } finally {
+            writer.flush();
+        }
+    }
+
+    /**
+     * Executes a query passing each row to a handler as soon as it is fetched.
+     *
+     * @param connection Connection.
+     * @param query Query.
+     * @param user User.
+     * @param handler QueryHandler.
+     * @return Row count.
+     * @throws SQLException
+     * @throws IOException
+     */
+    public long streamQuery(
+            Connection connection,
+            String query,
+            User user,
+            QueryHandler handler) throws SQLException, IOException {
+
+        long rows = 0;
+        String error = "";
+        String key = this.getInflightKey(user.getUsername(), UUID.randomUUID().toString());
+
+        try {
+            //Sets default security behavior. 
+            if (connection.getTarget().equals(Database.POSTGRES)
+                    || connection.getTarget().equals(Database.ATHENA)
+                    || connection.getTarget().equals(Database.REDSHIFT)) {
+                query = this.evaluate(query);
             }
+
+            try (java.sql.Connection conn = this.getDataSource(connection).getConnection()) {
+                //Postgres and Redshift only use a cursor inside a transaction.
+                if (connection.getTarget().equals(Database.POSTGRES)
+                        || connection.getTarget().equals(Database.REDSHIFT)) {
+                    conn.setAutoCommit(false);
+                }
+
+                //Creates READ_ONLY and TYPE_FORWARD_ONLY prepared statement.
+                try (PreparedStatement preparedStatement = conn.prepareStatement(
+                        query,
+                        ResultSet.TYPE_FORWARD_ONLY,
+                        ResultSet.CONCUR_READ_ONLY)) {
+
+                    preparedStatement.setFetchSize(fetchSize);
+                    preparedStatement.setMaxRows(this.configurationService.getMaxRows());
+
+                    //Salves the statement being executed.
+                    inflight.put(key, preparedStatement);
+
+                    try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                        ResultSetMetaData metaData = resultSet.getMetaData();
+                        int columns = metaData.getColumnCount();
+                        List<String> header = new ArrayList();
+                        Map<String, String> type = new HashMap();
+                        Map<String, String> className = new HashMap();
+
+                        for (int i = 1; i <= columns; i++) {
+                            header.add(metaData.getColumnName(i));
+                            type.put(metaData.getColumnName(i), metaData.getColumnTypeName(i));
+                            className.put(metaData.getColumnName(i), metaData.getColumnClassName(i));
+                        }
+
+                        handler.header(header, type, className);
+
+                        //Hands each row over as soon as it is fetched. 
+                        String[] row = new String[columns];
+
+                        while (resultSet.next()) {
+                            for (int i = 1; i <= columns; i++) {
+                                row[i - 1] = resultSet.getString(i);
+                            }
+
+                            handler.row(row);
+                            rows++;
+                        }
+                    }
+                } finally {
+                    //Removes the statement from inflight when a query finishes.
+                    inflight.remove(key);
+                }
+            }
+        } catch (DataAccessException | SQLException ex) {
+            error = new Message().getErrorMessage(ex);
+            LOG.log(Level.ERROR, "Query error: ", ex);
+
+            throw ex;
+        } finally {
+            //Log.
+            AuditorData auditorData = new AuditorData()
+                    .addData("connection", connection.getName())
+                    .addData("sql", query);
+
+            if (!error.isEmpty()) {
+                auditorData.addData("error", error);
+            }
+
+            auditorService.publish("QUERY", auditorData.getData());
         }
 
-        return queryResultSet;
+        return rows;
     }
 
     /**
-     * Cancels a query being executed.
+     * Cancels the queries being executed by a user.
      *
      * @param principal Principal
      * @return Identifies if a query was canceled.
      */
     public boolean queryCancel(Principal principal) {
         boolean canceled = false;
-        PreparedStatement preparedStatement = inflight.get(principal.getName());
+        String prefix = this.getInflightKey(principal.getName(), "");
+
+        for (String key : inflight.keySet()) {
+            if (key.startsWith(prefix)) {
+                canceled |= this.queryCancel(key);
+            }
+        }
+
+        return canceled;
+    }
+
+    /**
+     * Cancels a query being executed.
+     *
+     * @param username Username.
+     * @param id Query ID.
+     * @return Identifies if a query was canceled.
+     */
+    public boolean queryCancel(String username, String id) {
+        return this.queryCancel(this.getInflightKey(username, id));
+    }
+
+    /**
+     * Cancels an inflight statement.
+     *
+     * @param key Inflight key.
+     * @return Identifies if a query was canceled.
+     */
+    private boolean queryCancel(String key) {
+        boolean canceled = false;
+        PreparedStatement preparedStatement = inflight.get(key);
 
         if (preparedStatement != null) {
             try {
@@ -614,7 +895,7 @@ public class ConnectionService {
                 canceled = true;
 
                 //Removes the statements from inflight when a cancel commend is sent.
-                inflight.remove(principal.getName());
+                inflight.remove(key);
             } catch (SQLException ex) {
                 LOG.log(Level.ERROR, "Fail aborting query ", ex);
             }
@@ -624,24 +905,14 @@ public class ConnectionService {
     }
 
     /**
-     * Refresh all connections cache.
+     * Get the inflight key of a query.
      *
+     * @param username Username.
+     * @param id Query ID.
+     * @return Inflight key.
      */
-    @Caching(evict = {
-        @CacheEvict(value = "tables", allEntries = true)
-    })
-    public void refresh() {
-    }
-
-    /**
-     * Refresh connection cache.
-     *
-     * @param connection Connection.
-     */
-    @Caching(evict = {
-        @CacheEvict(value = "tables", key = "#connection")
-    })
-    public void refreshConnection(Connection connection) {
+    private String getInflightKey(String username, String id) {
+        return username + ":" + id;
     }
 
     /**
@@ -658,15 +929,11 @@ public class ConnectionService {
     }
 
     /**
-     * Evaluate query.
+     * Identify if a query is a read only instruction.
      *
-     * @param query
-     * @return table quantity excedeed the configuration limit
+     * @param query Query.
      */
-    public String evaluate(String query) {
-        String limit = " limit "
-                + String.valueOf(this.configurationService.getMaxRows());
-
+    public void validate(String query) {
         String[] blacklist = {
             "CREATE ", "ALTER ", "DROP ", // DDL
             "INSERT ", "DELETE ", "UPDATE ", // DML
@@ -674,11 +941,24 @@ public class ConnectionService {
             "GRANT ", "REVOKE ", "DENY " // DCL
         };
 
-        //Identifies if instruction is a select.
         if (Arrays.stream(blacklist).anyMatch(query.toUpperCase()::contains)) {
             throw new DataAccessException("This instruction can not be executed, only SELECT is allowed.") {
             };
         }
+    }
+
+    /**
+     * Evaluate query.
+     *
+     * @param query
+     * @return table quantity excedeed the configuration limit
+     */
+    public String evaluate(String query) {
+        String limit = " limit "
+                + String.valueOf(this.configurationService.getMaxRows());
+
+        //Identifies if instruction is a select.
+        this.validate(query);
 
         //Identifies if query has limit.
         if (!query.toLowerCase().contains("limit")) {
@@ -716,26 +996,23 @@ public class ConnectionService {
      * @param schema Schema
      * @param table Table
      * @return Table columns
+     * @throws SQLException
      */
-    public List<Column> getIndexes(
+    public List<Index> getIndexes(
             Connection connection,
             String catalog,
             String schema,
-            String table) {
+            String table) throws SQLException {
 
         List index = new ArrayList();
-        DataSource datasource = this.getDataSource(connection);
 
-        try {
-            ResultSet indexes = datasource.getConnection()
-                    .getMetaData()
-                    .getIndexInfo(
-                            ("null".equals(catalog) || catalog.isEmpty()) ? null : catalog,
-                            ("null".equals(schema) || schema.isEmpty()) ? null : schema,
-                            table,
-                            false,
-                            true
-                    );
+        try (java.sql.Connection conn = this.getDataSource(connection).getConnection();
+                ResultSet indexes = conn.getMetaData().getIndexInfo(
+                        this.getPattern(catalog),
+                        this.getPattern(schema),
+                        table,
+                        false,
+                        true)) {
 
             while (indexes.next()) {
                 index.add(
@@ -749,23 +1026,15 @@ public class ConnectionService {
                                 indexes.getString("ASC_OR_DESC"),
                                 indexes.getInt("CARDINALITY")));
             }
-        } catch (SQLException ex) {
-            LOG.log(Level.ERROR, "Fail getting indexes of " + connection.getName(), ex);
-        } finally {
-            try {
-                datasource.getConnection().close();
-            } catch (SQLException ex) {
-                LOG.log(Level.ERROR, "Fail closing connection", ex.getMessage());
-            }
         }
-        return index;
 
+        return index;
     }
 
     /**
      * Represents a target entity.
      */
-    public class Entity {
+    public static class Entity implements Serializable {
 
         private String catalog;
         private String schema;
@@ -846,7 +1115,7 @@ public class ConnectionService {
     /**
      * Represents a target entity column.
      */
-    public class Column {
+    public static class Column implements Serializable {
 
         int position;
         String name;
@@ -928,17 +1197,42 @@ public class ConnectionService {
         }
     }
 
+    /**
+     * Receives a query resultset row by row.
+     */
+    public interface QueryHandler {
+
+        /**
+         * Receives the resultset metadata.
+         *
+         * @param header Column names.
+         * @param type Column data type.
+         * @param className Column class name.
+         * @throws IOException
+         */
+        void header(List<String> header, Map<String, String> type, Map<String, String> className) throws IOException;
+
+        /**
+         * Receives a row. The array is reused between rows.
+         *
+         * @param row Column values.
+         * @throws IOException
+         */
+        void row(String[] row) throws IOException;
+    }
+
     /**
      * Represents a query resultset.
      */
-    public class QueryResultSet {
+    public static class QueryResultSet {
 
         String error = new String();
         List<String> header = new ArrayList();
         Map<String, String> type = new HashMap();
         Map<String, String> className = new HashMap();
-        List<QueryResultSetRow> row = new ArrayList();
+        ResultSetBuffer buffer;
         long elapsedTime = 0;
+        boolean cached;
 
         public List<String> getHeader() {
             return header;
@@ -964,12 +1258,34 @@ public class ConnectionService {
             this.className = className;
         }
 
-        public List<QueryResultSetRow> getRow() {
-            return row;
+        public ResultSetBuffer getBuffer() {
+            return buffer;
         }
 
-        public void setRow(List<QueryResultSetRow> row) {
-            this.row = row;
+        public void setBuffer(ResultSetBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * Get the resultset rows, formatted on access.
+         *
+         * @return Row list.
+         */
+        public List<QueryResultSetRow> getRow() {
+            return new AbstractList<QueryResultSetRow>() {
+                @Override
+                public QueryResultSetRow get(int index) {
+                    QueryResultSetRow row = new QueryResultSetRow();
+                    row.setColumn(buffer.getRow(index));
+
+                    return row;
+                }
+
+                @Override
+                public int size() {
+                    return buffer == null ? 0 : buffer.size();
+                }
+            };
         }
 
         public long getElapsedTime() {
@@ -980,6 +1296,14 @@ public class ConnectionService {
             this.elapsedTime = elapsedTime;
         }
 
+        public boolean isCached() {
+            return cached;
+        }
+
+        public void setCached(boolean cached) {
+            this.cached = cached;
+        }
+
         public boolean hasError() {
             return !error.isEmpty();
         }
@@ -998,35 +1322,22 @@ public class ConnectionService {
          * @return Query resultset JSON Object
          */
         public Map toJSONObject() {
-            JSONObject object = new JSONObject();
-
-            for (int i = 0; i < header.size(); i++) {
-                for (int j = 0; j < row.size(); j++) {
-
-                    if (object.has(header.get(i))) {
-                        object.put(
-                                header.get(i),
-                                ((JSONArray) object.get(header.get(i)))
-                                        .put(row.get(j)
-                                                .getColumn()
-                                                .get(i)));
-                    } else {
-                        object.put(header.get(i), new JSONArray()
-                                .put(row.get(j)
-                                        .getColumn()
-                                        .get(i)));
-                    }
+            Map<String, Object> object = new HashMap();
+
+            if (buffer != null && buffer.size() > 0) {
+                for (int i = 0; i < header.size(); i++) {
+                    object.put(header.get(i), buffer.getColumn(i));
                 }
             }
 
-            return object.toMap();
+            return object;
         }
     }
 
     /**
      * Represents a query resultset row.
      */
-    public class QueryResultSetRow {
+    public static class QueryResultSetRow {
 
         List<Object> column = new ArrayList();
 
@@ -1067,7 +1378,7 @@ public class ConnectionService {
     /**
      * Represents a target entity index.
      */
-    public class Index {
+    public static class Index implements Serializable {
 
         boolean nonUnique;
         String qualifier;
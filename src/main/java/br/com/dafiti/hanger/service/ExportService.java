@@ -24,19 +24,54 @@
 package br.com.dafiti.hanger.service;
 
 import br.com.dafiti.hanger.model.Connection;
+import br.com.dafiti.hanger.model.User;
 import br.com.dafiti.hanger.option.ExportType;
+import br.com.dafiti.hanger.option.Status;
+import br.com.dafiti.hanger.service.ConnectionService.QueryHandler;
 import br.com.dafiti.hanger.service.ConnectionService.QueryResultSet;
 import com.univocity.parsers.csv.CsvWriter;
 import com.univocity.parsers.csv.CsvWriterSettings;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.Principal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 
 /**
@@ -49,16 +84,47 @@ public class ExportService {
     ConnectionService connectionService;
     MailService mailService;
     UserService userService;
+    ThreadPoolExecutor executor;
+    Map<String, Spool> spool;
+    int maxPerUser;
+    long ttl;
+
+    private static final int BUFFER = 65536;
+    private static final Pattern FILE = Pattern.compile("^[A-Za-z0-9-]+(\\.csv)?(\\.gz|\\.zip)?$");
+    private static final Pattern RANGE = Pattern.compile("^bytes=(\\d*)-(\\d*)$");
+    private static final Logger LOG = LogManager.getLogger(ExportService.class.getName());
 
     @Autowired
     public ExportService(
             ConnectionService connectionService,
             MailService mailService,
-            UserService userService) {
+            UserService userService,
+            @Value("${hanger.export.spool.max.concurrent:3}") int maxConcurrent,
+            @Value("${hanger.export.spool.max.queued:10}") int maxQueued,
+            @Value("${hanger.export.spool.max.user:2}") int maxPerUser,
+            @Value("${hanger.export.ttl:3600}") long ttl) {
 
         this.connectionService = connectionService;
         this.mailService = mailService;
         this.userService = userService;
+        this.spool = new ConcurrentHashMap();
+        this.maxPerUser = maxPerUser;
+        this.ttl = ttl;
+        this.executor = new ThreadPoolExecutor(
+                maxConcurrent,
+                maxConcurrent,
+                60L,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue(maxQueued),
+                new CustomizableThreadFactory("hanger_spool_"));
+    }
+
+    /**
+     * Stop the spool executor.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
     }
 
     /**
@@ -79,15 +145,26 @@ public class ExportService {
 
         switch (exportType) {
             case CSV:
-                QueryResultSet queryResultSet = this.connectionService
-                        .getQueryResultSet(
-                                connection,
-                                query,
-                                userService.findByUsername(principal.getName()));
-
-                //Identify if query ran successfully.
-                if (!queryResultSet.hasError()) {
-                    fileName = this.toCSV(queryResultSet, connection);
+                User user = userService.findByUsername(principal.getName());
+                Spool export = new Spool(UUID.randomUUID().toString(), ".csv", user.getUsername());
+
+                try {
+                    //Writes rows to the file as they are fetched.
+                    export.setRows(
+                            this.toCSV(
+                                    connection,
+                                    query,
+                                    user,
+                                    this.getFile(export.getFile()),
+                                    false));
+
+                    export.setSize(this.getFile(export.getFile()).length());
+                    export.setStatus(Status.SUCCESS);
+                    spool.put(export.getId(), export);
+
+                    fileName = export.getFile();
+                } catch (DataAccessException | SQLException | IOException ex) {
+                    LOG.log(Level.ERROR, "Fail exporting query ", ex);
                 }
                 break;
             default:
@@ -99,77 +176,725 @@ public class ExportService {
     }
 
     /**
-     * Export a resultset to CSV.
+     * Run a query writing it as CSV to an output stream.
      *
-     * @param queryResultSet QueryResultSet
      * @param connection Connection
-     * @return String fileName
+     * @param query Query
+     * @param principal Principal
+     * @param compress Identify if the output should be gzipped.
+     * @param output OutputStream
+     * @return Row count.
+     * @throws SQLException
+     * @throws IOException
      */
-    public String toCSV(
-            QueryResultSet queryResultSet,
-            Connection connection) {
+    public long export(
+            Connection connection,
+            String query,
+            Principal principal,
+            boolean compress,
+            OutputStream output) throws SQLException, IOException {
 
-        String name = UUID.randomUUID().toString().concat(".csv");
+        return this.toCSV(
+                connection,
+                query,
+                userService.findByUsername(principal.getName()),
+                output,
+                compress);
+    }
 
-        //Define csv settings.
-        CsvWriterSettings csvWriterSettings = new CsvWriterSettings();
-        csvWriterSettings.getFormat().setDelimiter(";");
-        csvWriterSettings.getFormat().setQuote('"');
-        csvWriterSettings.getFormat().setQuoteEscape('"');
+    /**
+     * Run a query in background, spooling it as CSV to disk.
+     *
+     * @param connection Connection
+     * @param query Query
+     * @param principal Principal
+     * @param compress Identify if the file should be gzipped.
+     * @return Spool or null when the user or the spool queue reached its
+     * limit of exports.
+     */
+    public synchronized Spool spool(
+            Connection connection,
+            String query,
+            Principal principal,
+            boolean compress) {
+
+        User user = userService.findByUsername(principal.getName());
+
+        long byUser = spool.values().stream()
+                .filter(x -> x.getUser().equals(user.getUsername())
+                && (x.getStatus().equals(Status.WAITING) || x.getStatus().equals(Status.RUNNING)))
+                .count();
+
+        //Identifies if there is room for another export of the user.
+        if (byUser >= maxPerUser) {
+            LOG.log(Level.INFO, "Spool of {} rejected, {} running by user", new Object[]{user.getUsername(), byUser});
+            return null;
+        }
+
+        Spool export = new Spool(
+                UUID.randomUUID().toString(),
+                compress ? ".csv.gz" : ".csv",
+                user.getUsername());
+
+        spool.put(export.getId(), export);
+
+        try {
+            executor.execute(() -> {
+                export.setStatus(Status.RUNNING);
+
+                try {
+                    export.setRows(
+                            this.toCSV(
+                                    connection,
+                                    query,
+                                    user,
+                                    this.getFile(export.getFile()),
+                                    compress));
+
+                    export.setSize(this.getFile(export.getFile()).length());
+                    export.setStatus(Status.SUCCESS);
+                } catch (Exception ex) {
+                    export.setError(ex.getMessage());
+                    export.setStatus(Status.FAILURE);
+
+                    LOG.log(Level.ERROR, "Fail spooling query ", ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            spool.remove(export.getId());
+
+            LOG.log(Level.INFO, "Spool of {} rejected, the spool queue is full", new Object[]{user.getUsername()});
+            return null;
+        }
+
+        return export;
+    }
+
+    /**
+     * Get a spooled export.
+     *
+     * @param id Spool ID.
+     * @param username Username.
+     * @return Spool or null when it does not exist or is not readable by the
+     * user.
+     */
+    public Spool getSpool(String id, String username) {
+        Spool export = spool.get(id);
+
+        return export == null || !export.isReadable(username) ? null : export;
+    }
+
+    /**
+     * Remove expired spooled exports and its files.
+     */
+    @Scheduled(fixedDelay = 600000)
+    public void purge() {
+        spool.values().removeIf(export -> {
+            long expire = export.getTtl() > 0 ? export.getTtl() : ttl;
+            boolean expired = (System.currentTimeMillis() - export.getCreated()) > (expire * 1000);
+
+            if (expired && !export.getStatus().equals(Status.RUNNING)) {
+                this.getFile(export.getFile()).delete();
+                return true;
+            }
+
+            return false;
+        });
+    }
+
+    /**
+     * Publish a file as a spooled export, so it can be downloaded until it
+     * expires.
+     *
+     * @param file File named by its spool ID and extension.
+     * @param extension File extension.
+     * @param user User
+     * @param rows Row count.
+     * @param ttl Time to live in seconds.
+     * @return Spool.
+     */
+    public Spool publish(
+            File file,
+            String extension,
+            User user,
+            long rows,
+            long ttl) {
+
+        String name = file.getName();
+        Spool export = new Spool(
+                name.substring(0, name.length() - extension.length()),
+                extension,
+                user.getUsername());
+
+        export.setRows(rows);
+        export.setSize(file.length());
+        export.setTtl(ttl);
+        export.setStatus(Status.SUCCESS);
+
+        //E-mail recipients are not the owner, so the link is shared.
+        export.setShared(true);
+        spool.put(export.getId(), export);
+
+        return export;
+    }
+
+    /**
+     * Run a query writing its rows as compressed CSV attachments.
+     *
+     * Rows go straight from the cursor to gzip or zip files, starting a new
+     * part whenever the current one reaches the size limit, and only the first
+     * rows are kept in memory as a preview.
+     *
+     * @param connection Connection
+     * @param query Query
+     * @param user User
+     * @param name Name of the CSV inside a zip file.
+     * @param zip Identifies if the parts should be zip instead of gzip.
+     * @param limit Approximate part size limit in bytes, 0 means a single part.
+     * @param preview Row count kept as preview.
+     * @return Attachment.
+     * @throws SQLException
+     * @throws IOException
+     */
+    public Attachment toAttachment(
+            Connection connection,
+            String query,
+            User user,
+            String name,
+            boolean zip,
+            long limit,
+            int preview) throws SQLException, IOException {
+
+        Attachment attachment = new Attachment(zip ? ".zip" : ".csv.gz");
+        QueryResultSet queryResultSet = attachment.getPreview();
+        AttachmentWriter writer = new AttachmentWriter(attachment, name, zip);
+
+        //Leaves room for what is still buffered by the compressor, but never less than half the limit.
+        long threshold = Math.max(limit - (BUFFER * 2), limit / 2);
+
+        try {
+            attachment.setRows(connectionService.streamQuery(connection, query, user, new QueryHandler() {
+                @Override
+                public void header(List<String> header, Map<String, String> type, Map<String, String> className) throws IOException {
+                    queryResultSet.setHeader(header);
+                    queryResultSet.setType(type);
+                    queryResultSet.setClassName(className);
+                    queryResultSet.setBuffer(new ResultSetBuffer(header.size()));
+
+                    writer.open();
+                }
+
+                @Override
+                public void row(String[] row) throws IOException {
+                    if (queryResultSet.getBuffer().size() < preview) {
+                        queryResultSet.getBuffer().add(row);
+                    }
+
+                    if (limit > 0 && writer.length() >= threshold) {
+                        writer.open();
+                    }
+
+                    writer.write(row);
+                }
+            }));
+
+            writer.close();
+        } catch (SQLException | IOException | DataAccessException ex) {
+            try {
+                writer.close();
+            } finally {
+                attachment.delete();
+            }
+
+            throw ex;
+        }
+
+        return attachment;
+    }
+
+    /**
+     * Run a query writing its rows as CSV to a file.
+     *
+     * @param connection Connection
+     * @param query Query
+     * @param user User
+     * @param file File
+     * @param compress Identify if the output should be gzipped.
+     * @return Row count.
+     */
+    private long toCSV(
+            Connection connection,
+            String query,
+            User user,
+            File file,
+            boolean compress) throws SQLException, IOException {
+
+        try (OutputStream output = new FileOutputStream(file)) {
+            return this.toCSV(connection, query, user, output, compress);
+        } catch (SQLException | IOException | DataAccessException ex) {
+            Files.deleteIfExists(file.toPath());
+            throw ex;
+        }
+    }
+
+    /**
+     * Run a query writing its rows as CSV straight from the cursor.
+     *
+     * @param connection Connection
+     * @param query Query
+     * @param user User
+     * @param output OutputStream
+     * @param compress Identify if the output should be gzipped.
+     * @return Row count.
+     */
+    private long toCSV(
+            Connection connection,
+            String query,
+            User user,
+            OutputStream output,
+            boolean compress) throws SQLException, IOException {
+
+        OutputStream stream = compress
+                ? new GZIPOutputStream(output, BUFFER)
+                : new BufferedOutputStream(output, BUFFER);
 
         CsvWriter csvWriter = new CsvWriter(
-                new File(System.getProperty("java.io.tmpdir")
-                        .concat("/")
-                        .concat(name)),
-                csvWriterSettings);
+                new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER),
+                this.getCsvWriterSettings());
 
-        //Define fields.
-        csvWriter.writeHeaders(queryResultSet.getHeader());
+        long rows = connectionService.streamQuery(connection, query, user, new QueryHandler() {
+            @Override
+            public void header(List<String> header, Map<String, String> type, Map<String, String> className) {
+                csvWriter.writeHeaders(header);
+            }
 
-        queryResultSet.getRow().forEach((row) -> {
-            csvWriter.writeRow(row.getColumn());
+            @Override
+            public void row(String[] row) {
+                csvWriter.writeRow((Object[]) row);
+            }
         });
 
+        //Finishes the gzip trailer and flushes without closing the target.
         csvWriter.flush();
-        csvWriter.close();
 
-        return name;
+        if (stream instanceof GZIPOutputStream) {
+            ((GZIPOutputStream) stream).finish();
+        }
+
+        stream.flush();
+
+        return rows;
     }
 
     /**
      * Download a file to local station.
      *
-     * @param file
-     * @return
+     * Supports a single byte range, so interrupted downloads can be resumed,
+     * and uses the container sendfile when available or a FileChannel
+     * transfer otherwise.
+     *
+     * @param file File name.
+     * @param username Username.
+     * @param request HttpServletRequest
+     * @param response HttpServletResponse
      * @throws IOException
      */
-    public HttpEntity<?> download(String file) throws IOException {
+    public void download(
+            String file,
+            String username,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+
         String fileName = file;
 
-        if (!file.endsWith(".csv")) {
+        if (!file.endsWith(".csv") && !file.endsWith(".gz") && !file.endsWith(".zip")) {
             fileName = file.concat(".csv");
         }
 
-        Path path = new File(System.getProperty("java.io.tmpdir")
-                .concat("/")
-                .concat(fileName)).toPath();
+        //Resolves a spool ID or a spool file name to its spool.
+        String name = fileName;
+        Spool export = spool.get(file);
+
+        if (export == null) {
+            export = spool
+                    .values()
+                    .stream()
+                    .filter(x -> x.getFile().equals(name))
+                    .findFirst()
+                    .orElse(null);
+        }
+
+        //Only the owner reads an export, unless it is shared by e-mail.
+        if (export == null || !export.isReadable(username)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        fileName = export.getFile();
 
-        //Get file content as Byte.
-        byte[] fileContent = Files.readAllBytes(path);
+        if (!FILE.matcher(fileName).matches()
+                || !this.getFile(fileName).isFile()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        File content = this.getFile(fileName);
+        long length = content.length();
+        long start = 0;
+        long end = length - 1;
+
+        //Identifies the requested range.
+        String range = request.getHeader("Range");
+
+        if (range != null) {
+            Matcher matcher = RANGE.matcher(range.trim());
+
+            if (matcher.matches() && !(matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+                if (matcher.group(1).isEmpty()) {
+                    start = Math.max(0, length - Long.parseLong(matcher.group(2)));
+                } else {
+                    start = Long.parseLong(matcher.group(1));
+
+                    if (!matcher.group(2).isEmpty()) {
+                        end = Math.min(end, Long.parseLong(matcher.group(2)));
+                    }
+                }
+
+                if (start > end) {
+                    response.setHeader("Content-Range", "bytes */" + length);
+                    response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + length);
+            }
+        }
 
         //Prepare headers.
-        HttpHeaders httpHeaders = new HttpHeaders();
-        httpHeaders.add(
-                "Content-disposition",
-                "attachment; filename=\"" + fileName + "\"");
+        response.setContentType(fileName.endsWith(".gz")
+                ? "application/gzip"
+                : fileName.endsWith(".zip") ? "application/zip" : "text/csv");
+        response.setHeader("Accept-Ranges", "bytes");
+        response.setHeader("Content-disposition", "attachment; filename=\"" + fileName + "\"");
+        response.setContentLengthLong(end - start + 1);
+
+        //Lets the container send the file straight from the page cache.
+        if (Boolean.TRUE.equals(request.getAttribute("org.apache.tomcat.sendfile.support"))) {
+            request.setAttribute("org.apache.tomcat.sendfile.filename", content.getCanonicalPath());
+            request.setAttribute("org.apache.tomcat.sendfile.start", start);
+            request.setAttribute("org.apache.tomcat.sendfile.end", end + 1);
+        } else {
+            try (FileChannel channel = FileChannel.open(content.toPath(), StandardOpenOption.READ)) {
+                WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+                long position = start;
+                long remaining = end - start + 1;
+
+                while (remaining > 0) {
+                    long transferred = channel.transferTo(position, remaining, target);
+
+                    if (transferred <= 0) {
+                        break;
+                    }
+
+                    position += transferred;
+                    remaining -= transferred;
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the csv settings.
+     *
+     * @return CsvWriterSettings
+     */
+    private CsvWriterSettings getCsvWriterSettings() {
+        CsvWriterSettings csvWriterSettings = new CsvWriterSettings();
+        csvWriterSettings.getFormat().setDelimiter(";");
+        csvWriterSettings.getFormat().setQuote('"');
+        csvWriterSettings.getFormat().setQuoteEscape('"');
+
+        return csvWriterSettings;
+    }
+
+    /**
+     * Get an export file.
+     *
+     * @param name File name.
+     * @return File
+     */
+    private File getFile(String name) {
+        return new File(System.getProperty("java.io.tmpdir")
+                .concat("/")
+                .concat(name));
+    }
+
+    /**
+     * Writes attachment parts, each one a compressed CSV with its own header.
+     */
+    private class AttachmentWriter {
+
+        private final Attachment attachment;
+        private final String name;
+        private final boolean zip;
+        private List<String> header;
+        private CountingOutputStream counter;
+        private OutputStream stream;
+        private CsvWriter csvWriter;
+
+        AttachmentWriter(Attachment attachment, String name, boolean zip) {
+            this.attachment = attachment;
+            this.name = name;
+            this.zip = zip;
+        }
+
+        /**
+         * Start a new part, finishing the current one.
+         *
+         * @throws IOException
+         */
+        void open() throws IOException {
+            this.close();
+
+            if (header == null) {
+                header = attachment.getPreview().getHeader();
+            }
+
+            File file = getFile(UUID.randomUUID().toString().concat(attachment.getExtension()));
+            attachment.getParts().add(file);
+            counter = new CountingOutputStream(new FileOutputStream(file));
+
+            if (zip) {
+                ZipOutputStream zipOutputStream = new ZipOutputStream(counter);
+                zipOutputStream.putNextEntry(new ZipEntry(attachment.getParts().size() == 1
+                        ? name.concat(".csv")
+                        : name.concat("-" + attachment.getParts().size()).concat(".csv")));
+                stream = zipOutputStream;
+            } else {
+                stream = new GZIPOutputStream(counter, BUFFER);
+            }
+
+            csvWriter = new CsvWriter(
+                    new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER),
+                    getCsvWriterSettings());
+            csvWriter.writeHeaders(header);
+        }
+
+        /**
+         * Write a row to the current part.
+         *
+         * @param row Column values.
+         */
+        void write(String[] row) {
+            csvWriter.writeRow((Object[]) row);
+        }
+
+        /**
+         * Get the bytes already written to the current part file.
+         *
+         * @return Length.
+         */
+        long length() {
+            return counter == null ? 0 : counter.getCount();
+        }
+
+        /**
+         * Finish the current part, if any.
+         *
+         * @throws IOException
+         */
+        void close() throws IOException {
+            if (csvWriter != null) {
+                csvWriter.flush();
+
+                if (stream instanceof ZipOutputStream) {
+                    ((ZipOutputStream) stream).closeEntry();
+                }
+
+                csvWriter.close();
+                csvWriter = null;
+                stream = null;
+                counter = null;
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes written to a stream.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        CountingOutputStream(OutputStream output) {
+            super(output);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+
+    /**
+     * Represents a query written as compressed attachment parts.
+     */
+    public static class Attachment {
+
+        private final String extension;
+        private final List<File> parts = new ArrayList();
+        private final QueryResultSet preview = new QueryResultSet();
+        private long rows;
+
+        public Attachment(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public List<File> getParts() {
+            return parts;
+        }
+
+        public QueryResultSet getPreview() {
+            return preview;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public void setRows(long rows) {
+            this.rows = rows;
+        }
+
+        /**
+         * Get the size of every part.
+         *
+         * @return Size in bytes.
+         */
+        public long getSize() {
+            return parts.stream().mapToLong(File::length).sum();
+        }
+
+        /**
+         * Delete every part.
+         */
+        public void delete() {
+            parts.forEach(File::delete);
+        }
+    }
+
+    /**
+     * Represents an export spooled to disk.
+     */
+    public static class Spool {
+
+        private final String id;
+        private final String file;
+        private final String user;
+        private final long created;
+        private volatile Status status;
+        private volatile long rows;
+        private volatile long size;
+        private volatile String error;
+        private volatile long ttl;
+        private volatile boolean shared;
+
+        public Spool(String id, String extension, String user) {
+            this.id = id;
+            this.file = id.concat(extension);
+            this.user = user;
+            this.created = System.currentTimeMillis();
+            this.status = Status.WAITING;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getFile() {
+            return file;
+        }
+
+        public String getUser() {
+            return user;
+        }
+
+        public long getCreated() {
+            return created;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public void setStatus(Status status) {
+            this.status = status;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public void setRows(long rows) {
+            this.rows = rows;
+        }
 
-        //Prepare file to download
-        HttpEntity<byte[]> download
-                = new HttpEntity<>(fileContent, httpHeaders);
+        public long getSize() {
+            return size;
+        }
+
+        public void setSize(long size) {
+            this.size = size;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public void setError(String error) {
+            this.error = error;
+        }
 
-        //Delete temp file.
-        Files.deleteIfExists(path);
+        public long getTtl() {
+            return ttl;
+        }
 
-        return download;
+        public void setTtl(long ttl) {
+            this.ttl = ttl;
+        }
+
+        public boolean isShared() {
+            return shared;
+        }
+
+        public void setShared(boolean shared) {
+            this.shared = shared;
+        }
+
+        /**
+         * Identify if a user can read the export.
+         *
+         * @param username Username.
+         * @return Identify if the user is the owner or the export is shared.
+         */
+        public boolean isReadable(String username) {
+            return shared || user.equals(username);
+        }
     }
 }
@@ -54,6 +54,8 @@ public class EyeService {
     private final JobCheckupService jobCheckupService;
     private final JobNotificationService jobNotificationService;
     private final WorkbenchEmailService workbenchEmailService;
+    private final ShellCommandService shellCommandService;
+    private final JobCheckupSpeculationService jobCheckupSpeculationService;
 
     private static final Logger LOG = LogManager.getLogger(EyeService.class.getName());
 
@@ -66,7 +68,9 @@ public class EyeService {
             JobCheckupService jobCheckupService,
             SlackService slackService,
             JobNotificationService jobNotificationService,
-            WorkbenchEmailService workbenchEmailService) {
+            WorkbenchEmailService workbenchEmailService,
+            ShellCommandService shellCommandService,
+            JobCheckupSpeculationService jobCheckupSpeculationService) {
 
         this.jobService = jobService;
         this.jobStatusService = jobStatusService;
@@ -75,6 +79,8 @@ public class EyeService {
         this.jobCheckupService = jobCheckupService;
         this.jobNotificationService = jobNotificationService;
         this.workbenchEmailService = workbenchEmailService;
+        this.shellCommandService = shellCommandService;
+        this.jobCheckupSpeculationService = jobCheckupSpeculationService;
     }
 
     /**
@@ -143,12 +149,23 @@ public class EyeService {
                         }
                     }
 
+                    //Starts children prevalidation ahead of time.
+                    if (update) {
+                        jobCheckupSpeculationService.speculate(job);
+                    }
+
                     break;
                 case COMPLETED:
                     update = false;
                     break;
                 case FINALIZED:
                     update = true;
+
+                    //Kills shell commands left running by an aborted build.
+                    if (jobBuild.getStatus().equals(Status.ABORTED)) {
+                        shellCommandService.abort(job);
+                    }
+
                     break;
                 default:
                     update = false;
@@ -27,19 +27,31 @@ import br.com.dafiti.hanger.model.Job;
 import br.com.dafiti.hanger.model.JobDetails;
 import br.com.dafiti.hanger.model.JobParent;
 import br.com.dafiti.hanger.option.Scope;
-
-import com.hp.gagawa.java.elements.A;
-import com.hp.gagawa.java.elements.P;
-import com.hp.gagawa.java.elements.Span;
+import br.com.dafiti.hanger.option.Status;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
-import javax.servlet.http.HttpServletRequest;
-import org.apache.commons.lang.StringUtils;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.json.JSONArray;
+import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 /**
@@ -49,240 +61,530 @@ import org.springframework.stereotype.Service;
 @Service
 public class FlowService {
 
-    private Map<String, Step> flow;
-    private Map<String, String> nodes;
-    private Set<JobDetails> reach;
-    private Set<Integer> levels;
+    private final JobService jobService;
     private final JobParentService jobParentService;
-    private final HttpServletRequest request;
     private final JobDetailsService jobDetailsService;
     private final JobNotificationService jobNotificationService;
+    private final Map<String, Topology> topologies = new ConcurrentHashMap<>();
+    private final Cache<String, Layout> layouts;
+    private final AtomicLong version = new AtomicLong();
+    private final int depth;
+    private final int limit;
+    private volatile Index index;
+
+    private static final int NODE_WIDTH = 250;
+    private static final int NODE_HEIGHT = 90;
+    private static final int LEVEL_SEPARATION = 50;
+    private static final int SIBLING_SEPARATION = 20;
 
     @Autowired
     public FlowService(
+            JobService jobService,
             JobParentService jobParentService,
-            HttpServletRequest request,
             JobDetailsService jobDetailsService,
-            JobNotificationService jobNotificationService) {
+            JobNotificationService jobNotificationService,
+            @Value("${hanger.flow.depth:3}") int depth,
+            @Value("${hanger.flow.limit:150}") int limit) {
 
+        this.jobService = jobService;
         this.jobParentService = jobParentService;
-        this.request = request;
         this.jobDetailsService = jobDetailsService;
         this.jobNotificationService = jobNotificationService;
+        this.depth = depth;
+        this.limit = limit;
+        this.layouts = Caffeine.newBuilder()
+                .maximumSize(500)
+                .build();
     }
 
     /**
-     * Define Treant configuration and data.
+     * Get the job flow topology.
      *
      * @param job Job
      * @param reverse Identify if is flow or propagation
-     * @param expanded Identify if show the flow expanded
-     * @return TreantJS script
+     * @return Flow topology
      */
-    public Flow getJobFlow(
-            Job job,
-            boolean reverse,
-            boolean expanded) {
+    public Topology getTopology(Job job, boolean reverse) {
+        String key = (reverse ? "propagation_" : "flow_") + job.getId();
+        Topology topology = topologies.get(key);
 
-        List<String> key = new ArrayList<String>();
-        List<String> value = new ArrayList<String>();
-        StringBuilder configuration = new StringBuilder();
+        if (topology == null) {
+            long current = version.get();
+            topology = this.topology(this.getIndex(), job.getId(), reverse);
 
-        Flow flow = this.getFlowStructure(job, reverse, expanded);
+            //Caches only when no relationship changed while it was being built.
+            if (current == version.get()) {
+                topologies.put(key, topology);
+            }
+        }
 
-        // Gets its as a key value structure.
-        flow.getStructure().entrySet().stream().forEach((entry) -> {
-            key.add(entry.getValue().getId());
-            value.add(entry.getValue().getVariable());
-        });
+        return topology;
+    }
 
-        // Sets job clickable class. 
-        configuration.append("var _class = 'flow-job-clickable'; ");
+    /**
+     * Get the default number of levels shown before a flow is summarized.
+     *
+     * @param topology Flow topology
+     * @param reverse Identify if is flow or propagation
+     * @param expanded Identify if show the flow expanded
+     * @return Number of levels
+     */
+    public int getDepth(Topology topology, boolean reverse, boolean expanded) {
+        int levels = Integer.MAX_VALUE;
 
-        // Sets node info.
-        nodes.entrySet().stream().forEach((entry) -> {
-            configuration.append("var " + entry.getKey() + " = '" + entry.getValue() + "'; ");
-        });
+        if (!(reverse || expanded)) {
+            levels = 1;
+        } else if (topology.getReach() > limit) {
+            levels = depth;
+        }
 
-        // Define TreantJS configuration.
-        configuration.append("var config = {");
-        configuration.append("        container: \"#flow\",");
-        configuration.append("        rootOrientation: \"").append(reverse ? "WEST" : "EAST").append("\",");
-        configuration.append("        levelSeparation: 50,");
-        configuration.append("        siblingSeparation: 20,");
-        configuration.append("        nodeAlign: \"LEFT\",");
-        configuration.append("        node: { collapsable: true },");
-        configuration.append("        connectors: {");
-        configuration.append("            type: 'curve'");
-        configuration.append("        }");
-        configuration.append("    }");
-
-        // Define the tree variable values.
-        configuration.append(",");
-        configuration.append(String.join(", ", value));
-
-        // Define the tree variables.
-        configuration.append(",");
-        configuration.append(" chart_config = [");
-        configuration.append("        config,");
-        configuration.append(String.join(",", key));
-        configuration.append("];");
-
-        // Define the tree graph.
-        configuration.append("new Treant( chart_config );");
-        flow.setConfiguration(configuration.toString());
-        return flow;
+        return levels;
     }
 
     /**
-     * Get the job flow.
+     * Get the summarized layout of a job flow.
      *
      * @param job Job
      * @param reverse Identify if is flow or propagation
-     * @param expanded Identify if show the flow expanded
-     * @return Flow structure as a map.
+     * @param depth Number of levels shown before summarizing
+     * @param subject Identify if summarized jobs are grouped by subject
+     * @param expand Clusters to be expanded
+     * @return Flow layout
      */
-    private Flow getFlowStructure(
+    public Layout getLayout(
             Job job,
             boolean reverse,
-            boolean expanded) {
-
-        Scope parentScope = null;
-        String jobLineage = "";
-        String parentLineage = "";
-
-        flow = new TreeMap<>();
-        nodes = new TreeMap<>();
-        reach = new HashSet<>();
-        levels = new HashSet<>();
-
-        return getFlowStructure(
-                job,
-                null,
-                false,
-                0,
-                reverse,
-                expanded,
-                jobLineage,
-                parentLineage,
-                parentScope);
+            int depth,
+            boolean subject,
+            Collection<String> expand) {
+
+        Set<String> expanded = new TreeSet<>(expand);
+        String key = job.getId() + "_" + reverse + "_" + depth + "_" + subject + "_" + expanded;
+        Layout layout = layouts.getIfPresent(key);
+
+        if (layout == null) {
+            long current = version.get();
+            layout = this.layout(this.getTopology(job, reverse), reverse, depth, subject, expanded);
+
+            if (current == version.get()) {
+                layouts.put(key, layout);
+            }
+        }
+
+        return layout;
     }
 
     /**
-     * Get the job flow.
+     * Get the job flow as a graph with the current status of each job.
      *
      * @param job Job
-     * @param parent Job Parent
-     * @return Flow structure as a map.
+     * @param reverse Identify if is flow or propagation
+     * @param depth Number of levels shown before summarizing
+     * @param subject Identify if summarized jobs are grouped by subject
+     * @param expand Clusters to be expanded
+     * @return Graph as JSON
      */
-    private Flow getFlowStructure(
+    public JSONObject getJobGraph(
             Job job,
-            Job parent,
-            boolean isBlocker,
-            int level, boolean reverse,
-            boolean expanded,
-            String jobLineage,
-            String parentLineage,
-            Scope parentScope) {
-
-        Scope scope = null;
-        HashSet<JobParent> childs = new HashSet<>();
-
-        // Identify the step.
-        level++;
-
-        // Identify the lineage.
-        jobLineage += "_" + job.getId();
-
-        if (parent != null) {
-            parentLineage += "_" + parent.getId();
-        }
-
-        // Identify the flow direction.
-        if (reverse) {
-            childs = jobParentService.findByParent(job);
-
-            if (!childs.isEmpty()) {
-                for (JobParent child : childs) {
-                    getFlowStructure(
-                            child.getJob(),
-                            child.getParent(),
-                            child.isBlocker(),
-                            level,
-                            reverse,
-                            expanded,
-                            jobLineage,
-                            parentLineage,
-                            parentScope);
+            boolean reverse,
+            int depth,
+            boolean subject,
+            Collection<String> expand) {
+
+        JSONArray nodes = new JSONArray();
+        JSONArray edges = new JSONArray();
+        Topology topology = this.getTopology(job, reverse);
+        Layout layout = this.getLayout(job, reverse, depth, subject, expand);
+
+        //Gets all jobs of the flow at once.
+        Map<Long, Job> jobs = new HashMap<>();
+        Map<Long, JobDetails> details = new HashMap<>();
+
+        jobService.load(topology.getJobs()).forEach(item -> {
+            jobs.put(item.getId(), item);
+            details.put(item.getId(), jobDetailsService.getDetailsOf(item));
+        });
+
+        for (Unit unit : layout.getUnits()) {
+            JSONObject node = new JSONObject()
+                    .put("id", unit.getId())
+                    .put("x", unit.getX())
+                    .put("y", unit.getY());
+
+            if (unit.getJob() == null) {
+                JSONArray status = new JSONArray();
+                Map<Status, Integer> count = new EnumMap<>(Status.class);
+
+                //Aggregates the status of every job in the cluster.
+                for (Long member : unit.getMembers()) {
+                    if (details.containsKey(member)) {
+                        count.merge(details.get(member).getStatus(), 1, Integer::sum);
+                    }
+                }
+
+                count.forEach((name, value) -> status.put(new JSONObject()
+                        .put("status", name.toString())
+                        .put("label", this.getLabel(name))
+                        .put("count", value)));
+
+                //A depth cluster is named by the job it hangs from.
+                Job anchor = unit.getAnchor() == null ? null : jobs.get(unit.getAnchor());
+
+                nodes.put(node
+                        .put("cluster", true)
+                        .put("name", anchor == null ? unit.getName() : anchor.getDisplayName())
+                        .put("size", unit.getMembers().size())
+                        .put("status", status));
+            } else if (jobs.containsKey(unit.getJob())) {
+                Job item = jobs.get(unit.getJob());
+                JobDetails jobDetails = details.get(unit.getJob());
+                Edge via = topology.getVia(unit.getJob());
+
+                nodes.put(node
+                        .put("cluster", false)
+                        .put("job", item.getId())
+                        .put("name", item.getName())
+                        .put("displayName", item.getDisplayName())
+                        .put("server", item.getServer().getName())
+                        .put("url", item.getServer().getUrl() + "job/" + item.getName())
+                        .put("checkup", !item.getCheckup().isEmpty())
+                        .put("rebuild", item.isRebuild())
+                        .put("wait", item.getWait())
+                        .put("status", jobDetails.getStatus().toString())
+                        .put("label", this.getLabel(jobDetails.getStatus()))
+                        .put("time", jobDetails.getBuildTime())
+                        .put("scope", jobDetails.getScope() == null ? JSONObject.NULL : jobDetails.getScope())
+                        .put("via", via == null
+                                ? JSONObject.NULL
+                                : new JSONObject()
+                                        .put("scope", via.getScope() == null ? JSONObject.NULL : via.getScope().toString())
+                                        .put("blocker", via.isBlocker()
+                                                && jobs.containsKey(via.getFrom())
+                                                && jobs.get(via.getFrom()).isRebuildBlocked())));
+            }
+        }
+
+        layout.getEdges().forEach(edge -> edges.put(new JSONArray().put(edge[0]).put(edge[1])));
+
+        return new JSONObject()
+                .put("root", String.valueOf(job.getId()))
+                .put("reverse", reverse)
+                .put("reach", topology.getReach())
+                .put("level", topology.getLevel())
+                .put("width", layout.getWidth())
+                .put("height", layout.getHeight())
+                .put("nodeWidth", NODE_WIDTH)
+                .put("nodeHeight", NODE_HEIGHT)
+                .put("nodes", nodes)
+                .put("edges", edges);
+    }
+
+    /**
+     * Get flow warning list.
+     *
+     * @param job Job
+     * @return Warning list
+     */
+    public List<JobDetails> getFlowWarning(Job job) {
+        List<JobDetails> jobDetails = new ArrayList<JobDetails>();
+
+        if (jobNotificationService.isNotified(job)) {
+            jobDetails = jobDetailsService.getDetailsOf(jobNotificationService.getNotice(job));
+        }
+
+        return jobDetails;
+    }
+
+    /**
+     * Discards the topologies when any job relationship can have changed.
+     *
+     * @param change Job change
+     */
+    @EventListener
+    public void jobChanged(JobService.Change change) {
+        version.incrementAndGet();
+        index = null;
+        topologies.clear();
+        layouts.invalidateAll();
+    }
+
+    /**
+     * Get the adjacency index of all job relationships.
+     *
+     * @return Adjacency index
+     */
+    private Index getIndex() {
+        Index current = index;
+
+        if (current == null) {
+            long previous = version.get();
+            current = new Index(jobParentService.list());
+
+            if (previous == version.get()) {
+                index = current;
+            }
+        }
+
+        return current;
+    }
+
+    /**
+     * Build the topology of a flow visiting each job only once.
+     *
+     * @param index Adjacency index
+     * @param root Root job id
+     * @param reverse Identify if is flow or propagation
+     * @return Flow topology
+     */
+    private Topology topology(Index index, Long root, boolean reverse) {
+        Map<Long, Integer> distance = new LinkedHashMap<>();
+        Map<Long, Edge> via = new HashMap<>();
+        List<Edge> edges = new ArrayList<>();
+        List<Long> pending = new ArrayList<>();
+
+        distance.put(root, 0);
+        pending.add(root);
+
+        //Breadth-first walk, the edge points from the job closer to the root.
+        for (int i = 0; i < pending.size(); i++) {
+            Long from = pending.get(i);
+
+            for (Edge edge : reverse ? index.getChildren(from) : index.getParents(from)) {
+                edges.add(edge);
+
+                if (!distance.containsKey(edge.getTo())) {
+                    distance.put(edge.getTo(), distance.get(from) + 1);
+                    via.put(edge.getTo(), edge);
+                    pending.add(edge.getTo());
+                }
+            }
+        }
+
+        //Identifies the deepest path of the flow.
+        Map<Long, List<Edge>> outgoing = new HashMap<>();
+        edges.forEach(edge -> outgoing.computeIfAbsent(edge.getFrom(), k -> new ArrayList<>()).add(edge));
+
+        return new Topology(
+                distance,
+                via,
+                edges,
+                this.depth(root, outgoing, new HashMap<>(), new HashSet<>()));
+    }
+
+    /**
+     * Summarize a flow topology and compute the position of each node.
+     *
+     * @param topology Flow topology
+     * @param reverse Identify if is flow or propagation
+     * @param depth Number of levels shown before summarizing
+     * @param subject Identify if summarized jobs are grouped by subject
+     * @param expand Clusters to be expanded
+     * @return Flow layout
+     */
+    private Layout layout(
+            Topology topology,
+            boolean reverse,
+            int depth,
+            boolean subject,
+            Set<String> expand) {
+
+        Set<Long> visible = new HashSet<>();
+        Map<Long, String[]> subjects = new HashMap<>();
+
+        topology.getJobs().stream()
+                .filter(id -> topology.getDistance(id) <= depth)
+                .forEach(visible::add);
+
+        //Identifies the main subject of each job.
+        if (subject && visible.size() < topology.getReach()) {
+            jobService.findSubjectByIdIn(topology.getJobs()).forEach(row -> {
+                subjects.putIfAbsent((Long) row[0], new String[]{String.valueOf(row[1]), (String) row[2]});
+            });
+        }
+
+        //Reveals the jobs of expanded clusters until nothing else changes.
+        Map<Long, String> cluster;
+        boolean changed;
+
+        do {
+            changed = false;
+            cluster = this.cluster(topology, visible, subject, subjects);
+
+            for (Map.Entry<Long, String> entry : cluster.entrySet()) {
+                if (expand.contains(entry.getValue())
+                        && (subject || topology.getDistance(entry.getKey()) - topology.getDistance(this.getAnchor(topology, visible, entry.getKey())) <= depth)) {
+                    changed |= visible.add(entry.getKey());
                 }
             }
-        } else if (!job.getParent().isEmpty()) {
-            for (JobParent jobParent : job.getParent()) {
-                getFlowStructure(
-                        jobParent.getParent(),
-                        jobParent.getJob(),
-                        jobParent.isBlocker(),
-                        level,
-                        reverse,
-                        expanded,
-                        jobLineage,
-                        parentLineage,
-                        jobParent.getScope());
+        } while (changed);
+
+        //Defines the nodes, a job or a cluster of jobs.
+        Map<String, Unit> units = new LinkedHashMap<>();
+
+        for (Long id : topology.getJobs()) {
+            if (visible.contains(id)) {
+                units.put(String.valueOf(id), new Unit(String.valueOf(id), id, null, null, topology.getDistance(id)));
+            } else {
+                String key = cluster.get(id);
+                Long anchor = subject ? null : this.getAnchor(topology, visible, id);
+                String name = subject ? (subjects.containsKey(id) ? subjects.get(id)[1] : "No subject") : null;
+
+                units.computeIfAbsent(key, k -> new Unit(k, null, anchor, name, topology.getDistance(id)))
+                        .addMember(id, topology.getDistance(id));
+            }
+        }
+
+        //Defines the edges between nodes.
+        Set<List<String>> edges = new LinkedHashSet<>();
+
+        for (Edge edge : topology.getEdges()) {
+            String from = visible.contains(edge.getFrom()) ? String.valueOf(edge.getFrom()) : cluster.get(edge.getFrom());
+            String to = visible.contains(edge.getTo()) ? String.valueOf(edge.getTo()) : cluster.get(edge.getTo());
+
+            if (!from.equals(to)) {
+                edges.add(Arrays.asList(from, to));
             }
         }
 
-        // Get the details getDetails each job.
-        JobDetails jobDetails = jobDetailsService.getDetailsOf(job);
+        //Orders each layer by the mean position of the nodes pointing to it.
+        TreeMap<Integer, List<Unit>> layers = new TreeMap<>();
+        Map<String, List<String>> incoming = new HashMap<>();
+        Map<String, Double> position = new HashMap<>();
+
+        units.values().forEach(unit -> layers.computeIfAbsent(unit.getLayer(), k -> new ArrayList<>()).add(unit));
+        edges.forEach(edge -> incoming.computeIfAbsent(edge.get(1), k -> new ArrayList<>()).add(edge.get(0)));
+
+        int rows = layers.values().stream().mapToInt(List::size).max().orElse(1);
+        int last = layers.isEmpty() ? 0 : layers.lastKey();
+
+        for (List<Unit> layer : layers.values()) {
+            Map<String, Double> weight = new HashMap<>();
+
+            for (Unit unit : layer) {
+                weight.put(unit.getId(), incoming.getOrDefault(unit.getId(), Collections.emptyList())
+                        .stream()
+                        .filter(position::containsKey)
+                        .mapToDouble(position::get)
+                        .average()
+                        .orElse(0));
+            }
+
+            layer.sort(Comparator.comparing((Unit unit) -> weight.get(unit.getId())).thenComparing(Unit::getId));
 
-        // Identifies all job in the flow.
-        reach.add(jobDetails);
-        levels.add(level);
+            //Centers the layer vertically.
+            double offset = (rows - layer.size()) / 2.0;
 
-        // Define the job check-up link.
-        A jobCheckupLink = new A();
+            for (int i = 0; i < layer.size(); i++) {
+                Unit unit = layer.get(i);
+                int column = reverse ? unit.getLayer() : last - unit.getLayer();
 
-        if (!job.getCheckup().isEmpty()) {
-            jobCheckupLink.setHref(request.getRequestURL().toString().replace(request.getRequestURI(), request.getContextPath()) + "/checkup/job/" + job.getId() + "/list/");
-            jobCheckupLink.setTarget("_blank");
-            jobCheckupLink.setCSSClass("node-checkup");
-            jobCheckupLink.appendText("CHECKUP");
+                position.put(unit.getId(), offset + i);
+                unit.setX(column * (NODE_WIDTH + LEVEL_SEPARATION));
+                unit.setY((int) Math.round((offset + i) * (NODE_HEIGHT + SIBLING_SEPARATION)));
+            }
         }
 
-        // Define the job log link.
-        A jobPhaseLink = new A();
+        List<String[]> links = new ArrayList<>();
+        edges.forEach(edge -> links.add(new String[]{edge.get(0), edge.get(1)}));
 
-        jobPhaseLink.setHref(request.getRequestURL().toString().replace(request.getRequestURI(), request.getContextPath()) + "/job/log/" + job.getId());
-        jobPhaseLink.setTarget("_blank");
-        jobPhaseLink.setCSSClass("node-phase");
-        jobPhaseLink.appendText("LOG");
+        return new Layout(
+                new ArrayList<>(units.values()),
+                links,
+                (last + 1) * (NODE_WIDTH + LEVEL_SEPARATION),
+                rows * (NODE_HEIGHT + SIBLING_SEPARATION));
+    }
 
-        // Identify optional scope.
-        if (parentScope != null) {
-            if (parentScope.equals(Scope.OPTIONAL)) {
-                scope = Scope.OPTIONAL;
-            } else if (parentScope.equals(Scope.PARTIAL)) {
-                scope = Scope.PARTIAL;
+    /**
+     * Identify the cluster of each hidden job.
+     *
+     * @param topology Flow topology
+     * @param visible Visible jobs
+     * @param subject Identify if hidden jobs are grouped by subject
+     * @param subjects Main subject of each job
+     * @return Cluster by job
+     */
+    private Map<Long, String> cluster(
+            Topology topology,
+            Set<Long> visible,
+            boolean subject,
+            Map<Long, String[]> subjects) {
+
+        Map<Long, String> cluster = new HashMap<>();
+
+        for (Long id : topology.getJobs()) {
+            if (!visible.contains(id)) {
+                if (subject) {
+                    cluster.put(id, "subject_" + (subjects.containsKey(id) ? subjects.get(id)[0] : "0"));
+                } else {
+                    cluster.put(id, "job_" + this.getAnchor(topology, visible, id));
+                }
             }
         }
 
-        // Define the job name link.
-        A jobNameLink = new A();
-        jobNameLink.setHref(request.getRequestURL().toString().replace(request.getRequestURI(), request.getContextPath()) + "/job/view/" + job.getId());
-        jobNameLink.setTarget("_blank");
-        jobNameLink.setCSSClass("node-name");
-        jobNameLink.appendText(job.getDisplayName());
+        return cluster;
+    }
+
+    /**
+     * Get the closest visible job on the path from the root to a job.
+     *
+     * @param topology Flow topology
+     * @param visible Visible jobs
+     * @param id Job id
+     * @return Visible job id
+     */
+    private Long getAnchor(Topology topology, Set<Long> visible, Long id) {
+        Long anchor = id;
+
+        while (!visible.contains(anchor) && topology.getVia(anchor) != null) {
+            anchor = topology.getVia(anchor).getFrom();
+        }
+
+        return anchor;
+    }
+
+    /**
+     * Get the number of levels below a job.
+     *
+     * @param id Job id
+     * @param outgoing Edges by origin
+     * @param depth Depth already known by job
+     * @param path Jobs in the current path
+     * @return Number of levels
+     */
+    private int depth(Long id, Map<Long, List<Edge>> outgoing, Map<Long, Integer> depth, Set<Long> path) {
+        Integer known = depth.get(id);
+
+        if (known != null) {
+            return known;
+        }
+
+        int level = 0;
 
-        // Define the Jenkins link.
-        A jobLink = new A();
-        jobLink.setHref(job.getServer().getUrl() + "job/" + job.getName());
-        jobLink.setTarget("_blank");
-        jobLink.setCSSClass("node-link");
-        jobLink.appendText("+");
+        //Cyclic references are not followed.
+        if (path.add(id)) {
+            for (Edge edge : outgoing.getOrDefault(id, Collections.emptyList())) {
+                if (!path.contains(edge.getTo())) {
+                    level = Math.max(level, this.depth(edge.getTo(), outgoing, depth, path));
+                }
+            }
+
+            path.remove(id);
+        }
+
+        depth.put(id, level + 1);
+        return level + 1;
+    }
 
-        // Define the job build status span.
+    /**
+     * Get the label class of a status.
+     *
+     * @param status Status
+     * @return Label class
+     */
+    private String getLabel(Status status) {
         String label = "";
 
-        switch (jobDetails.getStatus()) {
+        switch (status) {
             case WAITING:
             case RESTRICTED:
             case DISABLED:
@@ -315,180 +617,217 @@ public class FlowService {
                 break;
         }
 
-        Span spanStatus = new Span();
-        spanStatus.setCSSClass(label);
-        spanStatus.setTitle(jobDetails.getStatus().toString());
-        spanStatus.appendText(jobDetails.getStatus().toString());
-        spanStatus.setId("span-status-" + job.getId());
+        return label;
+    }
+
+    /**
+     * Represents the adjacency index of job relationships.
+     */
+    private static class Index {
 
-        P jobStatus = new P();
-        jobStatus.appendChild(spanStatus);
+        private final Map<Long, List<Edge>> parents = new HashMap<>();
+        private final Map<Long, List<Edge>> children = new HashMap<>();
 
-        // Define the job build time paragraph.
-        P jobBuildTime = new P();
-        jobBuildTime.appendText(jobDetails.getBuildTime());
-        jobBuildTime.setCSSClass("node-time");
+        public Index(Iterable<JobParent> relationships) {
+            for (JobParent jobParent : relationships) {
+                Long job = jobParent.getJob().getId();
+                Long parent = jobParent.getParent().getId();
 
-        // Define the node HTML content.
-        StringBuilder node = new StringBuilder();
-        node.append(jobNameLink.write());
-        node.append(jobLink.write());
+                parents.computeIfAbsent(job, k -> new ArrayList<>())
+                        .add(new Edge(job, parent, jobParent.getScope(), jobParent.isBlocker()));
 
-        if (jobPhaseLink.getTarget() != null) {
-            node.append(jobPhaseLink.write());
+                //Propagation does not carry the parent scope.
+                children.computeIfAbsent(parent, k -> new ArrayList<>())
+                        .add(new Edge(parent, job, null, jobParent.isBlocker()));
+            }
         }
 
-        if (jobCheckupLink.getTarget() != null) {
-            node.append(jobCheckupLink.write());
+        public List<Edge> getParents(Long job) {
+            return parents.getOrDefault(job, Collections.emptyList());
         }
 
-        node.append(jobStatus.write());
-        node.append(jobBuildTime.write());
-
-        // Unique key for InnerHTML.
-        String innerHtmlKey = (scope == null) ? "__" + job.getId() : "__" + job.getId() + "_" + scope;
-
-        // Identify root step.
-        if (parent == null) {
-            // Define the job scope paragraph.
-            P jobBuildScope = new P();
-            jobBuildScope.appendText(jobDetails.getScope() == null ? "" : job.getServer().getName() + (jobDetails.getScope().isEmpty() ? "" : " | " + jobDetails.getScope()));
-            jobBuildScope.setCSSClass("node-scope");
+        public List<Edge> getChildren(Long job) {
+            return children.getOrDefault(job, Collections.emptyList());
+        }
+    }
 
-            node.append(jobBuildScope.write());
+    /**
+     * Represents a flow edge.
+     */
+    public static class Edge {
+
+        private final Long from;
+        private final Long to;
+        private final Scope scope;
+        private final boolean blocker;
+
+        public Edge(Long from, Long to, Scope scope, boolean blocker) {
+            this.from = from;
+            this.to = to;
+            this.scope = scope;
+            this.blocker = blocker;
+        }
 
-            // Define unique innerHTML variable.
-            if (!nodes.containsKey(innerHtmlKey)) {
-                nodes.put(innerHtmlKey, node.toString());
-            }
+        public Long getFrom() {
+            return from;
+        }
 
-            // Identify steps.
-            flow.put(StringUtils.leftPad(String.valueOf(level), 5, "0"),
-                    new Step(jobLineage,
-                            jobLineage + " = " + "{" + "     innerHTML: " + innerHtmlKey + "," + "     HTMLid: \""
-                            + job.getId() + "\"," + "     HTMLclass: " + "_class" + "}"));
-        } else {
-            // Define the job scope paragraph.
-            P jobBuildScope = new P();
-            jobBuildScope
-                    .appendText(
-                            (scope == null
-                                    ? (jobDetails.getScope() == null ? ""
-                                    : job.getServer().getName() + (jobDetails.getScope().isEmpty() ? ""
-                                    : " | " + jobDetails.getScope()))
-                                    : (job.getServer().getName() + " | " + scope.toString()
-                                    + (job.isRebuild() ? " | REBUILD "
-                                    + (job.getWait() != 0 ? "once every " + job.getWait() + " min" : "")
-                                    : "")))
-                            + (parent.isRebuildBlocked() && isBlocker ? " | BLOCKER" : ""));
-            jobBuildScope.setCSSClass("node-scope");
-            node.append(jobBuildScope.write());
-
-            // Define unique innerHTML variable.
-            if (!nodes.containsKey(innerHtmlKey)) {
-                nodes.put(innerHtmlKey, node.toString());
-            }
+        public Long getTo() {
+            return to;
+        }
 
-            // Identify child steps.
-            flow.put(
-                    StringUtils.leftPad(String.valueOf(level), 5, "0") + StringUtils.leftPad(jobLineage, 100, "0")
-                    + StringUtils.leftPad(parentLineage, 100, "0"),
-                    new Step(jobLineage, jobLineage + " = " + "{ parent: " + parentLineage + ", " + "     innerHTML: "
-                            + innerHtmlKey + "," + "     HTMLid: \"" + job.getId() + "\"," + "     collapsed: "
-                            + (job.getParent().isEmpty() || reverse || expanded ? "false" : "true") + ","
-                            + "     HTMLclass: _class }"));
+        public Scope getScope() {
+            return scope;
         }
 
-        return new Flow(flow, reach.size(), levels.size());
+        public boolean isBlocker() {
+            return blocker;
+        }
     }
 
     /**
-     * Get flow warning list.
-     *
-     * @param job Job
-     * @return Warning list
+     * Represents a flow topology and its statistics.
      */
-    public List<JobDetails> getFlowWarning(Job job) {
-        List<JobDetails> jobDetails = new ArrayList<JobDetails>();
+    public static class Topology {
+
+        private final Map<Long, Integer> distance;
+        private final Map<Long, Edge> via;
+        private final List<Long> jobs;
+        private final List<Edge> edges;
+        private final int level;
+
+        public Topology(Map<Long, Integer> distance, Map<Long, Edge> via, List<Edge> edges, int level) {
+            this.distance = Collections.unmodifiableMap(distance);
+            this.via = Collections.unmodifiableMap(via);
+            this.jobs = Collections.unmodifiableList(new ArrayList<>(distance.keySet()));
+            this.edges = Collections.unmodifiableList(edges);
+            this.level = level;
+        }
 
-        if (jobNotificationService.isNotified(job)) {
-            jobDetails = jobDetailsService.getDetailsOf(jobNotificationService.getNotice(job));
+        public List<Long> getJobs() {
+            return jobs;
         }
 
-        return jobDetails;
+        public List<Edge> getEdges() {
+            return edges;
+        }
+
+        public int getDistance(Long job) {
+            return distance.getOrDefault(job, 0);
+        }
+
+        public Edge getVia(Long job) {
+            return via.get(job);
+        }
+
+        public int getReach() {
+            return jobs.size();
+        }
+
+        public int getLevel() {
+            return level;
+        }
     }
 
     /**
-     * Represents a flow step.
+     * Represents a node of a flow layout, a job or a cluster of jobs.
      */
-    private class Step {
-
-        private String id;
-        private String variable;
-
-        public Step(String id, String variable) {
+    public static class Unit {
+
+        private final String id;
+        private final Long job;
+        private final Long anchor;
+        private final String name;
+        private final List<Long> members = new ArrayList<>();
+        private int layer;
+        private int x;
+        private int y;
+
+        public Unit(String id, Long job, Long anchor, String name, int layer) {
             this.id = id;
-            this.variable = variable;
+            this.job = job;
+            this.anchor = anchor;
+            this.name = name;
+            this.layer = layer;
         }
 
         public String getId() {
             return id;
         }
 
-        public String getVariable() {
-            return variable;
+        public Long getJob() {
+            return job;
         }
-    }
 
-    /**
-     * Represents a flow and its statistics.
-     *
-     * @author valdiney.gomes
-     *
-     */
-    public class Flow {
+        public Long getAnchor() {
+            return anchor;
+        }
 
-        private Map<String, Step> structure;
-        private int reach;
-        private int level;
-        private String configuration;
+        public String getName() {
+            return name;
+        }
 
-        public Flow(Map<String, Step> structure, int reach, int level) {
-            this.structure = structure;
-            this.reach = reach;
-            this.level = level;
+        public List<Long> getMembers() {
+            return members;
         }
 
-        public Map<String, Step> getStructure() {
-            return structure;
+        public void addMember(Long member, int layer) {
+            this.members.add(member);
+            this.layer = Math.min(this.layer, layer);
         }
 
-        public void setStructure(Map<String, Step> structure) {
-            this.structure = structure;
+        public int getLayer() {
+            return layer;
         }
 
-        public int getReach() {
-            return reach;
+        public int getX() {
+            return x;
         }
 
-        public void setReach(int reach) {
-            this.reach = reach;
+        public void setX(int x) {
+            this.x = x;
         }
 
-        public int getLevel() {
-            return level;
+        public int getY() {
+            return y;
         }
 
-        public void setLevel(int level) {
-            this.level = level;
+        public void setY(int y) {
+            this.y = y;
+        }
+    }
+
+    /**
+     * Represents a summarized flow with the position of each node.
+     */
+    public static class Layout {
+
+        private final List<Unit> units;
+        private final List<String[]> edges;
+        private final int width;
+        private final int height;
+
+        public Layout(List<Unit> units, List<String[]> edges, int width, int height) {
+            this.units = Collections.unmodifiableList(units);
+            this.edges = Collections.unmodifiableList(edges);
+            this.width = width;
+            this.height = height;
+        }
+
+        public List<Unit> getUnits() {
+            return units;
+        }
+
+        public List<String[]> getEdges() {
+            return edges;
         }
 
-        public String getConfiguration() {
-            return configuration;
+        public int getWidth() {
+            return width;
         }
 
-        public void setConfiguration(String configuration) {
-            this.configuration = configuration;
+        public int getHeight() {
+            return height;
         }
     }
 }
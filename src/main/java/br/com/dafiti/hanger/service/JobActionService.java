@@ -0,0 +1,530 @@
+/*
+ * Copyright (c) 2018 Dafiti Group
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package br.com.dafiti.hanger.service;
+
+import br.com.dafiti.hanger.model.Job;
+import br.com.dafiti.hanger.model.JobCheckup;
+import br.com.dafiti.hanger.option.Action;
+import br.com.dafiti.hanger.option.Flow;
+import br.com.dafiti.hanger.option.Status;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Runs checkup remediation actions as cancellable tasks.
+ *
+ * @author Valdiney V GOMES
+ */
+@Service
+public class JobActionService {
+
+    private final JenkinsService jenkinsService;
+    private final JobService jobService;
+    private final JobStatusService jobStatusService;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, ActionTask> tasks;
+    private final long hold;
+
+    private static final int HISTORY = 100;
+    private static final Logger LOG = LogManager.getLogger(JobActionService.class.getName());
+
+    @Autowired
+    public JobActionService(
+            JenkinsService jenkinsService,
+            JobService jobService,
+            JobStatusService jobStatusService,
+            @Value("${hanger.action.max.concurrent:2}") int maxConcurrent,
+            @Value("${hanger.action.hold:60}") long hold) {
+
+        this.jenkinsService = jenkinsService;
+        this.jobService = jobService;
+        this.jobStatusService = jobStatusService;
+        this.tasks = new LinkedHashMap();
+        this.hold = hold;
+        this.executor = new ThreadPoolExecutor(
+                maxConcurrent,
+                maxConcurrent,
+                60L,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue(),
+                new CustomizableThreadFactory("hanger_action_"));
+    }
+
+    /**
+     * Stop the action executor.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Identify the jobs affected by a checkup action.
+     *
+     * @param job Job
+     * @param checkup JobCheckup
+     * @return Action task not yet submitted or null when there is nothing to
+     * run.
+     */
+    public ActionTask preview(Job job, JobCheckup checkup) {
+        ActionTask task = null;
+
+        switch (checkup.getAction()) {
+            case REBUILD:
+                task = new ActionTask(
+                        job,
+                        Action.REBUILD,
+                        Flow.QUEUED,
+                        new HashSet(Collections.singleton(job)),
+                        new HashSet(Collections.singleton(job)));
+                break;
+            case REBUILD_MESH:
+                task = new ActionTask(
+                        job,
+                        Action.REBUILD_MESH,
+                        Flow.REBUILD,
+                        jobService.getMesh(job, true),
+                        jobService.getMeshParent(job));
+                break;
+            case REBUILD_TRIGGER:
+                List<Job> trigger = checkup.getTrigger();
+
+                if (!trigger.isEmpty()) {
+                    Set<Job> affected = new HashSet();
+
+                    trigger.forEach(jobFrom -> {
+                        affected.addAll(jobService.getRelationPath(job, jobFrom));
+                    });
+
+                    affected.remove(job);
+
+                    task = new ActionTask(
+                            job,
+                            Action.REBUILD_TRIGGER,
+                            Flow.REBUILD,
+                            affected,
+                            new HashSet(trigger));
+                }
+
+                break;
+            default:
+                break;
+        }
+
+        return task;
+    }
+
+    /**
+     * Submit a checkup action.
+     *
+     * @param job Job
+     * @param checkup JobCheckup
+     * @param held Identify if the action should wait for the next save of the
+     * job status, so the status saved by the caller does not overwrite the
+     * flow set by the action. A held task is released after a while even
+     * when the status is never saved.
+     * @return Action task running the action or null when there is nothing to
+     * run.
+     */
+    public synchronized ActionTask submit(Job job, JobCheckup checkup, boolean held) {
+        ActionTask task = this.preview(job, checkup);
+
+        if (task != null) {
+            task.setHeld(held && task.getStatusId() != null);
+
+            for (ActionTask active : tasks.values()) {
+                if (active.getAction().equals(task.getAction())
+                        && active.overlaps(task)) {
+
+                    //Merges into a waiting task with overlapping jobs, when neither waits for a status save.
+                    if (active.getStatus().equals(Status.WAITING)
+                            && !active.isHeld()
+                            && !task.isHeld()) {
+
+                        active.merge(task);
+                        LOG.log(Level.INFO, "{} action of {} merged into task {}", new Object[]{task.getAction(), job.getName(), active.getId()});
+                        return active;
+                    }
+
+                    //Queues behind a waiting or running task with overlapping jobs.
+                    if (active.getStatus().equals(Status.WAITING)
+                            || active.getStatus().equals(Status.RUNNING)) {
+
+                        task.setAfter(active);
+                    }
+                }
+            }
+
+            this.evict();
+            tasks.put(task.getId(), task);
+            this.dispatch(task);
+
+            LOG.log(Level.INFO, "{} action of {} submitted as task {} affecting {} job(s)", new Object[]{task.getAction(), job.getName(), task.getId(), task.getAffected().size()});
+        }
+
+        return task;
+    }
+
+    /**
+     * Release the tasks held until the job status was saved.
+     *
+     * @param change Job status change
+     */
+    @EventListener
+    public synchronized void statusChanged(JobStatusService.Change change) {
+        tasks.values().forEach(task -> {
+            if (task.isHeld()
+                    && task.getStatus().equals(Status.WAITING)
+                    && change.getId().contains(task.getStatusId())) {
+
+                task.setHeld(false);
+                this.dispatch(task);
+            }
+        });
+    }
+
+    /**
+     * Release the tasks held for longer than the hold timeout, whose job
+     * status was never saved.
+     */
+    @Scheduled(fixedDelay = 5000)
+    public synchronized void expire() {
+        long limit = System.currentTimeMillis() - (hold * 1000);
+
+        tasks.values().forEach(task -> {
+            if (task.isHeld()
+                    && task.getStatus().equals(Status.WAITING)
+                    && task.getCreated().getTime() < limit) {
+
+                LOG.log(Level.WARN, "Task {} released after waiting {} seconds for the status of {}", new Object[]{task.getId(), hold, task.getJob()});
+
+                task.setHeld(false);
+                this.dispatch(task);
+            }
+        });
+    }
+
+    /**
+     * Send a waiting task to the executor when it is not held nor queued
+     * behind a running task.
+     *
+     * @param task ActionTask
+     */
+    private void dispatch(ActionTask task) {
+        if (task.getFuture() == null
+                && !task.isHeld()
+                && (task.getAfter() == null || task.getAfter().getFinished() != null)) {
+
+            task.setFuture(executor.submit(() -> this.run(task)));
+        }
+    }
+
+    /**
+     * Cancel an action task.
+     *
+     * @param id Task ID.
+     * @return Identify if the task was canceled.
+     */
+    public synchronized boolean cancel(String id) {
+        boolean canceled = false;
+        ActionTask task = tasks.get(id);
+
+        if (task != null) {
+            switch (task.getStatus()) {
+                case WAITING:
+                    if (task.getFuture() != null) {
+                        task.getFuture().cancel(false);
+                    }
+
+                    task.finish(Status.ABORTED);
+                    this.release(task);
+                    canceled = true;
+                    break;
+                case RUNNING:
+                    //Stops before the next build is triggered.
+                    task.setCanceled(true);
+                    canceled = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        return canceled;
+    }
+
+    /**
+     * List the action tasks, latest first.
+     *
+     * @return Action task list.
+     */
+    public synchronized List<ActionTask> list() {
+        List<ActionTask> list = new ArrayList(tasks.values());
+        Collections.reverse(list);
+
+        return list;
+    }
+
+    /**
+     * Run an action task.
+     *
+     * @param task ActionTask
+     */
+    private void run(ActionTask task) {
+        synchronized (this) {
+            if (!task.getStatus().equals(Status.WAITING)) {
+                return;
+            }
+
+            task.setStatus(Status.RUNNING);
+        }
+
+        try {
+            //Updates the flow of every affected job at once.
+            jobStatusService.updateFlow(task.getAffected(), task.getFlow());
+
+            for (Job build : task.getBuild()) {
+                if (task.isCanceled()) {
+                    break;
+                }
+
+                jenkinsService.build(build);
+            }
+
+            task.finish(task.isCanceled() ? Status.ABORTED : Status.SUCCESS);
+        } catch (Exception ex) {
+            task.finish(Status.FAILURE);
+            LOG.log(Level.ERROR, "Fail running " + task.getAction() + " action of " + task.getJob(), ex);
+        }
+
+        synchronized (this) {
+            this.release(task);
+        }
+    }
+
+    /**
+     * Start the tasks queued behind a finished one.
+     *
+     * @param task ActionTask
+     */
+    private void release(ActionTask task) {
+        tasks.values().forEach(queued -> {
+            if (queued.getAfter() == task
+                    && queued.getStatus().equals(Status.WAITING)) {
+
+                this.dispatch(queued);
+            }
+        });
+    }
+
+    /**
+     * Discard the oldest finished tasks.
+     */
+    private void evict() {
+        Iterator<ActionTask> iterator = tasks.values().iterator();
+
+        while (tasks.size() >= HISTORY && iterator.hasNext()) {
+            if (iterator.next().getFinished() != null) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Action task.
+     */
+    public static class ActionTask {
+
+        private final String id;
+        private final String job;
+        private final Long statusId;
+        private final Action action;
+        private final Flow flow;
+        private final Set<Job> affected;
+        private final Set<Job> build;
+        private final Date created;
+        private Date finished;
+        private volatile Status status;
+        private volatile boolean canceled;
+        private boolean held;
+        private ActionTask after;
+        private Future<?> future;
+
+        public ActionTask(Job job, Action action, Flow flow, Set<Job> affected, Set<Job> build) {
+            this.id = UUID.randomUUID().toString();
+            this.job = job.getName();
+            this.statusId = job.getStatus() == null ? null : job.getStatus().getId();
+            this.action = action;
+            this.flow = flow;
+            this.affected = affected;
+            this.build = build;
+            this.created = new Date();
+            this.status = Status.WAITING;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getJob() {
+            return job;
+        }
+
+        @JsonIgnore
+        public Long getStatusId() {
+            return statusId;
+        }
+
+        public Action getAction() {
+            return action;
+        }
+
+        public Flow getFlow() {
+            return flow;
+        }
+
+        @JsonIgnore
+        public Set<Job> getAffected() {
+            return affected;
+        }
+
+        @JsonIgnore
+        public Set<Job> getBuild() {
+            return build;
+        }
+
+        public List<String> getAffectedName() {
+            return affected.stream().map(Job::getName).sorted().collect(Collectors.toList());
+        }
+
+        public List<String> getBuildName() {
+            return build.stream().map(Job::getName).sorted().collect(Collectors.toList());
+        }
+
+        public Date getCreated() {
+            return created;
+        }
+
+        public Date getFinished() {
+            return finished;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public void setStatus(Status status) {
+            this.status = status;
+        }
+
+        public boolean isCanceled() {
+            return canceled;
+        }
+
+        public void setCanceled(boolean canceled) {
+            this.canceled = canceled;
+        }
+
+        public boolean isHeld() {
+            return held;
+        }
+
+        public void setHeld(boolean held) {
+            this.held = held;
+        }
+
+        @JsonIgnore
+        public ActionTask getAfter() {
+            return after;
+        }
+
+        public void setAfter(ActionTask after) {
+            this.after = after;
+        }
+
+        @JsonIgnore
+        public Future<?> getFuture() {
+            return future;
+        }
+
+        public void setFuture(Future<?> future) {
+            this.future = future;
+        }
+
+        /**
+         * Identify if this task shares any job with another.
+         *
+         * @param task ActionTask
+         * @return Identify if there is any job in common.
+         */
+        public boolean overlaps(ActionTask task) {
+            return !Collections.disjoint(affected, task.getAffected())
+                    || !Collections.disjoint(build, task.getBuild());
+        }
+
+        /**
+         * Add the jobs of another task to this one.
+         *
+         * @param task ActionTask
+         */
+        public void merge(ActionTask task) {
+            affected.addAll(task.getAffected());
+            build.addAll(task.getBuild());
+        }
+
+        /**
+         * Finish the task.
+         *
+         * @param status Status
+         */
+        public void finish(Status status) {
+            this.status = status;
+            this.finished = new Date();
+        }
+    }
+}
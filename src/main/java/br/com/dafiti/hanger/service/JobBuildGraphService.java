@@ -26,15 +26,19 @@ package br.com.dafiti.hanger.service;
 import br.com.dafiti.hanger.model.Job;
 import br.com.dafiti.hanger.model.JobBuildMetric;
 import br.com.dafiti.hanger.option.Phase;
-import br.com.dafiti.hanger.repository.JobBuildRepository;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
 /**
@@ -44,12 +48,21 @@ import org.springframework.stereotype.Service;
 @Service
 public class JobBuildGraphService {
 
-    private final JobBuildRepository jobBuildRepository;
+    private final JobBuildRollupService jobBuildRollupService;
+    private final JobBuildLifecycleService jobBuildLifecycleService;
     private final AuditorService auditorService;
 
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final DateTimeFormatter DATE = DateTimeFormat.forPattern("yyyy-MM-dd HH:mm");
+
     @Autowired
-    public JobBuildGraphService(JobBuildRepository jobBuildRepository, AuditorService auditorService) {
-        this.jobBuildRepository = jobBuildRepository;
+    public JobBuildGraphService(
+            JobBuildRollupService jobBuildRollupService,
+            JobBuildLifecycleService jobBuildLifecycleService,
+            AuditorService auditorService) {
+
+        this.jobBuildRollupService = jobBuildRollupService;
+        this.jobBuildLifecycleService = jobBuildLifecycleService;
         this.auditorService = auditorService;
     }
 
@@ -62,24 +75,12 @@ public class JobBuildGraphService {
      *
      * @return Job build count by hour list.
      */
-    @Cacheable(value = "jobBuildByHour", key = "{#phase, #startDate, #endDate}")
     public List<JobBuildMetric> findJobBuildCountByHour(
             Phase phase,
             Date startDate,
             Date endDate) {
 
-        Date initialDate = new DateTime(startDate)
-                .withTimeAtStartOfDay()
-                .toDate();
-
-        Date finalDate = new DateTime(endDate)
-                .withTimeAtStartOfDay()
-                .plusHours(23)
-                .plusMinutes(59)
-                .plusSeconds(59)
-                .toDate();
-
-        return jobBuildRepository.findJobBuildCountByHour(phase, initialDate, finalDate);
+        return jobBuildRollupService.findJobBuildCountByHour(phase, startDate, endDate);
     }
 
     /**
@@ -160,182 +161,118 @@ public class JobBuildGraphService {
         List<JobBuildMetric> metrics = new ArrayList();
 
         if (job != null && !job.isEmpty()) {
-            metrics = jobBuildRepository.findBuildHistory(job, startDate, endDate);
+            metrics = jobBuildLifecycleService.findBuildHistory(job, startDate, endDate);
         }
 
         return metrics;
     }
 
     /**
-     * Get the gantt graph data.
+     * Write the gantt graph data of the builds running in a time window.
      *
      * @param jobs Job
      * @param dateFrom Date from
      * @param dateTo Date to
-     * @return Gantt
+     * @param output Output stream
+     * @throws java.io.IOException
      */
-    public List getDHTMLXGanttData(
+    public void writeDHTMLXGanttData(
             List<Job> jobs,
             Date dateFrom,
-            Date dateTo) {
+            Date dateTo,
+            OutputStream output) throws IOException {
 
         auditorService.publish("GANTT_RUN");
 
-        Long surrogateID = 0L;
-        List<DHTMLXGantt> data = new ArrayList();
+        Map<Long, List<JobBuildMetric>> builds = new LinkedHashMap<>();
 
-        //Add all parents to gantt. 
-        if (jobs != null) {
-            List<JobBuildMetric> metrics = this.findBuildHistory(jobs, dateFrom, dateTo);
+        //Groups the builds by job in one pass.
+        if (jobs != null && !jobs.isEmpty()) {
+            jobBuildLifecycleService.findBuildWindow(jobs, dateFrom, dateTo).forEach(metric -> {
+                builds.computeIfAbsent(metric.getJob().getId(), k -> new ArrayList<>()).add(metric);
+            });
+        }
 
-            for (Job job : jobs) {
-                for (JobBuildMetric metric : metrics) {
-                    if (job.getId().equals(metric.getJob().getId())) {
-                        data.add(new DHTMLXGantt(
-                                metric.getJob().getId().toString(),
-                                metric.getJob().getDisplayName(),
-                                metric.getQueueDate().toString(),
-                                0L,
-                                1.0,
-                                true,
-                                "",
-                                "#D6DBE1",
-                                ""
-                        ));
-
-                        break;
-                    }
+        try (JsonGenerator json = JSON.createGenerator(output)) {
+            json.writeStartObject();
+            json.writeArrayFieldStart("data");
+
+            //Add all parents to gantt.
+            for (Job job : jobs == null ? new ArrayList<Job>() : jobs) {
+                List<JobBuildMetric> metrics = builds.get(job.getId());
+
+                if (metrics != null) {
+                    this.writeTask(
+                            json,
+                            job.getId().toString(),
+                            metrics.get(0).getJob().getDisplayName(),
+                            metrics.get(0).getQueueDate(),
+                            0L,
+                            1.0,
+                            "",
+                            "#D6DBE1",
+                            "");
                 }
             }
 
             //Add all children in the gantt.
-            for (JobBuildMetric metric : metrics) {
-                surrogateID++;
-
-                data.add(new DHTMLXGantt(
-                        surrogateID + "_",
-                        metric.getQueueDate().toString().substring(0, 16) + " - " + metric.getFinishDate().toString().substring(0, 16),
-                        metric.getQueueDate().toString(),
-                        metric.getDurationTimeInMinutes(),
-                        metric.getQueuePercentage(),
-                        true,
-                        metric.getJob().getId().toString(),
-                        metric.isSuccess() ? "#3DB9D3" : "#DD424A",
-                        "#E5E8EC"
-                ));
+            for (List<JobBuildMetric> metrics : builds.values()) {
+                for (JobBuildMetric metric : metrics) {
+                    this.writeTask(
+                            json,
+                            metric.getJob().getId() + "_" + metric.getNumber(),
+                            DATE.print(metric.getQueueDate().getTime()) + " - " + DATE.print(metric.getFinishDate().getTime()),
+                            metric.getQueueDate(),
+                            metric.getDurationTimeInMinutes(),
+                            metric.getQueuePercentage(),
+                            metric.getJob().getId().toString(),
+                            metric.isSuccess() ? "#3DB9D3" : "#DD424A",
+                            "#E5E8EC");
+                }
+
+                json.flush();
             }
-        }
 
-        return data;
+            json.writeEndArray();
+            json.writeEndObject();
+        }
     }
 
     /**
-     * DHTMLXGantt data format.
+     * Write a task in a DHTMLXGantt fashion.
+     *
+     * @param json JSON generator
+     * @param id Task id
+     * @param text Task text
+     * @param start Task start
+     * @param duration Duration in minutes
+     * @param progress Progress
+     * @param parent Parent task id
+     * @param color Color
+     * @param progressColor Progress color
+     * @throws IOException
      */
-    class DHTMLXGantt {
-
-        private String id;
-        private String text;
-        private String start_date;
-        private Long duration;
-        private Double progress;
-        private boolean open;
-        private String parent;
-        private String color;
-        private String progressColor;
-
-        public DHTMLXGantt(
-                String id,
-                String text,
-                String start_date,
-                Long duration,
-                Double progress,
-                boolean open,
-                String parent,
-                String color,
-                String progressColor) {
-
-            this.id = id;
-            this.text = text;
-            this.start_date = start_date;
-            this.duration = duration;
-            this.progress = progress;
-            this.open = open;
-            this.parent = parent;
-            this.color = color;
-            this.progressColor = progressColor;
-        }
-
-        public String getId() {
-            return id;
-        }
-
-        public void setId(String id) {
-            this.id = id;
-        }
-
-        public String getText() {
-            return text;
-        }
-
-        public void setText(String text) {
-            this.text = text;
-        }
-
-        public String getStart_date() {
-            return start_date;
-        }
-
-        public void setStart_date(String start_date) {
-            this.start_date = start_date;
-        }
-
-        public Long getDuration() {
-            return duration;
-        }
-
-        public void setDuration(Long duration) {
-            this.duration = duration;
-        }
-
-        public Double getProgress() {
-            return progress;
-        }
-
-        public void setProgress(Double progress) {
-            this.progress = progress;
-        }
-
-        public boolean isOpen() {
-            return open;
-        }
-
-        public void setOpen(boolean open) {
-            this.open = open;
-        }
-
-        public String getParent() {
-            return parent;
-        }
-
-        public void setParent(String parent) {
-            this.parent = parent;
-        }
-
-        public String getColor() {
-            return color;
-        }
-
-        public void setColor(String color) {
-            this.color = color;
-        }
-
-        public String getProgressColor() {
-            return progressColor;
-        }
-
-        public void setProgressColor(String progressColor) {
-            this.progressColor = progressColor;
-        }
+    private void writeTask(
+            JsonGenerator json,
+            String id,
+            String text,
+            Date start,
+            Long duration,
+            Double progress,
+            String parent,
+            String color,
+            String progressColor) throws IOException {
+
+        json.writeStartObject();
+        json.writeStringField("id", id);
+        json.writeStringField("text", text);
+        json.writeStringField("start_date", DATE.print(start.getTime()));
+        json.writeNumberField("duration", duration);
+        json.writeNumberField("progress", progress);
+        json.writeBooleanField("open", true);
+        json.writeStringField("parent", parent);
+        json.writeStringField("color", color);
+        json.writeStringField("progressColor", progressColor);
+        json.writeEndObject();
     }
 }
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2018 Dafiti Group
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package br.com.dafiti.hanger.service;
+
+import br.com.dafiti.hanger.model.Job;
+import br.com.dafiti.hanger.model.JobBuild;
+import br.com.dafiti.hanger.model.JobBuildLifecycle;
+import br.com.dafiti.hanger.model.JobBuildMetric;
+import br.com.dafiti.hanger.option.Status;
+import br.com.dafiti.hanger.repository.JobBuildLifecycleRepository;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.joda.time.DateTime;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps the lifecycle of each job build number.
+ *
+ * @author Valdiney V GOMES
+ */
+@Service
+public class JobBuildLifecycleService {
+
+    private final JobBuildLifecycleRepository jobBuildLifecycleRepository;
+
+    private static final int WINDOW = 1;
+
+    @Autowired
+    public JobBuildLifecycleService(JobBuildLifecycleRepository jobBuildLifecycleRepository) {
+        this.jobBuildLifecycleRepository = jobBuildLifecycleRepository;
+    }
+
+    public JobBuildLifecycle findByJobAndNumber(Job job, int number) {
+        return jobBuildLifecycleRepository.findByJobAndNumber(job, number);
+    }
+
+    /**
+     * Identify if there is any build lifecycle queued in a period.
+     *
+     * @param startDate Start Date
+     * @param endDate End Date
+     * @return Identify if there is any build lifecycle
+     */
+    public boolean hasLifecycle(Date startDate, Date endDate) {
+        return jobBuildLifecycleRepository.existsByQueuedBetween(startDate, endDate);
+    }
+
+    /**
+     * Add build phases to the lifecycle of its build numbers.
+     *
+     * @param builds Build phases
+     */
+    public void merge(Collection<JobBuild> builds) {
+        Map<String, JobBuildLifecycle> lifecycles = new LinkedHashMap<>();
+        Map<String, JobBuildLifecycle> known = new HashMap<>();
+
+        //Gets at once the lifecycles that could have started before the phases.
+        if (builds.size() > 1) {
+            Date from = builds.stream().map(JobBuild::getDate).min(Date::compareTo).get();
+            Date to = builds.stream().map(JobBuild::getDate).max(Date::compareTo).get();
+
+            jobBuildLifecycleRepository.findByQueuedBetween(new DateTime(from).minusDays(2).toDate(), to)
+                    .forEach(lifecycle -> known.put(this.getKey(lifecycle.getJob(), lifecycle.getNumber()), lifecycle));
+        }
+
+        for (JobBuild jobBuild : builds) {
+            String key = this.getKey(jobBuild.getJob(), jobBuild.getNumber());
+
+            lifecycles.computeIfAbsent(key, k -> {
+                JobBuildLifecycle lifecycle = known.get(k);
+
+                if (lifecycle == null) {
+                    lifecycle = jobBuildLifecycleRepository.findByJobAndNumber(jobBuild.getJob(), jobBuild.getNumber());
+                }
+
+                return lifecycle == null ? new JobBuildLifecycle(jobBuild.getJob(), jobBuild.getNumber()) : lifecycle;
+            }).add(jobBuild);
+        }
+
+        jobBuildLifecycleRepository.saveAll(lifecycles.values());
+    }
+
+    /**
+     * Get the elapsed time of a build.
+     *
+     * @param job Job
+     * @param number Build number
+     * @return Elapsed time
+     */
+    public String findJobBuildTime(Job job, int number) {
+        JobBuildLifecycle lifecycle = jobBuildLifecycleRepository.findByJobAndNumber(job, number);
+        return lifecycle == null ? null : lifecycle.getElapsedTime();
+    }
+
+    /**
+     * Get the build history of a list of jobs.
+     *
+     * @param job Job list
+     * @param startDate Start Date
+     * @param endDate End Date
+     * @return Build information by number.
+     */
+    public List<JobBuildMetric> findBuildHistory(
+            List<Job> job,
+            Date startDate,
+            Date endDate) {
+
+        return this.getMetric(jobBuildLifecycleRepository.findByJobInAndQueuedBetween(job, startDate, endDate));
+    }
+
+    /**
+     * Get the builds of a list of jobs running at some moment of a period.
+     *
+     * @param job Job list
+     * @param startDate Start Date
+     * @param endDate End Date
+     * @return Build information by number.
+     */
+    public List<JobBuildMetric> findBuildWindow(
+            List<Job> job,
+            Date startDate,
+            Date endDate) {
+
+        return this.getMetric(jobBuildLifecycleRepository.findBuildWindow(
+                job,
+                new DateTime(startDate).minusDays(WINDOW).toDate(),
+                startDate,
+                endDate));
+    }
+
+    /**
+     * Get the metrics of a list of build lifecycles.
+     *
+     * @param lifecycles Build lifecycle list
+     * @return Build information by number.
+     */
+    private List<JobBuildMetric> getMetric(List<JobBuildLifecycle> lifecycles) {
+        Date now = new Date();
+        List<JobBuildMetric> metrics = new ArrayList<>();
+
+        lifecycles.forEach(lifecycle -> {
+            JobBuildMetric metric = new JobBuildMetric(
+                    lifecycle.getJob(),
+                    lifecycle.getQueued(),
+                    lifecycle.getStarted() == null ? now : lifecycle.getStarted(),
+                    lifecycle.getFinalized() == null ? now : lifecycle.getFinalized(),
+                    Status.SUCCESS.equals(lifecycle.getStatus()));
+
+            metric.setNumber(lifecycle.getNumber());
+            metrics.add(metric);
+        });
+
+        return metrics;
+    }
+
+    /**
+     * Get the key of a build number.
+     *
+     * @param job Job
+     * @param number Build number
+     * @return Key
+     */
+    private String getKey(Job job, int number) {
+        return job.getId() + "_" + number;
+    }
+}
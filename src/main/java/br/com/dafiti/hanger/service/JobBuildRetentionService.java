@@ -0,0 +1,368 @@
+/*
+ * Copyright (c) 2018 Dafiti Group
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package br.com.dafiti.hanger.service;
+
+import br.com.dafiti.hanger.model.Job;
+import br.com.dafiti.hanger.model.JobBuildLifecycle;
+import br.com.dafiti.hanger.model.JobBuildMetric;
+import br.com.dafiti.hanger.option.Status;
+import br.com.dafiti.hanger.repository.JobBuildLifecycleRepository;
+import br.com.dafiti.hanger.repository.JobBuildRepository;
+import br.com.dafiti.hanger.repository.JobBuildRollupRepository;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps the build history small: phases older than the hot period are
+ * compacted to the build lifecycle and lifecycles older than the retention
+ * period are archived to compressed files, one folder by job.
+ *
+ * @author Valdiney V GOMES
+ */
+@Service
+public class JobBuildRetentionService {
+
+    private final JobBuildRepository jobBuildRepository;
+    private final JobBuildRollupRepository jobBuildRollupRepository;
+    private final JobBuildLifecycleRepository jobBuildLifecycleRepository;
+    private final ConfigurationService configurationService;
+    private final int hot;
+    private final int batch;
+    private final long pause;
+    private final File archive;
+    private final ThreadPoolExecutor executor;
+    private final AtomicBoolean running;
+
+    private static final String PREFIX = "hanger-build-";
+    private static final String SUFFIX = ".jsonl.gz";
+    private static final Logger LOG = LogManager.getLogger(JobBuildRetentionService.class.getName());
+
+    @Autowired
+    public JobBuildRetentionService(
+            JobBuildRepository jobBuildRepository,
+            JobBuildRollupRepository jobBuildRollupRepository,
+            JobBuildLifecycleRepository jobBuildLifecycleRepository,
+            ConfigurationService configurationService,
+            @Value("${hanger.build.hot:30}") int hot,
+            @Value("${hanger.build.batch:1000}") int batch,
+            @Value("${hanger.build.pause:500}") long pause,
+            @Value("${hanger.build.archive:${user.home}/.hanger/archive}") String path) {
+
+        this.jobBuildRepository = jobBuildRepository;
+        this.jobBuildRollupRepository = jobBuildRollupRepository;
+        this.jobBuildLifecycleRepository = jobBuildLifecycleRepository;
+        this.configurationService = configurationService;
+        this.hot = hot;
+        this.batch = batch;
+        this.pause = pause;
+        this.archive = new File(path);
+        this.executor = new ThreadPoolExecutor(
+                1,
+                1,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue(),
+                new CustomizableThreadFactory("retention-"));
+        this.running = new AtomicBoolean();
+    }
+
+    /**
+     * Compact and archive the build history. The batches are throttled, so
+     * the work runs in its own thread to not hold the scheduler.
+     */
+    @Scheduled(cron = "${hanger.build.cron:0 30 2 * * ?}")
+    public void retain() {
+        if (running.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                try {
+                    this.compact();
+                    this.archive();
+                } catch (Exception ex) {
+                    LOG.log(Level.ERROR, "Fail keeping the build history", ex);
+                } finally {
+                    running.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Remove the build phases older than the hot period. Each phase is
+     * already summarized by the rollup and by the lifecycle of its build, so
+     * only days with rollup and builds with lifecycle are compacted. Phases
+     * referenced by a job status are kept.
+     */
+    public void compact() {
+        Date first = jobBuildRepository.findFirstBuildDate();
+
+        if (first != null) {
+            LocalDate day = new LocalDate(first);
+            LocalDate limit = new LocalDate().minusDays(hot);
+            int total = 0;
+
+            while (day.isBefore(limit)) {
+                if (jobBuildRollupRepository.existsByDate(day.toDate())) {
+                    List<Long> builds;
+
+                    do {
+                        builds = jobBuildRepository.findCompactable(
+                                day.toDateTimeAtStartOfDay().toDate(),
+                                day.plusDays(1).toDateTimeAtStartOfDay().minusMillis(1).toDate(),
+                                PageRequest.of(0, batch));
+
+                        if (!builds.isEmpty()) {
+                            jobBuildRepository.deleteByIdIn(builds);
+                            total += builds.size();
+                            this.sleep();
+                        }
+                    } while (builds.size() == batch);
+                }
+
+                day = day.plusDays(1);
+            }
+
+            LOG.log(Level.INFO, total + " build phases compacted");
+        }
+    }
+
+    /**
+     * Move the build lifecycles older than the retention period to monthly
+     * compressed files of each job. Each batch is appended as a new gzip
+     * member, so a batch interrupted before the delete is only read twice.
+     * Lifecycles within the hot period are kept, as the rollup backfill would
+     * rebuild them from the build phases.
+     *
+     * @throws IOException
+     */
+    public void archive() throws IOException {
+        Date limit = new LocalDate()
+                .minusDays(Math.max(this.getRetentionPeriod(), hot))
+                .toDateTimeAtStartOfDay()
+                .toDate();
+        List<JobBuildLifecycle> lifecycles;
+        int total = 0;
+
+        if (!archive.isDirectory() && !archive.mkdirs()) {
+            throw new IOException("Fail creating build archive folder " + archive.getAbsolutePath());
+        }
+
+        do {
+            lifecycles = jobBuildLifecycleRepository.findByQueuedBeforeOrderByQueued(limit, PageRequest.of(0, batch));
+
+            if (!lifecycles.isEmpty()) {
+                Map<File, List<JobBuildLifecycle>> files = lifecycles
+                        .stream()
+                        .collect(Collectors.groupingBy(lifecycle -> new File(
+                                this.getFolder(lifecycle.getJob().getId()),
+                                PREFIX + new DateTime(lifecycle.getQueued()).toString("yyyy-MM") + SUFFIX)));
+
+                for (Map.Entry<File, List<JobBuildLifecycle>> file : files.entrySet()) {
+                    File folder = file.getKey().getParentFile();
+
+                    if (!folder.isDirectory() && !folder.mkdirs()) {
+                        throw new IOException("Fail creating build archive folder " + folder.getAbsolutePath());
+                    }
+
+                    try (Writer writer = new OutputStreamWriter(
+                            new GZIPOutputStream(new FileOutputStream(file.getKey(), true)),
+                            StandardCharsets.UTF_8)) {
+
+                        for (JobBuildLifecycle lifecycle : file.getValue()) {
+                            writer.write(this.toJSON(lifecycle).toString());
+                            writer.write("\n");
+                        }
+                    }
+                }
+
+                jobBuildLifecycleRepository.deleteByIdIn(lifecycles
+                        .stream()
+                        .map(JobBuildLifecycle::getId)
+                        .collect(Collectors.toList()));
+
+                total += lifecycles.size();
+                this.sleep();
+            }
+        } while (lifecycles.size() == batch);
+
+        LOG.log(Level.INFO, total + " build lifecycles archived");
+    }
+
+    /**
+     * Get the archived build history of a job, newest first. Only the files
+     * of the job are read, from the newest month until the limit is reached.
+     *
+     * @param job Job
+     * @param limit Max number of builds
+     * @return Build information by number.
+     */
+    public List<JobBuildMetric> findArchivedHistory(Job job, int limit) {
+        Map<Integer, JobBuildMetric> history = new LinkedHashMap<>();
+        File[] files = this.getFolder(job.getId()).listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+
+        if (files != null) {
+            //Files are named by month, so the newest comes first.
+            Arrays.sort(files, Comparator.comparing(File::getName).reversed());
+
+            for (File file : files) {
+                if (history.size() >= limit) {
+                    break;
+                }
+
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                        new GZIPInputStream(new FileInputStream(file)),
+                        StandardCharsets.UTF_8))) {
+
+                    String line;
+
+                    while ((line = reader.readLine()) != null) {
+                        JSONObject build = new JSONObject(line);
+
+                        if (job.getId().equals(build.getLong("job"))) {
+                            history.put(build.getInt("number"), this.toMetric(job, build));
+                        }
+                    }
+                } catch (Exception ex) {
+                    LOG.log(Level.ERROR, "Fail reading build archive " + file.getName(), ex);
+                }
+            }
+        }
+
+        return history
+                .values()
+                .stream()
+                .sorted(Comparator.comparing(JobBuildMetric::getQueueDate).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Get the archive folder of a job.
+     *
+     * @param id Job id
+     * @return Archive folder
+     */
+    private File getFolder(Long id) {
+        return new File(archive, "job-" + id);
+    }
+
+    /**
+     * Get the archive line of a build lifecycle.
+     *
+     * @param lifecycle Build lifecycle
+     * @return Archive line
+     */
+    private JSONObject toJSON(JobBuildLifecycle lifecycle) {
+        JSONObject build = new JSONObject();
+
+        build.put("job", lifecycle.getJob().getId());
+        build.put("number", lifecycle.getNumber());
+        build.put("queued", lifecycle.getQueued().getTime());
+        build.put("started", lifecycle.getStarted() == null ? null : lifecycle.getStarted().getTime());
+        build.put("finalized", lifecycle.getFinalized() == null ? null : lifecycle.getFinalized().getTime());
+        build.put("duration", lifecycle.getDuration());
+        build.put("status", lifecycle.getStatus() == null ? null : lifecycle.getStatus().name());
+
+        return build;
+    }
+
+    /**
+     * Get the metric of an archive line.
+     *
+     * @param job Job
+     * @param build Archive line
+     * @return Build information
+     */
+    private JobBuildMetric toMetric(Job job, JSONObject build) {
+        Date queued = new Date(build.getLong("queued"));
+        Date finalized = build.has("finalized")
+                ? new Date(build.getLong("finalized"))
+                : new Date(queued.getTime() + build.getLong("duration") * 1000);
+
+        JobBuildMetric metric = new JobBuildMetric(
+                job,
+                queued,
+                build.has("started") ? new Date(build.getLong("started")) : finalized,
+                finalized,
+                Status.SUCCESS.name().equals(build.optString("status")));
+
+        metric.setNumber(build.getInt("number"));
+
+        return metric;
+    }
+
+    /**
+     * Get the retention period in days.
+     *
+     * @return Retention period
+     */
+    private int getRetentionPeriod() {
+        return Integer.valueOf(configurationService
+                .findByParameter("LOG_RETENTION_PERIOD")
+                .getValue());
+    }
+
+    /**
+     * Wait between batches to not compete with the build notifications.
+     */
+    private void sleep() {
+        try {
+            Thread.sleep(pause);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright (c) 2018 Dafiti Group
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package br.com.dafiti.hanger.service;
+
+import br.com.dafiti.hanger.model.Job;
+import br.com.dafiti.hanger.model.JobBuild;
+import br.com.dafiti.hanger.model.JobBuildMetric;
+import br.com.dafiti.hanger.model.JobBuildRollup;
+import br.com.dafiti.hanger.option.Phase;
+import br.com.dafiti.hanger.option.Status;
+import br.com.dafiti.hanger.repository.JobBuildRepository;
+import br.com.dafiti.hanger.repository.JobBuildRollupRepository;
+import br.com.dafiti.hanger.repository.JobRepository;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+import org.joda.time.Seconds;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps the job builds by day, hour and phase.
+ *
+ * @author Valdiney V GOMES
+ */
+@Service
+public class JobBuildRollupService {
+
+    private final JobBuildRollupRepository jobBuildRollupRepository;
+    private final JobBuildRepository jobBuildRepository;
+    private final JobRepository jobRepository;
+    private final JobBuildLifecycleService jobBuildLifecycleService;
+    private final int hot;
+    private final ReadWriteLock[] days;
+    private final Object[] numbers;
+
+    private static final int STRIPES = 64;
+    private static final int REFRESH = 2;
+    private static final Logger LOG = LogManager.getLogger(JobBuildRollupService.class.getName());
+
+    @Autowired
+    public JobBuildRollupService(
+            JobBuildRollupRepository jobBuildRollupRepository,
+            JobBuildRepository jobBuildRepository,
+            JobRepository jobRepository,
+            JobBuildLifecycleService jobBuildLifecycleService,
+            @Value("${hanger.build.hot:30}") int hot) {
+
+        this.jobBuildRollupRepository = jobBuildRollupRepository;
+        this.jobBuildRepository = jobBuildRepository;
+        this.jobRepository = jobRepository;
+        this.jobBuildLifecycleService = jobBuildLifecycleService;
+        this.hot = hot;
+        this.days = new ReadWriteLock[STRIPES];
+        this.numbers = new Object[STRIPES];
+
+        for (int i = 0; i < STRIPES; i++) {
+            this.days[i] = new ReentrantReadWriteLock();
+            this.numbers[i] = new Object();
+        }
+    }
+
+    /**
+     * Save a build and add it to the rollup and to the build lifecycle.
+     *
+     * Builds of a day are saved concurrently, they only wait for a rebuild
+     * of the same day.
+     *
+     * @param jobBuild Build
+     * @return Build
+     */
+    public JobBuild save(JobBuild jobBuild) {
+        DateTime date = new DateTime(jobBuild.getDate());
+        Date day = date.withTimeAtStartOfDay().toDate();
+        ReadWriteLock lock = this.getLock(new LocalDate(day));
+
+        lock.readLock().lock();
+
+        try {
+            jobBuild = jobBuildRepository.save(jobBuild);
+
+            if (jobBuild.getJob() != null) {
+                this.increment(jobBuild, day, date.getHourOfDay());
+
+                //Phases of the same build number are merged one at a time.
+                synchronized (numbers[Math.floorMod((jobBuild.getJob().getId() + "_" + jobBuild.getNumber()).hashCode(), STRIPES)]) {
+                    try {
+                        jobBuildLifecycleService.merge(Arrays.asList(jobBuild));
+                    } catch (DataIntegrityViolationException ex) {
+                        //The lifecycle was created meanwhile by a rebuild of another day.
+                        jobBuildLifecycleService.merge(Arrays.asList(jobBuild));
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return jobBuild;
+    }
+
+    /**
+     * Add a build to its rollup, creating the rollup when it does not exist.
+     *
+     * @param jobBuild Build
+     * @param day Day
+     * @param hour Hour
+     */
+    private void increment(JobBuild jobBuild, Date day, int hour) {
+        long duration = this.getDuration(jobBuild, null);
+
+        if (jobBuildRollupRepository.increment(jobBuild.getJob(), day, hour, jobBuild.getPhase(), 1, duration) == 0) {
+            JobBuildRollup rollup = new JobBuildRollup(jobBuild.getJob(), day, hour, jobBuild.getPhase());
+            rollup.add(1, duration);
+
+            try {
+                jobBuildRollupRepository.save(rollup);
+            } catch (DataIntegrityViolationException ex) {
+                //Another build created the rollup meanwhile.
+                jobBuildRollupRepository.increment(jobBuild.getJob(), day, hour, jobBuild.getPhase(), 1, duration);
+            }
+        }
+    }
+
+    /**
+     * Get the lock of a day.
+     *
+     * @param day Day
+     * @return Lock
+     */
+    private ReadWriteLock getLock(LocalDate day) {
+        return days[Math.floorMod(day.hashCode(), STRIPES)];
+    }
+
+    /**
+     * Find job build count by hour. The current hour is always taken from
+     * the builds.
+     *
+     * @param phase Phase
+     * @param startDate Start Date
+     * @param endDate End Date
+     * @return Job build count by hour list.
+     */
+    public List<JobBuildMetric> findJobBuildCountByHour(
+            Phase phase,
+            Date startDate,
+            Date endDate) {
+
+        DateTime hour = new DateTime().hourOfDay().roundFloorCopy();
+        Map<String, JobBuildMetric> metrics = new HashMap<>();
+        List<JobBuildMetric> builds = new ArrayList<>();
+
+        builds.addAll(jobBuildRollupRepository.findJobBuildCountByHour(
+                phase,
+                new DateTime(startDate).withTimeAtStartOfDay().toDate(),
+                new DateTime(endDate).withTimeAtStartOfDay().toDate(),
+                hour.withTimeAtStartOfDay().toDate(),
+                hour.getHourOfDay()));
+
+        //Identifies if the current hour is in the period.
+        if (!hour.isBefore(new DateTime(startDate).withTimeAtStartOfDay())
+                && hour.isBefore(new DateTime(endDate).withTimeAtStartOfDay().plusDays(1))) {
+            builds.addAll(jobBuildRepository.findJobBuildCountByHour(
+                    phase,
+                    hour.toDate(),
+                    hour.plusHours(1).minusMillis(1).toDate()));
+        }
+
+        //Merges the same hour of the rollup and the builds.
+        builds.forEach(build -> metrics.merge(
+                build.getJob().getId() + "_" + build.getHour(),
+                build,
+                (a, b) -> new JobBuildMetric(a.getJob(), a.getHour(), a.getBuild() + b.getBuild())));
+
+        return new ArrayList<>(metrics.values());
+    }
+
+    /**
+     * Fill the rollup of the days without one and refresh the last days. The
+     * build lifecycle of the same days is filled as well.
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        Date first = jobBuildRepository.findFirstBuildDate();
+
+        if (first != null) {
+            LocalDate today = new LocalDate();
+            LocalDate day = new LocalDate(first);
+            Map<Long, Job> jobs = new HashMap<>();
+
+            jobRepository.findAll().forEach(job -> jobs.put(job.getId(), job));
+
+            LOG.log(Level.INFO, "Job build rollup backfill from " + day);
+
+            while (!day.isAfter(today)) {
+                try {
+                    //Lifecycles older than the hot period could be compacted or archived.
+                    if (day.isAfter(today.minusDays(REFRESH))
+                            || !jobBuildRollupRepository.existsByDate(day.toDate())
+                            || (day.isAfter(today.minusDays(hot))
+                            && !jobBuildLifecycleService.hasLifecycle(
+                                    day.toDateTimeAtStartOfDay().toDate(),
+                                    day.plusDays(1).toDateTimeAtStartOfDay().minusMillis(1).toDate()))) {
+                        this.rebuild(day, jobs);
+                    }
+                } catch (Exception ex) {
+                    LOG.log(Level.ERROR, "Fail building job build rollup of " + day, ex);
+                }
+
+                day = day.plusDays(1);
+            }
+
+            LOG.log(Level.INFO, "Job build rollup backfill finished");
+        }
+    }
+
+    /**
+     * Replace the rollup of a day by the builds of the day.
+     *
+     * @param day Day
+     * @param jobs Jobs by id
+     */
+    private void rebuild(LocalDate day, Map<Long, Job> jobs) {
+        ReadWriteLock lock = this.getLock(day);
+
+        lock.writeLock().lock();
+
+        try {
+            this.replace(day, jobs);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replace the rollup of a day, holding the lock of the day.
+     *
+     * @param day Day
+     * @param jobs Jobs by id
+     */
+    private void replace(LocalDate day, Map<Long, Job> jobs) {
+        Map<String, JobBuildRollup> rollups = new HashMap<>();
+        Map<String, Date> started = new HashMap<>();
+        List<JobBuild> builds = new ArrayList<>();
+        Set<Long> missing = new HashSet<>();
+
+        //Builds are sorted by date, so a start comes before its finalization.
+        for (Object[] row : jobBuildRepository.findBuildByDate(
+                day.toDateTimeAtStartOfDay().toDate(),
+                day.plusDays(1).toDateTimeAtStartOfDay().minusMillis(1).toDate())) {
+
+            Long id = (Long) row[0];
+
+            //Jobs created after the backfill started are loaded on demand.
+            if (id != null && !jobs.containsKey(id) && !missing.contains(id)) {
+                Job found = jobRepository.findById(id).orElse(null);
+
+                if (found == null) {
+                    missing.add(id);
+                } else {
+                    jobs.put(id, found);
+                }
+            }
+
+            Job job = id == null ? null : jobs.get(id);
+
+            if (job != null) {
+                JobBuild jobBuild = new JobBuild();
+                jobBuild.setJob(job);
+                jobBuild.setNumber((Integer) row[1]);
+                jobBuild.setPhase((Phase) row[2]);
+                jobBuild.setDate((Date) row[3]);
+                jobBuild.setStatus((Status) row[4]);
+                builds.add(jobBuild);
+
+                String build = job.getId() + "_" + jobBuild.getNumber();
+                DateTime date = new DateTime(jobBuild.getDate());
+
+                if (jobBuild.getPhase().equals(Phase.STARTED)) {
+                    started.put(build, jobBuild.getDate());
+                }
+
+                rollups.computeIfAbsent(
+                        job.getId() + "_" + date.getHourOfDay() + "_" + jobBuild.getPhase(),
+                        k -> new JobBuildRollup(job, day.toDate(), date.getHourOfDay(), jobBuild.getPhase()))
+                        .add(1, this.getDuration(jobBuild, started.get(build)));
+            }
+        }
+
+        jobBuildRollupRepository.deleteByDate(day.toDate());
+        jobBuildRollupRepository.saveAll(rollups.values());
+
+        if (!builds.isEmpty()) {
+            jobBuildLifecycleService.merge(builds);
+        }
+    }
+
+    /**
+     * Get the build duration of a finalization.
+     *
+     * @param jobBuild Build
+     * @param start Build start, when known
+     * @return Build duration in seconds
+     */
+    private long getDuration(JobBuild jobBuild, Date start) {
+        long duration = 0;
+
+        if (jobBuild.getPhase().equals(Phase.FINALIZED)) {
+            if (start == null) {
+                JobBuild started = jobBuildRepository.findTopByJobAndNumberAndPhaseOrderByDateDesc(
+                        jobBuild.getJob(),
+                        jobBuild.getNumber(),
+                        Phase.STARTED);
+
+                start = started == null ? null : started.getDate();
+            }
+
+            if (start != null && !start.after(jobBuild.getDate())) {
+                duration = Seconds.secondsBetween(new DateTime(start), new DateTime(jobBuild.getDate())).getSeconds();
+            }
+        }
+
+        return duration;
+    }
+}
@@ -50,6 +50,8 @@ public class JobBuildService {
     private final JobCheckupService checkupService;
     private final JobStatusService jobStatusService;
     private final JobNotificationService jobNotificationService;
+    private final JobBuildRollupService jobBuildRollupService;
+    private final JobBuildLifecycleService jobBuildLifecycleService;
     private final ConcurrentHashMap<Long, LocalDateTime> build;
 
     private static final Logger LOG = LogManager.getLogger(JobBuildService.class.getName());
@@ -60,13 +62,17 @@ public class JobBuildService {
             JenkinsService jenkinsService,
             JobCheckupService checkupService,
             JobStatusService jobStatusService,
-            JobNotificationService jobNotificationService) {
+            JobNotificationService jobNotificationService,
+            JobBuildRollupService jobBuildRollupService,
+            JobBuildLifecycleService jobBuildLifecycleService) {
 
         this.jobBuildRepository = jobBuildRepository;
         this.jenkinsService = jenkinsService;
         this.checkupService = checkupService;
         this.jobStatusService = jobStatusService;
         this.jobNotificationService = jobNotificationService;
+        this.jobBuildRollupService = jobBuildRollupService;
+        this.jobBuildLifecycleService = jobBuildLifecycleService;
         this.build = new ConcurrentHashMap();
     }
 
@@ -77,7 +83,7 @@ public class JobBuildService {
      * @return
      */
     public JobBuild save(JobBuild jobBuild) {
-        return jobBuildRepository.save(jobBuild);
+        return jobBuildRollupService.save(jobBuild);
     }
 
     /**
@@ -101,7 +107,7 @@ public class JobBuildService {
             Job job,
             int buildNumber) {
 
-        return jobBuildRepository.findJobBuildTime(job, buildNumber);
+        return jobBuildLifecycleService.findJobBuildTime(job, buildNumber);
     }
 
     /**
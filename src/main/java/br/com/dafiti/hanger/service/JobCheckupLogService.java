@@ -23,6 +23,7 @@
  */
 package br.com.dafiti.hanger.service;
 
+import br.com.dafiti.hanger.model.CommandLog;
 import br.com.dafiti.hanger.model.Job;
 import br.com.dafiti.hanger.model.JobCheckup;
 import br.com.dafiti.hanger.model.JobCheckupLog;
@@ -65,6 +66,10 @@ public class JobCheckupLogService {
         jobCheckupLogRepository.deleteById(id);
     }
 
+    public JobCheckupLog findByCommandLog(CommandLog commandLog) {
+        return jobCheckupLogRepository.findFirstByCommandLog(commandLog);
+    }
+
     public void cleaneup(Date expiration) {
         jobCheckupLogRepository.deleteByDateBefore(expiration);
     }
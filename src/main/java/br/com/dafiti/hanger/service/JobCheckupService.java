@@ -34,34 +34,28 @@ import br.com.dafiti.hanger.option.CommandType;
 import br.com.dafiti.hanger.option.Flow;
 import br.com.dafiti.hanger.option.Scope;
 import br.com.dafiti.hanger.repository.JobCheckupRepository;
-import java.io.ByteArrayOutputStream;
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import br.com.dafiti.hanger.service.ShellCommandService.ShellResult;
+import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import java.util.stream.Collectors;
-import org.apache.commons.exec.CommandLine;
-import org.apache.commons.exec.DefaultExecutor;
-import org.apache.commons.exec.ExecuteWatchdog;
-import org.apache.commons.exec.PumpStreamHandler;
 import org.apache.logging.log4j.Logger;
-import org.json.JSONArray;
-import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataAccessException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 /**
@@ -74,14 +68,16 @@ public class JobCheckupService {
     private final JdbcTemplate jdbcTemplate;
     private final JobCheckupRepository jobCheckupRepository;
     private final ConnectionService connectionService;
-    private final JenkinsService jenkinsService;
-    private final JobService jobService;
+    private final JobActionService jobActionService;
     private final RetryService retryService;
     private final CommandLogService commandLogService;
     private final MailService mailService;
     private final JobStatusService jobStatusService;
     private final SlackService slackService;
     private final TemplateService templateService;
+    private final ShellCommandService shellCommandService;
+    private final ConcurrentHashMap<Long, Speculation> speculation;
+    private final int speculationTTL;
 
     private static final Logger LOG = LogManager.getLogger(JobBuildPushService.class.getName());
 
@@ -90,26 +86,29 @@ public class JobCheckupService {
             JdbcTemplate jdbcTemplate,
             JobCheckupRepository jobCheckupRepository,
             ConnectionService connectionService,
-            JenkinsService jenkinsService,
-            JobService jobService,
+            JobActionService jobActionService,
             RetryService retryService,
             CommandLogService commandLogService,
             MailService mailService,
             JobStatusService jobStatusService,
             SlackService slackService,
-            TemplateService templateService) {
+            TemplateService templateService,
+            ShellCommandService shellCommandService,
+            @Value("${hanger.checkup.speculative.ttl:600}") int speculationTTL) {
 
         this.jdbcTemplate = jdbcTemplate;
         this.jobCheckupRepository = jobCheckupRepository;
         this.connectionService = connectionService;
-        this.jenkinsService = jenkinsService;
-        this.jobService = jobService;
+        this.jobActionService = jobActionService;
         this.retryService = retryService;
         this.commandLogService = commandLogService;
         this.mailService = mailService;
         this.jobStatusService = jobStatusService;
         this.slackService = slackService;
         this.templateService = templateService;
+        this.shellCommandService = shellCommandService;
+        this.speculation = new ConcurrentHashMap();
+        this.speculationTTL = speculationTTL;
     }
 
     /**
@@ -217,11 +216,19 @@ public class JobCheckupService {
                         checkupLog.setAction(checkup.getAction());
                         checkupLog.setScope(checkup.getScope());
 
-                        //Runs the query. 
-                        String value = this.executeQuery(checkup);
+                        //Runs the query or reuses a valid speculative result. 
+                        String value = prevalidation ? this.getSpeculation(checkup) : null;
+
+                        if (value == null) {
+                            value = this.executeQuery(checkup, checkupLog);
+                        }
 
                         //Compares value and threshold. 
+                        long start = System.currentTimeMillis();
                         validated = this.check(checkup, value);
+                        checkupLog.setMacroTime(
+                                (checkupLog.getMacroTime() == null ? 0 : checkupLog.getMacroTime())
+                                + System.currentTimeMillis() - start);
 
                         //Identifies if is just a log. 
                         log = checkup.getAction().equals(Action.LOG_AND_CONTINUE);
@@ -231,6 +238,8 @@ public class JobCheckupService {
                             boolean commandResult = false;
 
                             //Executes the checkup command.
+                            start = System.currentTimeMillis();
+
                             for (Command command : checkup.getCommand()) {
                                 commandResult = this.executeCommand(checkup, command, checkupLog);
 
@@ -239,10 +248,14 @@ public class JobCheckupService {
                                 }
                             }
 
+                            checkupLog.setCommandTime(System.currentTimeMillis() - start);
+
                             //Identifies if should revalidate the checkup.
                             if (commandResult) {
-                                value = this.executeQuery(checkup);
+                                start = System.currentTimeMillis();
+                                value = this.executeQuery(checkup, null);
                                 validated = this.check(checkup, value);
+                                checkupLog.setRevalidationTime(System.currentTimeMillis() - start);
                             }
                         }
 
@@ -262,7 +275,7 @@ public class JobCheckupService {
                                 retryService.increase(job);
 
                                 //Executes the checkup related action. 
-                                this.executeAction(job, checkup);
+                                this.executeAction(job, checkup, prevalidation);
                             }
                         } else {
                             retryService.remove(job);
@@ -297,64 +310,95 @@ public class JobCheckupService {
     }
 
     /**
-     * Execute an action.
+     * Run the prevalidation queries of a job ahead of its build.
      *
-     * @param job Job
-     * @param checkup JobCheckup
+     * @param job Job.
      */
-    @Async
-    private void executeAction(Job job, JobCheckup checkup) {
-        switch (checkup.getAction()) {
-            case REBUILD:
-                try {
-                //Rebuild the job.
-                jobStatusService.updateFlow(job.getStatus(), Flow.QUEUED);
-                jenkinsService.build(job);
-            } catch (Exception ex) {
-                LogManager.getLogger(EyeService.class).log(Level.ERROR, "Fail building job: " + job.getName(), ex);
+    public void speculate(Job job) {
+        //Discards expired results.
+        speculation.values().removeIf(x -> x.isExpired());
+
+        job.getCheckup()
+                .stream()
+                .filter(x -> (x.isPrevalidation() && x.isEnabled()))
+                .forEach(checkup -> {
+                    speculation.put(
+                            checkup.getId(),
+                            new Speculation(this.executeQuery(checkup, null), speculationTTL));
+
+                    LOG.log(Level.INFO, "Checkup {} of {} evaluated speculatively", new Object[]{checkup.getName(), job.getName()});
+                });
+    }
+
+    /**
+     * Evaluate the checkups of a job without commands, actions or logging.
+     *
+     * @param job Job.
+     * @return Checkup log with the phase timing of each enabled checkup.
+     */
+    public List<JobCheckupLog> dryRun(Job job) {
+        List<JobCheckupLog> dryRun = new ArrayList();
+
+        for (JobCheckup checkup : job.getCheckup()) {
+            if (checkup.isEnabled()) {
+                JobCheckupLog checkupLog = new JobCheckupLog();
+
+                checkupLog.setCheckup(checkup);
+                checkupLog.setQuery(checkup.getQuery());
+                checkupLog.setConditional(checkup.getConditional());
+                checkupLog.setAction(checkup.getAction());
+                checkupLog.setScope(checkup.getScope());
+
+                //Runs the query.
+                String value = this.executeQuery(checkup, checkupLog);
+
+                //Compares value and threshold.
+                long start = System.currentTimeMillis();
+                checkupLog.setSuccess(this.check(checkup, value));
+                checkupLog.setMacroTime(checkupLog.getMacroTime() + System.currentTimeMillis() - start);
+
+                checkupLog.setThreshold(this.getMacro(checkup.getThreshold()));
+                checkupLog.setValue(value);
+
+                dryRun.add(checkupLog);
             }
+        }
 
-            break;
-            case REBUILD_MESH:
-                HashSet<Job> parent = jobService.getMeshParent(job);
-                jobService.rebuildMesh(job);
+        return dryRun;
+    }
 
-                try {
-                    //Rebuild the mesh. 
-                    for (Job meshParent : parent) {
-                        jenkinsService.build(meshParent);
-                    }
-                } catch (Exception ex) {
-                    LogManager.getLogger(EyeService.class).log(Level.ERROR, "Fail building job mesh: " + job.getName(), ex);
-                }
+    /**
+     * Get a speculative checkup value.
+     *
+     * @param checkup JobCheckup.
+     * @return Value or null when there is no valid speculative value.
+     */
+    private String getSpeculation(JobCheckup checkup) {
+        String value = null;
+        Speculation result = speculation.remove(checkup.getId());
 
-                break;
-            case REBUILD_TRIGGER:
-                List<Job> trigger = checkup.getTrigger();
-
-                try {
-                    //Rebuild a selected job path. 
-                    if (!trigger.isEmpty()) {
-                        trigger.stream().map((jobFrom) -> jobService.getRelationPath(job, jobFrom)).forEach((jobPath) -> {
-                            jobPath.stream().forEach((jobInPath) -> {
-                                if (!job.equals(jobInPath)) {
-                                    jobStatusService.updateFlow(jobInPath.getStatus(), Flow.REBUILD);
-                                }
-                            });
-                        });
+        //Only a passing result is reused, failures are always confirmed.
+        if (result != null
+                && !result.isExpired()
+                && this.check(checkup, result.getValue())) {
 
-                        for (Job jobTriggered : trigger) {
-                            jenkinsService.build(jobTriggered);
-                        }
-                    }
-                } catch (Exception ex) {
-                    LogManager.getLogger(EyeService.class).log(Level.ERROR, "Fail building trigger: " + job.getName(), ex);
-                }
+            value = result.getValue();
+        }
+
+        return value;
+    }
 
-                break;
-            default:
-                retryService.remove(job);
-                break;
+    /**
+     * Execute an action.
+     *
+     * @param job Job
+     * @param checkup JobCheckup
+     * @param prevalidation Identify if is a prevalidation, that is not
+     * followed by a job status save.
+     */
+    private void executeAction(Job job, JobCheckup checkup, boolean prevalidation) {
+        if (jobActionService.submit(job, checkup, !prevalidation) == null) {
+            retryService.remove(job);
         }
     }
 
@@ -362,31 +406,60 @@ public class JobCheckupService {
      * Execute a checkup query.
      *
      * @param checkup JobCheckup.
+     * @param profile JobCheckupLog that receives the phase timing, or null.
      * @return Identify if the result match the threshold.
      */
-    private String executeQuery(JobCheckup checkup) {
+    private String executeQuery(JobCheckup checkup, JobCheckupLog profile) {
         String value = "";
+        long[] timing = new long[4];
+        long start = System.currentTimeMillis();
 
         try {
+            //Resolves the query parameters.
+            String query = this.replaceParameter(checkup.getQuery());
+            timing[0] = System.currentTimeMillis() - start;
+
             //Set a connection to database.
-            jdbcTemplate.setDataSource(connectionService.getDataSource(checkup.getConnection()));
-            jdbcTemplate.setMaxRows(1);
-
-            //Execute a query. 
-            value = jdbcTemplate
-                    .queryForObject(
-                            this.replaceParameter(checkup.getQuery()),
-                            (ResultSet rs, int row) -> rs.getString(1)
-                    );
+            JdbcTemplate template = new JdbcTemplate(connectionService.getDataSource(checkup.getConnection()));
+            template.setMaxRows(1);
+
+            //Execute a query timing each phase. 
+            long acquire = System.currentTimeMillis();
+
+            value = template.execute((ConnectionCallback<String>) (Connection connection) -> {
+                timing[1] = System.currentTimeMillis() - acquire;
+
+                try (Statement statement = connection.createStatement()) {
+                    statement.setMaxRows(1);
+
+                    long execute = System.currentTimeMillis();
+
+                    try (ResultSet resultSet = statement.executeQuery(query)) {
+                        timing[2] = System.currentTimeMillis() - execute;
+
+                        long fetch = System.currentTimeMillis();
+                        boolean found = resultSet.next();
+                        String result = found ? resultSet.getString(1) : null;
+                        timing[3] = System.currentTimeMillis() - fetch;
+
+                        if (!found) {
+                            throw new EmptyResultDataAccessException(1);
+                        }
+
+                        return result;
+                    }
+                }
+            });
         } catch (DataAccessException ex) {
             value = ex.getMessage();
-        } finally {
-            try {
-                //Close the connection. 
-                jdbcTemplate.getDataSource().getConnection().close();
-            } catch (SQLException ex) {
-                LOG.log(Level.ERROR, "Fail closing connection ", ex);
-            }
+        }
+
+        //Records the phase timing.
+        if (profile != null) {
+            profile.setMacroTime(timing[0]);
+            profile.setConnectionTime(timing[1]);
+            profile.setQueryTime(timing[2]);
+            profile.setFetchTime(timing[3]);
         }
 
         return value;
@@ -406,7 +479,7 @@ public class JobCheckupService {
         if (command.getCommandType().equals(CommandType.SQL)) {
             success = this.sqlCommand(checkup, command, jobCheckupLog);
         } else {
-            success = this.shellCommand(command, jobCheckupLog);
+            success = this.shellCommand(checkup, command, jobCheckupLog);
         }
 
         return success;
@@ -424,6 +497,7 @@ public class JobCheckupService {
         int affected;
         String log = "";
         boolean success = true;
+        long start = System.currentTimeMillis();
 
         try {
             //Set a connection to database.
@@ -459,7 +533,8 @@ public class JobCheckupService {
                         new CommandLog(
                                 command,
                                 log,
-                                success));
+                                success,
+                                System.currentTimeMillis() - start));
 
                 //Add the command log to checkup log.
                 if (jobCheckupLog != null) {
@@ -481,56 +556,22 @@ public class JobCheckupService {
      * @param jobCheckupLog JobCheckupLog.
      * @return Identify if the command run successfully.
      */
-    private boolean shellCommand(Command command, JobCheckupLog jobCheckupLog) {
+    private boolean shellCommand(JobCheckup checkup, Command command, JobCheckupLog jobCheckupLog) {
         String log = "";
-        boolean success = true;
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        boolean success = false;
+        long start = System.currentTimeMillis();
 
         try {
-            //Create a temp sh file.
-            File tmp = File.createTempFile("hanger_", ".sh");
-
-            //Define file permisssion.
-            tmp.setExecutable(true);
-            tmp.setReadable(true);
-            tmp.setWritable(true);
-
-            //Write shell command to sh file.
-            try (FileWriter writer = new FileWriter(tmp)) {
-                writer
-                        .write(
-                                this.replaceParameter(command.getCommand()).replaceAll("\r", "")
-                        );
-            }
-
-            //Parse the command to run.
-            CommandLine cmdLine = CommandLine.parse("sh " + tmp);
-
-            //Define the executor.
-            DefaultExecutor executor = new DefaultExecutor();
-
-            //Define the timeout.
-            executor.setWatchdog(new ExecuteWatchdog(300000));
-
-            //Define the work directory.
-            Path sandbox = Paths.get(System.getProperty("user.home") + "/.hanger/sandbox/");
-            Files.createDirectories(sandbox);
-            executor.setWorkingDirectory(new File(sandbox.toString()));
-
-            //Define the log.
-            PumpStreamHandler streamHandler = new PumpStreamHandler(outputStream, outputStream, null);
-            executor.setStreamHandler(streamHandler);
-
-            //Execute the sh file.
-            success = (executor.execute(cmdLine) == 0);
-
-            //Get the command log. 
-            log = outputStream.toString();
-
-            //Delete the sh file.
-            tmp.delete();
-        } catch (IOException ex) {
-            success = false;
+            //Execute the command in the sandbox.
+            ShellResult result = shellCommandService.execute(
+                    checkup.getJob(),
+                    command.getId(),
+                    this.replaceParameter(command.getCommand()),
+                    command.getTimeout());
+
+            success = result.isSuccess();
+            log = result.getLog();
+        } catch (Exception ex) {
             log = ex.getMessage();
             LOG.log(Level.ERROR, "Fail executing shell command " + ex.getMessage(), ex);
         } finally {
@@ -540,7 +581,8 @@ public class JobCheckupService {
                         new CommandLog(
                                 command,
                                 log,
-                                success));
+                                success,
+                                System.currentTimeMillis() - start));
 
                 //Add the command log to checkup log.
                 if (jobCheckupLog != null) {
@@ -657,7 +699,7 @@ public class JobCheckupService {
      * @return String Replaced template.
      */
     private String replaceParameter(String template) {
-        JSONArray values = new JSONArray();
+        Map<String, String> values = new HashMap();
         Map<String, Map<String, String>> parameters = templateService.getParameters(template);
 
         if (!parameters.isEmpty()) {
@@ -676,11 +718,8 @@ public class JobCheckupService {
                                 .getValue();
                     }
                 }
-                values.put(
-                        new JSONObject()
-                                .put("name", entry.getKey())
-                                .put("value", value)
-                );
+
+                values.put(entry.getKey(), value);
             });
 
             template = templateService.setParameters(template, values);
@@ -733,4 +772,26 @@ public class JobCheckupService {
             slackService.send(message.toString(), job.getChannel());
         }
     }
+
+    /**
+     * Speculative checkup result.
+     */
+    public class Speculation {
+
+        private final String value;
+        private final long expiration;
+
+        public Speculation(String value, int ttl) {
+            this.value = value;
+            this.expiration = System.currentTimeMillis() + (ttl * 1000L);
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public boolean isExpired() {
+            return System.currentTimeMillis() > expiration;
+        }
+    }
 }
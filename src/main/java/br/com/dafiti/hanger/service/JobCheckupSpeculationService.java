@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2018 Dafiti Group
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package br.com.dafiti.hanger.service;
+
+import br.com.dafiti.hanger.model.Job;
+import br.com.dafiti.hanger.model.JobParent;
+import br.com.dafiti.hanger.option.Scope;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+/**
+ * Starts children prevalidation while the last pending parent is running.
+ *
+ * @author Valdiney V GOMES
+ */
+@Service
+public class JobCheckupSpeculationService {
+
+    private final JobParentService jobParentService;
+    private final JobBuildStatusService jobBuildStatusService;
+    private final JobCheckupService jobCheckupService;
+    private final boolean enabled;
+
+    private static final Logger LOG = LogManager.getLogger(JobCheckupSpeculationService.class.getName());
+
+    @Autowired
+    public JobCheckupSpeculationService(
+            JobParentService jobParentService,
+            JobBuildStatusService jobBuildStatusService,
+            JobCheckupService jobCheckupService,
+            @Value("${hanger.checkup.speculative:false}") boolean enabled) {
+
+        this.jobParentService = jobParentService;
+        this.jobBuildStatusService = jobBuildStatusService;
+        this.jobCheckupService = jobCheckupService;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Evaluate children prevalidation when a parent build starts.
+     *
+     * @param job Job that has just started.
+     */
+    @Async
+    public void speculate(Job job) {
+        if (enabled) {
+            for (JobParent child : jobParentService.findByParent(job)) {
+                Job childJob = child.getJob();
+
+                //Identifies if the child is waiting only for this parent.
+                if (jobCheckupService.hasPrevalidation(childJob)
+                        && jobBuildStatusService.isBuildable(childJob)
+                        && this.isLastPending(childJob, job)) {
+
+                    try {
+                        jobCheckupService.speculate(childJob);
+                    } catch (Exception ex) {
+                        LOG.log(Level.ERROR, "Fail evaluating speculative prevalidation of " + childJob.getName(), ex);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Identifies if a parent is the last one a job is waiting for.
+     *
+     * @param job Job
+     * @param parent Parent job
+     * @return Identify if all other parents are built.
+     */
+    private boolean isLastPending(Job job, Job parent) {
+        for (JobParent jobParent : job.getParent()) {
+            Job other = jobParent.getParent();
+
+            if (!other.equals(parent)
+                    && other.isEnabled()
+                    && !jobParent.getScope().equals(Scope.OPTIONAL)
+                    && !jobBuildStatusService.isBuilt(other, job.isAnyScope())) {
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
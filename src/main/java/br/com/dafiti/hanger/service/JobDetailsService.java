@@ -32,19 +32,29 @@ import br.com.dafiti.hanger.option.Phase;
 import br.com.dafiti.hanger.option.Scope;
 import br.com.dafiti.hanger.option.Status;
 import java.security.Principal;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.commons.lang.StringUtils;
 import org.joda.time.DateTime;
 import org.joda.time.Days;
 import org.joda.time.LocalDate;
 import org.joda.time.Period;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 /**
+ * Job details.
+ *
+ * The details of each job are kept as a snapshot, dropped as soon as its job
+ * or status changes and expired when time alone changes them: at midnight or,
+ * for jobs with a time restriction, every minute. The running time and the
+ * retries are added when the details are read.
  *
  * @author Valdiney V GOMES
  */
@@ -56,6 +66,12 @@ public class JobDetailsService {
     private final RetryService retryService;
     private final JobApprovalService jobApprovalService;
     private final JobBuildStatusService jobBuildStatusService;
+    private final Map<Long, Snapshot> snapshots;
+    private final Map<Long, Long> statusIndex;
+    private final AtomicLong version;
+
+    private static final DateTimeFormatter TIME = DateTimeFormat.forPattern("HH:mm:ss");
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormat.forPattern("yyyy-MM-dd HH:mm:ss");
 
     @Autowired
     public JobDetailsService(
@@ -70,6 +86,49 @@ public class JobDetailsService {
         this.retryService = retryService;
         this.jobApprovalService = jobApprovalService;
         this.jobBuildStatusService = jobBuildStatusService;
+        this.snapshots = new ConcurrentHashMap();
+        this.statusIndex = new ConcurrentHashMap();
+        this.version = new AtomicLong();
+    }
+
+    /**
+     * Drop the snapshots of jobs whose status changed.
+     *
+     * @param change Change.
+     */
+    @EventListener
+    public void statusChanged(JobStatusService.Change change) {
+        version.incrementAndGet();
+
+        change.getId().forEach(id -> {
+            Long job = statusIndex.remove(id);
+
+            if (job != null) {
+                snapshots.remove(job);
+            }
+        });
+    }
+
+    /**
+     * Drop the snapshots of jobs changed or removed.
+     *
+     * @param change Change.
+     */
+    @EventListener
+    public void jobChanged(JobService.Change change) {
+        version.incrementAndGet();
+        change.getId().forEach(snapshots::remove);
+    }
+
+    /**
+     * Drop the snapshots of jobs whose warnings changed.
+     *
+     * @param change Change.
+     */
+    @EventListener
+    public void notified(JobNotificationService.Change change) {
+        version.incrementAndGet();
+        change.getId().forEach(snapshots::remove);
     }
 
     /**
@@ -79,13 +138,98 @@ public class JobDetailsService {
      * @return Job details
      */
     public JobDetails getDetailsOf(Job job) {
+        Snapshot snapshot = this.getSnapshot(job);
+        StringBuilder building = new StringBuilder(snapshot.getBuilding());
+
+        //Identify the duration of a running build. 
+        if (snapshot.getStarted() != 0) {
+            Period period = new Period(new DateTime(snapshot.getStarted()), new DateTime());
+
+            building
+                    .append(" running for ")
+                    .append(StringUtils.leftPad(String.valueOf(period.getHours()), 2, "0"))
+                    .append(":")
+                    .append(StringUtils.leftPad(String.valueOf(period.getMinutes()), 2, "0"))
+                    .append(":")
+                    .append(StringUtils.leftPad(String.valueOf(period.getSeconds()), 2, "0"));
+        }
+
+        //Identify the number of build retries. 
+        if (snapshot.isRetry()
+                && retryService.exists(job)
+                && retryService.get(job) != 0
+                && job.getRetry() != 0) {
+
+            building
+                    .append(" (")
+                    .append(retryService.get(job))
+                    .append(" of ")
+                    .append(job.getRetry())
+                    .append(" tries)");
+        }
+
+        //Identify if the job was never built.
+        if (building.length() == 0) {
+            building
+                    .append("Never built");
+        }
+
+        return new JobDetails(
+                job,
+                snapshot.getStatus(),
+                snapshot.getScope(),
+                snapshot.getFlow(),
+                snapshot.getPhase(),
+                snapshot.getNumber(),
+                building.toString(),
+                jobNotificationService.getNotice(job));
+    }
+
+    /**
+     * Get the snapshot of a job, taking it when missing or expired.
+     *
+     * @param job Job
+     * @return Snapshot
+     */
+    private Snapshot getSnapshot(Job job) {
+        if (job.getId() == null) {
+            return this.snapshot(job);
+        }
+
+        Snapshot snapshot = snapshots.get(job.getId());
+
+        if (snapshot == null || snapshot.isExpired()) {
+            long current = version.get();
+            snapshot = this.snapshot(job);
+
+            //Keeps it only when no change happened meanwhile.
+            if (version.get() == current) {
+                snapshots.put(job.getId(), snapshot);
+
+                if (job.getStatus().getId() != null) {
+                    statusIndex.put(job.getStatus().getId(), job.getId());
+                }
+            }
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Take a snapshot of the details of a job.
+     *
+     * @param job Job
+     * @return Snapshot
+     */
+    private Snapshot snapshot(Job job) {
         int number = 0;
+        long started = 0;
+        boolean retry = false;
         Flow flow = Flow.NORMAL;
         Phase phase = Phase.NONE;
         Status status = Status.WAITING;
         StringBuilder scope = new StringBuilder();
         StringBuilder building = new StringBuilder();
-        List<Job> notice = jobNotificationService.getNotice(job);
 
         if (!job.isEnabled()) {
             if (!job.isEnabled()) {
@@ -94,7 +238,7 @@ public class JobDetailsService {
                         .append("Modified by ")
                         .append(job.getModifiedBy())
                         .append(" at ")
-                        .append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(job.getUpdatedAt()));
+                        .append(DATE_TIME.print(job.getUpdatedAt().getTime()));
             }
         } else {
             JobStatus jobStatus = job.getStatus();
@@ -126,7 +270,7 @@ public class JobDetailsService {
                         status = Status.RESTRICTED;
                         phase = Phase.NONE;
                         building.append("Builded at ")
-                                .append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(jobBuild.getDate()));
+                                .append(DATE_TIME.print(jobBuild.getDate().getTime()));
                         //Identifies if is a current day build.  
                     } else if (today || (yesterday && eagerness)) {
                         switch (jobStatus.getFlow()) {
@@ -137,7 +281,7 @@ public class JobDetailsService {
                                 building
                                         .append("Builded ")
                                         .append((yesterday ? "( - " + tolerance + " hours) yesterday at " : ""))
-                                        .append(new SimpleDateFormat("HH:mm:ss").format(jobBuild.getDate()));
+                                        .append(TIME.print(jobBuild.getDate().getTime()));
                                 break;
 
                             case UNHEALTHY:
@@ -149,7 +293,7 @@ public class JobDetailsService {
                                 status = Status.valueOf(jobStatus.getFlow().toString());
                                 building
                                         .append((yesterday ? "( - " + tolerance + " hours ) Yesterday at " : ""))
-                                        .append(new SimpleDateFormat("HH:mm:ss").format(jobBuild.getDate()));
+                                        .append(TIME.print(jobBuild.getDate().getTime()));
                                 break;
 
                             default:
@@ -180,7 +324,7 @@ public class JobDetailsService {
 
                                 building
                                         .append((yesterday ? "( - " + tolerance + " hours ) Yesterday at " : ""))
-                                        .append(new SimpleDateFormat("HH:mm:ss").format(jobBuild.getDate()));
+                                        .append(TIME.print(jobBuild.getDate().getTime()));
                                 break;
                         }
                     } else if (jobStatus.getFlow().equals(Flow.REBUILD)
@@ -189,7 +333,7 @@ public class JobDetailsService {
                         phase = Phase.NONE;
                         building
                                 .append("Builded at ")
-                                .append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(jobBuild.getDate()));
+                                .append(DATE_TIME.print(jobBuild.getDate().getTime()));
                     } else {
                         //Identify the last build flow. 
                         if (!jobStatus.getFlow().equals(Flow.NORMAL)
@@ -202,22 +346,14 @@ public class JobDetailsService {
                         building
                                 .append(Math.abs(days))
                                 .append(" days ago at ")
-                                .append(new SimpleDateFormat("HH:mm:ss").format(jobBuild.getDate()));
+                                .append(TIME.print(jobBuild.getDate().getTime()));
                     }
 
-                    //Identify the duration of a running build. 
+                    //Identify a running build, its duration is added on read. 
                     if (jobBuild.getPhase().equals(Phase.STARTED)
                             && (jobBuild.getDate() != null)) {
 
-                        Period period = new Period(new DateTime(jobBuild.getDate()), new DateTime(new Date()));
-
-                        building
-                                .append(" running for ")
-                                .append(StringUtils.leftPad(String.valueOf(period.getHours()), 2, "0"))
-                                .append(":")
-                                .append(StringUtils.leftPad(String.valueOf(period.getMinutes()), 2, "0"))
-                                .append(":")
-                                .append(StringUtils.leftPad(String.valueOf(period.getSeconds()), 2, "0"));
+                        started = jobBuild.getDate().getTime();
                     } else {
                         //Identify the duration of finished build. 
                         try {
@@ -262,36 +398,23 @@ public class JobDetailsService {
                         .append(job.isRebuild() ? " REBUILD " + (job.isRebuildBlocked() ? "after all blockers " : "") + (job.getWait() != 0 ? "once every " + job.getWait() + " min" : "") : "")
                         .append((job.getTimeRestriction() == null || job.getTimeRestriction().isEmpty()) ? "" : " " + job.getTimeRestrictionDescription().toLowerCase());
 
-                //Identify the number of build retries. 
-                if (retryService.exists(job)
-                        && retryService.get(job) != 0
-                        && job.getRetry() != 0) {
-
-                    building
-                            .append(" (")
-                            .append(retryService.get(job))
-                            .append(" of ")
-                            .append(job.getRetry())
-                            .append(" tries)");
-                }
+                //Identify the number of build retries on read. 
+                retry = true;
             }
         }
 
-        //Identify if the job was never built.
-        if (building.length() == 0) {
-            building
-                    .append("Never built");
-        }
-
-        return new JobDetails(
-                job,
+        return new Snapshot(
                 status,
                 scope.toString(),
                 flow,
                 phase,
                 number,
                 building.toString(),
-                notice);
+                started,
+                retry,
+                (job.getTimeRestriction() == null || job.getTimeRestriction().isEmpty())
+                ? new LocalDate().plusDays(1).toDateTimeAtStartOfDay().getMillis()
+                : new DateTime().plusMinutes(1).withSecondOfMinute(0).withMillisOfSecond(0).getMillis());
     }
 
     /**
@@ -326,4 +449,79 @@ public class JobDetailsService {
 
         return jobDetails;
     }
+
+    /**
+     * Represents the details of a job that change only with the job, its
+     * status or time.
+     */
+    private static class Snapshot {
+
+        private final Status status;
+        private final String scope;
+        private final Flow flow;
+        private final Phase phase;
+        private final int number;
+        private final String building;
+        private final long started;
+        private final boolean retry;
+        private final long expires;
+
+        Snapshot(
+                Status status,
+                String scope,
+                Flow flow,
+                Phase phase,
+                int number,
+                String building,
+                long started,
+                boolean retry,
+                long expires) {
+
+            this.status = status;
+            this.scope = scope;
+            this.flow = flow;
+            this.phase = phase;
+            this.number = number;
+            this.building = building;
+            this.started = started;
+            this.retry = retry;
+            this.expires = expires;
+        }
+
+        Status getStatus() {
+            return status;
+        }
+
+        String getScope() {
+            return scope;
+        }
+
+        Flow getFlow() {
+            return flow;
+        }
+
+        Phase getPhase() {
+            return phase;
+        }
+
+        int getNumber() {
+            return number;
+        }
+
+        String getBuilding() {
+            return building;
+        }
+
+        long getStarted() {
+            return started;
+        }
+
+        boolean isRetry() {
+            return retry;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() >= expires;
+        }
+    }
 }
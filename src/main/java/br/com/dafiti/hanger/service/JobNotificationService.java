@@ -32,10 +32,12 @@ import br.com.dafiti.hanger.option.Status;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 /**
@@ -48,17 +50,20 @@ public class JobNotificationService {
     private final JobService jobService;
     private final JobBuildStatusService jobBuildStatusService;
     private final SlackService slackService;
+    private final ApplicationEventPublisher applicationEventPublisher;
     private final Multimap<Job, Job> warning;
 
     @Autowired
     public JobNotificationService(
             JobService jobService,
             JobBuildStatusService jobBuildStatusService,
-            SlackService slackService) {
+            SlackService slackService,
+            ApplicationEventPublisher applicationEventPublisher) {
 
         this.jobService = jobService;
         this.jobBuildStatusService = jobBuildStatusService;
         this.slackService = slackService;
+        this.applicationEventPublisher = applicationEventPublisher;
         this.warning = Multimaps.synchronizedListMultimap(ArrayListMultimap.create());
     }
 
@@ -101,6 +106,7 @@ public class JobNotificationService {
      */
     public void notify(Job job, boolean slack, boolean setup) {
         Set<Job> pendencies = new HashSet();
+        List<Long> changed = new ArrayList();
         StringBuilder message = new StringBuilder();
 
         if (job.isEnabled()) {
@@ -120,7 +126,9 @@ public class JobNotificationService {
                                 && warning.containsValue(job)) {
 
                             jobService.getPropagation(job, false).stream().forEach((child) -> {
-                                warning.remove(child, job);
+                                if (warning.remove(child, job)) {
+                                    changed.add(child.getId());
+                                }
                             });
                         }
 
@@ -173,7 +181,10 @@ public class JobNotificationService {
 
                         //Put a warnig in case of error. 
                         jobService.getPropagation(job, false).stream().forEach((child) -> {
-                            warning.remove(child, job);
+                            if (!warning.remove(child, job)) {
+                                changed.add(child.getId());
+                            }
+
                             warning.put(child, job);
                         });
 
@@ -192,5 +203,25 @@ public class JobNotificationService {
                 }
             }
         }
+
+        if (!changed.isEmpty()) {
+            applicationEventPublisher.publishEvent(new Change(changed));
+        }
+    }
+
+    /**
+     * Change in the warnings of a list of jobs.
+     */
+    public static class Change {
+
+        private final List<Long> id;
+
+        public Change(List<Long> id) {
+            this.id = id;
+        }
+
+        public List<Long> getId() {
+            return id;
+        }
     }
 }
@@ -47,4 +47,8 @@ public class JobParentService {
     public HashSet<JobParent> findByParent(Job job) {
         return jobParentRepository.findByParent(job);
     }
+
+    public Iterable<JobParent> list() {
+        return jobParentRepository.findAll();
+    }
 }
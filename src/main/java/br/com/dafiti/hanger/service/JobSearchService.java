@@ -0,0 +1,398 @@
+/*
+ * Copyright (c) 2018 Dafiti Group
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package br.com.dafiti.hanger.service;
+
+import br.com.dafiti.hanger.model.Job;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps an in-memory trigram index of job name, alias, display name and
+ * subjects to search jobs without scanning the job table.
+ *
+ * @author Valdiney V GOMES
+ */
+@Service
+public class JobSearchService {
+
+    private final JobService jobService;
+    private volatile Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private volatile Map<String, Set<Long>> grams = new ConcurrentHashMap<>();
+    private volatile boolean ready = false;
+
+    private static final int GRAM = 3;
+    private static final Logger LOG = LogManager.getLogger(JobSearchService.class.getName());
+
+    @Autowired
+    public JobSearchService(JobService jobService) {
+        this.jobService = jobService;
+    }
+
+    /**
+     * Build the index on startup and refresh it periodically to catch subject
+     * changes.
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${hanger.search.refresh:3600000}", initialDelayString = "${hanger.search.refresh:3600000}")
+    public void build() {
+        try {
+            //A new index is built aside to not affect the searches.
+            Map<Long, Entry> built = new ConcurrentHashMap<>();
+            Map<String, Set<Long>> builtGrams = new ConcurrentHashMap<>();
+
+            synchronized (this) {
+                this.index(jobService.list(), built, builtGrams);
+                entries = built;
+                grams = builtGrams;
+                ready = true;
+            }
+
+            LOG.log(Level.INFO, entries.size() + " jobs indexed for search");
+        } catch (Exception ex) {
+            LOG.log(Level.ERROR, "Fail building job search index", ex);
+        }
+    }
+
+    /**
+     * Reindex the changed jobs.
+     *
+     * @param change Job change
+     */
+    @EventListener
+    public void jobChanged(JobService.Change change) {
+        if (ready) {
+            try {
+                synchronized (this) {
+                    change.getId().forEach(this::remove);
+                    this.index(jobService.load(change.getId()), entries, grams);
+                }
+            } catch (Exception ex) {
+                LOG.log(Level.ERROR, "Fail updating job search index", ex);
+            }
+        }
+    }
+
+    /**
+     * Find the jobs matching a search expression, best matches first.
+     *
+     * @param search Search expression
+     * @return Job list
+     */
+    public List<Job> find(String search) {
+        //Until the index is built, searches the database.
+        if (!ready) {
+            return jobService.findByNameContainingOrAliasContaining(search);
+        }
+
+        List<Long> id = this.search(search, Integer.MAX_VALUE);
+        Map<Long, Job> jobs = new HashMap<>();
+
+        if (!id.isEmpty()) {
+            jobService.load(id).forEach(job -> jobs.put(job.getId(), job));
+        }
+
+        return id
+                .stream()
+                .map(jobs::get)
+                .filter(job -> job != null)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Suggest jobs matching a search expression.
+     *
+     * @param search Search expression
+     * @param limit Max number of suggestions
+     * @return JSON suggestion list
+     */
+    public String suggest(String search, int limit) {
+        JSONArray suggestions = new JSONArray();
+
+        if (ready) {
+            this.search(search, limit).forEach(id -> {
+                Entry entry = entries.get(id);
+
+                if (entry != null) {
+                    suggestions.put(this.getSuggestion(id, entry.name, entry.alias, entry.displayName));
+                }
+            });
+        } else {
+            jobService.findByNameContainingOrAliasContaining(search)
+                    .stream()
+                    .limit(limit)
+                    .forEach(job -> suggestions.put(this.getSuggestion(job.getId(), job.getName(), job.getAlias(), job.getDisplayName())));
+        }
+
+        return suggestions.toString();
+    }
+
+    /**
+     * Get the id of the jobs matching a search expression, ranked by where
+     * the expression was found.
+     *
+     * @param search Search expression
+     * @param limit Max number of jobs
+     * @return Job id list
+     */
+    private List<Long> search(String search, int limit) {
+        String term = normalize(search);
+        Collection<Long> candidates;
+
+        if (term.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        //Short expressions have no trigram, so every job is a candidate.
+        if (term.length() < GRAM) {
+            candidates = entries.keySet();
+        } else {
+            List<Set<Long>> postings = new ArrayList<>();
+
+            for (String gram : getGrams(term)) {
+                Set<Long> posting = grams.get(gram);
+
+                if (posting == null) {
+                    return new ArrayList<>();
+                }
+
+                postings.add(posting);
+            }
+
+            //Intersects the postings starting from the smallest one.
+            postings.sort(Comparator.comparingInt(Set::size));
+            candidates = new ArrayList<>();
+
+            for (Long id : postings.get(0)) {
+                if (postings.stream().allMatch(posting -> posting.contains(id))) {
+                    candidates.add(id);
+                }
+            }
+        }
+
+        List<Entry> matches = new ArrayList<>();
+
+        //Trigrams could match in different positions, so the expression is confirmed.
+        for (Long id : candidates) {
+            Entry entry = entries.get(id);
+
+            if (entry != null && entry.text.contains(term)) {
+                matches.add(entry);
+            }
+        }
+
+        return matches
+                .stream()
+                .sorted(Comparator
+                        .comparingInt((Entry entry) -> entry.getRank(term))
+                        .thenComparingInt(entry -> entry.name.length())
+                        .thenComparing(entry -> entry.name))
+                .limit(limit)
+                .map(entry -> entry.id)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Add jobs to an index.
+     *
+     * @param jobs Job list
+     * @param entries Indexed jobs
+     * @param grams Job ids by trigram
+     */
+    private void index(
+            Iterable<Job> jobs,
+            Map<Long, Entry> entries,
+            Map<String, Set<Long>> grams) {
+
+        Map<Long, List<String>> subjects = new HashMap<>();
+        List<Long> id = new ArrayList<>();
+
+        jobs.forEach(job -> id.add(job.getId()));
+
+        if (!id.isEmpty()) {
+            jobService.findSubjectByIdIn(id).forEach(row -> {
+                subjects.computeIfAbsent((Long) row[0], k -> new ArrayList<>()).add((String) row[2]);
+            });
+
+            jobs.forEach(job -> {
+                Entry entry = new Entry(job, subjects.getOrDefault(job.getId(), new ArrayList<>()));
+
+                entries.put(job.getId(), entry);
+                getGrams(entry.text).forEach(gram -> grams
+                        .computeIfAbsent(gram, k -> ConcurrentHashMap.newKeySet())
+                        .add(job.getId()));
+            });
+        }
+    }
+
+    /**
+     * Remove a job from the index.
+     *
+     * @param id Job id
+     */
+    private void remove(Long id) {
+        Entry entry = entries.remove(id);
+
+        if (entry != null) {
+            getGrams(entry.text).forEach(gram -> {
+                Set<Long> posting = grams.get(gram);
+
+                if (posting != null) {
+                    posting.remove(id);
+
+                    if (posting.isEmpty()) {
+                        grams.remove(gram, posting);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Get the trigrams of a text.
+     *
+     * @param text Text
+     * @return Trigram set
+     */
+    private static Set<String> getGrams(String text) {
+        Set<String> set = new LinkedHashSet<>();
+
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            set.add(text.substring(i, i + GRAM));
+        }
+
+        return set;
+    }
+
+    /**
+     * Get a suggestion.
+     *
+     * @param id Job id
+     * @param name Job name
+     * @param alias Job alias
+     * @param displayName Job display name
+     * @return Suggestion
+     */
+    private JSONObject getSuggestion(Long id, String name, String alias, String displayName) {
+        JSONObject suggestion = new JSONObject();
+
+        suggestion.put("id", id);
+        suggestion.put("name", name);
+        suggestion.put("alias", alias);
+        suggestion.put("displayName", displayName);
+
+        return suggestion;
+    }
+
+    /**
+     * Normalize a text to lower case without accents.
+     *
+     * @param text Text
+     * @return Normalized text
+     */
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+
+        return Normalizer
+                .normalize(text.trim(), Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase();
+    }
+
+    /**
+     * Represents an indexed job.
+     */
+    private static class Entry {
+
+        private final Long id;
+        private final String name;
+        private final String alias;
+        private final String displayName;
+        private final String[] fields;
+        private final String text;
+
+        Entry(Job job, List<String> subjects) {
+            this.id = job.getId();
+            this.name = job.getName();
+            this.alias = job.getAlias();
+            this.displayName = job.getDisplayName();
+
+            //Fields in rank order: name, alias, display name and subjects.
+            this.fields = new String[]{
+                normalize(name),
+                normalize(alias),
+                normalize(displayName),
+                normalize(String.join("\n", subjects))};
+
+            //Fields are split by line break, that is never part of a search.
+            this.text = String.join("\n", this.fields);
+        }
+
+        /**
+         * Get the rank of a search term, lower is better.
+         *
+         * @param term Normalized search term
+         * @return Rank
+         */
+        int getRank(String term) {
+            if (fields[0].equals(term)) {
+                return 0;
+            }
+
+            if (fields[0].startsWith(term)) {
+                return 1;
+            }
+
+            for (int i = 0; i < fields.length; i++) {
+                if (fields[i].contains(term)) {
+                    return i + 2;
+                }
+            }
+
+            return fields.length + 2;
+        }
+    }
+}
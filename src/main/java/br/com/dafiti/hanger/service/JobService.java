@@ -41,6 +41,8 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
@@ -52,6 +54,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.Caching;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 /**
@@ -65,6 +68,7 @@ public class JobService {
     private final JobParentService jobParentService;
     private final JenkinsService jenkinsService;
     private final JobStatusService jobStatusService;
+    private final ApplicationEventPublisher applicationEventPublisher;
 
     private static final Logger LOG = LogManager.getLogger(JobService.class.getName());
 
@@ -73,12 +77,14 @@ public class JobService {
             JobRepository jobRepository,
             JobParentService jobParentService,
             JenkinsService jenkinsService,
-            JobStatusService jobStatusService) {
+            JobStatusService jobStatusService,
+            ApplicationEventPublisher applicationEventPublisher) {
 
         this.jobRepository = jobRepository;
         this.jobParentService = jobParentService;
         this.jenkinsService = jenkinsService;
         this.jobStatusService = jobStatusService;
+        this.applicationEventPublisher = applicationEventPublisher;
     }
 
     public Iterable<Job> list() {
@@ -134,6 +140,14 @@ public class JobService {
         return jobRepository.findById(id).get();
     }
 
+    public Iterable<Job> load(Collection<Long> id) {
+        return jobRepository.findAllById(id);
+    }
+
+    public List<Object[]> findSubjectByIdIn(Collection<Long> id) {
+        return jobRepository.findSubjectByIdIn(id);
+    }
+
     public List<Job> findBySubjectOrderByName(Subject subject) {
         return jobRepository.findBySubjectOrderByName(subject);
     }
@@ -154,6 +168,10 @@ public class JobService {
         return jobRepository.findByServer(server);
     }
 
+    public List<Job> findByStatus(Collection<Long> id) {
+        return jobRepository.findByStatusIdIn(id);
+    }
+
     @Cacheable(value = "job_count")
     public long count() {
         return jobRepository.count();
@@ -200,7 +218,12 @@ public class JobService {
                     .parse(job.getTimeRestriction()).validate();
         }
 
-        return jobRepository.save(job);
+        Job saved = jobRepository.save(job);
+
+        //Tells the subject counters which job changed.
+        applicationEventPublisher.publishEvent(new Change(Collections.singletonList(saved.getId())));
+
+        return saved;
     }
 
     /**
@@ -262,6 +285,7 @@ public class JobService {
         @CacheEvict(value = "propagation", allEntries = true)})
     public void delete(Long id) {
         jobRepository.deleteById(id);
+        applicationEventPublisher.publishEvent(new Change(Collections.singletonList(id)));
     }
 
     @Caching(evict = {
@@ -278,11 +302,7 @@ public class JobService {
      * @param job Job
      */
     public void rebuildMesh(Job job) {
-        job.getParent().stream().forEach((jobParent) -> {
-            this.rebuildMesh(jobParent.getParent());
-        });
-
-        jobStatusService.updateFlow(job.getStatus(), Flow.REBUILD);
+        jobStatusService.updateFlow(this.getMesh(job, true), Flow.REBUILD);
     }
 
     /**
@@ -773,4 +793,20 @@ public class JobService {
 
         return description;
     }
+
+    /**
+     * Represents a set of job changes.
+     */
+    public static class Change {
+
+        private final List<Long> id;
+
+        public Change(List<Long> id) {
+            this.id = id;
+        }
+
+        public List<Long> getId() {
+            return id;
+        }
+    }
 }
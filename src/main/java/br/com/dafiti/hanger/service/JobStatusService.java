@@ -23,13 +23,20 @@
  */
 package br.com.dafiti.hanger.service;
 
+import br.com.dafiti.hanger.model.Job;
 import br.com.dafiti.hanger.model.JobBuild;
 import br.com.dafiti.hanger.model.JobStatus;
 import br.com.dafiti.hanger.option.Flow;
 import br.com.dafiti.hanger.option.Status;
 import br.com.dafiti.hanger.repository.JobStatusRepository;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 /**
@@ -40,10 +47,15 @@ import org.springframework.stereotype.Service;
 public class JobStatusService {
 
     private final JobStatusRepository jobStatusRepository;
+    private final ApplicationEventPublisher applicationEventPublisher;
 
     @Autowired
-    public JobStatusService(JobStatusRepository jobStatusRepository) {
+    public JobStatusService(
+            JobStatusRepository jobStatusRepository,
+            ApplicationEventPublisher applicationEventPublisher) {
+
         this.jobStatusRepository = jobStatusRepository;
+        this.applicationEventPublisher = applicationEventPublisher;
     }
 
     public JobStatus save(JobStatus jobStatus) {
@@ -68,7 +80,12 @@ public class JobStatusService {
             jobStatus.setFailureTimestamp(new Date());
         }
 
-        return jobStatusRepository.save(jobStatus);
+        jobStatus = jobStatusRepository.save(jobStatus);
+
+        //Tells the live monitor which status changed.
+        applicationEventPublisher.publishEvent(new Change(Collections.singletonList(jobStatus.getId())));
+
+        return jobStatus;
     }
 
     public void delete(Long id) {
@@ -79,4 +96,42 @@ public class JobStatusService {
         jobStatus.setFlow(flow);
         return this.save(jobStatus);
     }
+
+    /**
+     * Update the flow of a set of jobs in a single statement. The job status
+     * entities are not changed, as they could be in use by another thread.
+     *
+     * @param jobs Job list.
+     * @param flow Flow.
+     */
+    public void updateFlow(Collection<Job> jobs, Flow flow) {
+        List<Long> id = jobs
+                .stream()
+                .map(Job::getStatus)
+                .filter(Objects::nonNull)
+                .map(JobStatus::getId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        if (!id.isEmpty()) {
+            jobStatusRepository.updateFlow(flow, id);
+            applicationEventPublisher.publishEvent(new Change(id));
+        }
+    }
+
+    /**
+     * Represents a set of job status changes.
+     */
+    public static class Change {
+
+        private final List<Long> id;
+
+        public Change(List<Long> id) {
+            this.id = id;
+        }
+
+        public List<Long> getId() {
+            return id;
+        }
+    }
 }
@@ -0,0 +1,370 @@
+/*
+ * Copyright (c) 2018 Dafiti Group
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package br.com.dafiti.hanger.service;
+
+import br.com.dafiti.hanger.model.Job;
+import br.com.dafiti.hanger.model.JobDetails;
+import br.com.dafiti.hanger.model.Subject;
+import br.com.dafiti.hanger.model.SubjectDetails;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import javax.annotation.PreDestroy;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Live monitor.
+ *
+ * Job status changes are collected as they happen and, every few seconds,
+ * published once to every open monitor as compact job and subject deltas.
+ * Events are sent by a dedicated executor, so a stalled monitor does not hold
+ * the scheduler.
+ *
+ * @author Valdiney V GOMES
+ */
+@Service
+public class MonitorService {
+
+    private final JobService jobService;
+    private final JobDetailsService jobDetailsService;
+    private final SubjectDetailsService subjectDetailsService;
+    private final Map<SseEmitter, Client> emitters;
+    private final ThreadPoolExecutor executor;
+    private final Set<Long> pending;
+    private final Set<Long> notified;
+    private final long timeout;
+    private final long sendTimeout;
+    private volatile long published;
+
+    private static final long HEARTBEAT = 30000;
+    private static final int BACKLOG = 50;
+    private static final Logger LOG = LogManager.getLogger(MonitorService.class.getName());
+
+    @Autowired
+    public MonitorService(
+            JobService jobService,
+            JobDetailsService jobDetailsService,
+            SubjectDetailsService subjectDetailsService,
+            @Value("${hanger.monitor.timeout:1800000}") long timeout,
+            @Value("${hanger.monitor.send.threads:4}") int threads,
+            @Value("${hanger.monitor.send.timeout:10000}") long sendTimeout) {
+
+        this.jobService = jobService;
+        this.jobDetailsService = jobDetailsService;
+        this.subjectDetailsService = subjectDetailsService;
+        this.emitters = new ConcurrentHashMap();
+        this.pending = ConcurrentHashMap.newKeySet();
+        this.notified = ConcurrentHashMap.newKeySet();
+        this.timeout = timeout;
+        this.sendTimeout = sendTimeout;
+        this.executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                60L,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue(),
+                new CustomizableThreadFactory("hanger_monitor_"));
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Close every open monitor.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        emitters.keySet().forEach(SseEmitter::complete);
+        emitters.clear();
+    }
+
+    /**
+     * Open a monitor event stream.
+     *
+     * @return Event stream.
+     */
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(timeout);
+
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(ex -> emitters.remove(emitter));
+        emitters.put(emitter, new Client(emitter));
+
+        return emitter;
+    }
+
+    /**
+     * Collect a job status change.
+     *
+     * @param change Change.
+     */
+    @EventListener
+    public void changed(JobStatusService.Change change) {
+        if (!emitters.isEmpty()) {
+            pending.addAll(change.getId());
+        }
+    }
+
+    /**
+     * Collect a job warning change.
+     *
+     * @param change Change.
+     */
+    @EventListener
+    public void notified(JobNotificationService.Change change) {
+        if (!emitters.isEmpty()) {
+            notified.addAll(change.getId());
+        }
+    }
+
+    /**
+     * Publish the collected changes to every open monitor.
+     */
+    @Scheduled(fixedDelayString = "${hanger.monitor.delay:2000}")
+    public void publish() {
+        if (emitters.isEmpty()) {
+            pending.clear();
+            notified.clear();
+            return;
+        }
+
+        List<Long> id = new ArrayList(pending);
+        pending.removeAll(id);
+
+        List<Long> warned = new ArrayList(notified);
+        notified.removeAll(warned);
+
+        if (id.isEmpty() && warned.isEmpty()) {
+            //Keeps idle streams open through proxies.
+            if (System.currentTimeMillis() - published > HEARTBEAT) {
+                this.send(() -> SseEmitter.event().comment("heartbeat"));
+            }
+
+            return;
+        }
+
+        JSONArray job = new JSONArray();
+        JSONArray subject = new JSONArray();
+        Map<Long, Subject> subjects = new LinkedHashMap();
+
+        try {
+            Map<Long, Job> jobs = new LinkedHashMap();
+
+            if (!id.isEmpty()) {
+                jobService.findByStatus(id).forEach(x -> jobs.put(x.getId(), x));
+            }
+
+            if (!warned.isEmpty()) {
+                jobService.load(warned).forEach(x -> jobs.put(x.getId(), x));
+            }
+
+            for (Job changed : jobs.values()) {
+                JobDetails jobDetails = jobDetailsService.getDetailsOf(changed);
+
+                job.put(new JSONObject()
+                        .put("id", changed.getId())
+                        .put("status", jobDetails.getStatus().toString())
+                        .put("updated", jobDetails.getBuildTime())
+                        .put("scope", jobDetails.getScope()));
+
+                changed.getSubject().forEach(x -> subjects.put(x.getId(), x));
+            }
+
+            //Subject counters are read once for every monitor.
+            for (Subject affected : subjects.values()) {
+                SubjectDetails subjectDetails = subjectDetailsService.getDetailsOf(affected);
+
+                subject.put(new JSONObject()
+                        .put("id", affected.getId())
+                        .put("total", subjectDetails.getTotal())
+                        .put("success", subjectDetails.getSuccess())
+                        .put("waiting", subjectDetails.getWaiting())
+                        .put("building", subjectDetails.getBuilding())
+                        .put("warning", subjectDetails.getWarning())
+                        .put("failure", subjectDetails.getFailure())
+                        .put("successPercent", subjectDetails.getSuccessPercent())
+                        .put("waitingPercent", subjectDetails.getWaitingPercent())
+                        .put("buildingPercent", subjectDetails.getBuildingPercent())
+                        .put("warningPercent", subjectDetails.getWarningPercent())
+                        .put("failurePercent", subjectDetails.getFailurePercent()));
+            }
+        } catch (Exception ex) {
+            LOG.log(Level.ERROR, "Fail building monitor changes", ex);
+            return;
+        }
+
+        String data = new JSONObject()
+                .put("job", job)
+                .put("subject", subject)
+                .toString();
+
+        this.send(() -> SseEmitter.event().name("monitor").data(data));
+    }
+
+    /**
+     * Queue an event to every open monitor.
+     *
+     * @param event Event builder, called for each monitor.
+     */
+    private void send(Supplier<SseEmitter.SseEventBuilder> event) {
+        published = System.currentTimeMillis();
+
+        emitters.values().forEach(client -> {
+            //Drops monitors stuck in a send or too far behind.
+            if (client.isStalled(published, sendTimeout)
+                    || !client.offer(event.get())) {
+
+                emitters.remove(client.getEmitter());
+                LOG.log(Level.INFO, "Monitor dropped, it stopped receiving events");
+            } else if (client.acquire()) {
+                executor.execute(() -> this.drain(client));
+            }
+        });
+    }
+
+    /**
+     * Send the queued events of a monitor.
+     *
+     * @param client Client
+     */
+    private void drain(Client client) {
+        try {
+            SseEmitter.SseEventBuilder event;
+
+            while ((event = client.poll()) != null) {
+                client.setStarted(System.currentTimeMillis());
+                client.getEmitter().send(event);
+                client.setStarted(0);
+            }
+        } catch (IOException | IllegalStateException ex) {
+            //Drops monitors closed by the browser.
+            emitters.remove(client.getEmitter());
+        } finally {
+            client.release();
+        }
+
+        //Sends the events queued while releasing.
+        if (!client.isEmpty()
+                && emitters.containsKey(client.getEmitter())
+                && client.acquire()) {
+
+            executor.execute(() -> this.drain(client));
+        }
+    }
+
+    /**
+     * Open monitor and its queued events.
+     */
+    private static class Client {
+
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> queue;
+        private final AtomicBoolean sending;
+        private volatile long started;
+
+        public Client(SseEmitter emitter) {
+            this.emitter = emitter;
+            this.queue = new LinkedBlockingQueue(BACKLOG);
+            this.sending = new AtomicBoolean();
+        }
+
+        public SseEmitter getEmitter() {
+            return emitter;
+        }
+
+        public void setStarted(long started) {
+            this.started = started;
+        }
+
+        /**
+         * Queue an event.
+         *
+         * @param event Event
+         * @return Identify if the event was queued.
+         */
+        public boolean offer(SseEmitter.SseEventBuilder event) {
+            return queue.offer(event);
+        }
+
+        /**
+         * Get the next queued event.
+         *
+         * @return Event or null when there is none.
+         */
+        public SseEmitter.SseEventBuilder poll() {
+            return queue.poll();
+        }
+
+        public boolean isEmpty() {
+            return queue.isEmpty();
+        }
+
+        /**
+         * Identify if a send is running for longer than the timeout.
+         *
+         * @param now Current time in milliseconds.
+         * @param timeout Timeout in milliseconds.
+         * @return Identify if the monitor is stalled.
+         */
+        public boolean isStalled(long now, long timeout) {
+            long since = started;
+
+            return since != 0 && (now - since) > timeout;
+        }
+
+        /**
+         * Take the sending of this monitor.
+         *
+         * @return Identify if no other thread was sending.
+         */
+        public boolean acquire() {
+            return sending.compareAndSet(false, true);
+        }
+
+        public void release() {
+            sending.set(false);
+        }
+    }
+}
@@ -0,0 +1,329 @@
+/*
+ * Copyright (c) 2018 Dafiti Group
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package br.com.dafiti.hanger.service;
+
+import br.com.dafiti.hanger.model.Connection;
+import br.com.dafiti.hanger.model.WorkbenchQuery;
+import br.com.dafiti.hanger.repository.WorkbenchQueryRepository;
+import br.com.dafiti.hanger.service.ConnectionService.QueryResultSet;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Caches the resultset of stored queries with a cache TTL.
+ *
+ * Entries are keyed by connection and normalized SQL, so the same query run
+ * from the workbench or from an e-mail shares an entry. Resultsets are kept
+ * serialized, on heap or in direct memory, and the cache is bounded by their
+ * size in bytes.
+ *
+ * @author Valdiney V GOMES
+ */
+@Service
+public class QueryCacheService {
+
+    private final WorkbenchQueryRepository workbenchQueryRepository;
+    private final Cache<String, Entry> cache;
+    private final boolean offHeap;
+    private volatile Map<String, Integer> policy;
+
+    private static final Logger LOG = LogManager.getLogger(QueryCacheService.class.getName());
+
+    @Autowired
+    public QueryCacheService(
+            WorkbenchQueryRepository workbenchQueryRepository,
+            @Value("${hanger.workbench.cache.size:67108864}") long size,
+            @Value("${hanger.workbench.cache.offheap:false}") boolean offHeap) {
+
+        this.workbenchQueryRepository = workbenchQueryRepository;
+        this.offHeap = offHeap;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(size)
+                .weigher((String key, Entry entry) -> key.length() * 2 + entry.getLength())
+                .expireAfter(new Expiry<String, Entry>() {
+                    @Override
+                    public long expireAfterCreate(String key, Entry entry, long currentTime) {
+                        return entry.getTtl();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+                        return entry.getTtl();
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Get the cache TTL of a query, given by the stored queries with the
+     * same SQL on the same connection.
+     *
+     * @param connection Connection
+     * @param query Query
+     * @return TTL in seconds, zero when the query is not cached.
+     */
+    public int getTtl(Connection connection, String query) {
+        Map<String, Integer> ttl = policy;
+
+        if (ttl == null) {
+            ttl = new ConcurrentHashMap();
+
+            for (WorkbenchQuery workbenchQuery : workbenchQueryRepository.findByCacheTtlGreaterThan(0)) {
+                ttl.merge(
+                        this.getKey(workbenchQuery.getConnection(), workbenchQuery.getQuery()),
+                        workbenchQuery.getCacheTtl(),
+                        Math::min);
+            }
+
+            policy = ttl;
+        }
+
+        return ttl.getOrDefault(this.getKey(connection, query), 0);
+    }
+
+    /**
+     * Fill a resultset from the cache.
+     *
+     * @param connection Connection
+     * @param query Query
+     * @param queryResultSet Resultset to be filled.
+     * @return Identifies if the query was found.
+     */
+    public boolean get(
+            Connection connection,
+            String query,
+            QueryResultSet queryResultSet) {
+
+        Entry entry = cache.getIfPresent(this.getKey(connection, query));
+
+        if (entry != null) {
+            try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(entry.getData()))) {
+                int width = input.readInt();
+
+                for (int i = 0; i < width; i++) {
+                    String name = ResultSetBuffer.readString(input);
+
+                    queryResultSet.getHeader().add(name);
+                    queryResultSet.getType().put(name, ResultSetBuffer.readString(input));
+                    queryResultSet.getClassName().put(name, ResultSetBuffer.readString(input));
+                }
+
+                queryResultSet.setElapsedTime(input.readLong());
+                queryResultSet.setBuffer(ResultSetBuffer.read(input));
+
+                return true;
+            } catch (IOException ex) {
+                LOG.log(Level.ERROR, "Fail reading cached resultset ", ex);
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Put a resultset in the cache.
+     *
+     * @param connection Connection
+     * @param query Query
+     * @param queryResultSet Resultset.
+     * @param ttl TTL in seconds.
+     */
+    public void put(
+            Connection connection,
+            String query,
+            QueryResultSet queryResultSet,
+            int ttl) {
+
+        if (queryResultSet.hasError() || queryResultSet.getBuffer() == null) {
+            return;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeInt(queryResultSet.getHeader().size());
+
+            for (String name : queryResultSet.getHeader()) {
+                ResultSetBuffer.writeString(output, name);
+                ResultSetBuffer.writeString(output, queryResultSet.getType().get(name));
+                ResultSetBuffer.writeString(output, queryResultSet.getClassName().get(name));
+            }
+
+            output.writeLong(queryResultSet.getElapsedTime());
+            queryResultSet.getBuffer().write(output);
+        } catch (IOException ex) {
+            LOG.log(Level.ERROR, "Fail caching resultset ", ex);
+            return;
+        }
+
+        cache.put(
+                this.getKey(connection, query),
+                new Entry(bytes.toByteArray(), TimeUnit.SECONDS.toNanos(ttl), offHeap));
+    }
+
+    /**
+     * Reload the cache TTL of the stored queries.
+     */
+    public void reload() {
+        policy = null;
+    }
+
+    /**
+     * Remove every cached resultset.
+     */
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Get the cache key of a query.
+     *
+     * @param connection Connection
+     * @param query Query
+     * @return Key.
+     */
+    private String getKey(Connection connection, String query) {
+        return connection.getId() + ":" + normalize(query);
+    }
+
+    /**
+     * Normalize a query, removing comments and repeated whitespace out of
+     * literals and quoted identifiers.
+     *
+     * @param query Query
+     * @return Normalized query.
+     */
+    public static String normalize(String query) {
+        StringBuilder normalized = new StringBuilder(query.length());
+        boolean space = false;
+        int i = 0;
+
+        while (i < query.length()) {
+            char c = query.charAt(i);
+
+            if (c == '\'' || c == '"') {
+                int end = query.indexOf(c, i + 1);
+                end = (end == -1) ? query.length() : end + 1;
+
+                if (space && normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+
+                normalized.append(query, i, end);
+                space = false;
+                i = end;
+            } else if (query.startsWith("--", i)) {
+                int end = query.indexOf('\n', i);
+                space = true;
+                i = (end == -1) ? query.length() : end + 1;
+            } else if (query.startsWith("/*", i)) {
+                int end = query.indexOf("*/", i + 2);
+                space = true;
+                i = (end == -1) ? query.length() : end + 2;
+            } else if (Character.isWhitespace(c)) {
+                space = true;
+                i++;
+            } else {
+                if (space && normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+
+                normalized.append(c);
+                space = false;
+                i++;
+            }
+        }
+
+        //Ignores the statement terminator.
+        while (normalized.length() > 0
+                && normalized.charAt(normalized.length() - 1) == ';') {
+            normalized.setLength(normalized.length() - 1);
+        }
+
+        return normalized.toString().trim();
+    }
+
+    /**
+     * Represents a serialized resultset.
+     */
+    private static class Entry {
+
+        private final Object data;
+        private final int length;
+        private final long ttl;
+
+        Entry(byte[] bytes, long ttl, boolean offHeap) {
+            this.length = bytes.length;
+            this.ttl = ttl;
+
+            if (offHeap) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+                buffer.put(bytes);
+                buffer.flip();
+                this.data = buffer;
+            } else {
+                this.data = bytes;
+            }
+        }
+
+        byte[] getData() {
+            if (data instanceof ByteBuffer) {
+                byte[] bytes = new byte[length];
+                ((ByteBuffer) data).duplicate().get(bytes);
+                return bytes;
+            }
+
+            return (byte[]) data;
+        }
+
+        int getLength() {
+            return length;
+        }
+
+        long getTtl() {
+            return ttl;
+        }
+    }
+}
@@ -0,0 +1,623 @@
+/*
+ * Copyright (c) 2018 Dafiti Group
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package br.com.dafiti.hanger.service;
+
+import br.com.dafiti.hanger.exception.Message;
+import br.com.dafiti.hanger.model.AuditorData;
+import br.com.dafiti.hanger.model.Connection;
+import br.com.dafiti.hanger.model.User;
+import br.com.dafiti.hanger.option.Database;
+import br.com.dafiti.hanger.service.ConnectionService.Column;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Serves workbench resultsets page by page.
+ *
+ * A query session keeps its cursor open between pages. A table session,
+ * opened on a table with a primary key, reads each page with a keyset
+ * predicate on the last key read, so deep pages do not rescan the table.
+ * Sessions idle longer than the timeout are closed.
+ *
+ * @author Valdiney V GOMES
+ */
+@Service
+public class QueryCursorService {
+
+    private final ConnectionService connectionService;
+    private final CatalogService catalogService;
+    private final ConfigurationService configurationService;
+    private final AuditorService auditorService;
+    private final Map<String, Session> sessions;
+    private final int fetchSize;
+    private final int maxPerUser;
+    private final long idle;
+
+    private static final Logger LOG = LogManager.getLogger(QueryCursorService.class.getName());
+
+    @Autowired
+    public QueryCursorService(
+            ConnectionService connectionService,
+            CatalogService catalogService,
+            ConfigurationService configurationService,
+            AuditorService auditorService,
+            @Value("${hanger.workbench.fetch.size:1000}") int fetchSize,
+            @Value("${hanger.workbench.cursor.max.user:2}") int maxPerUser,
+            @Value("${hanger.workbench.cursor.idle:300}") long idle) {
+
+        this.connectionService = connectionService;
+        this.catalogService = catalogService;
+        this.configurationService = configurationService;
+        this.auditorService = auditorService;
+        this.sessions = new ConcurrentHashMap();
+        this.fetchSize = fetchSize;
+        this.maxPerUser = maxPerUser;
+        this.idle = idle;
+    }
+
+    /**
+     * Open a cursor on a query.
+     *
+     * @param connection Connection
+     * @param query Query
+     * @param user User
+     * @return Session ID.
+     * @throws SQLException
+     */
+    public String open(
+            Connection connection,
+            String query,
+            User user) throws SQLException {
+
+        connectionService.validate(query);
+        this.release(user.getUsername());
+
+        CursorSession session = new CursorSession(user.getUsername());
+        java.sql.Connection conn = connectionService.getDataSource(connection).getConnection();
+
+        try {
+            //Postgres and Redshift only use a cursor inside a transaction.
+            if (connection.getTarget().equals(Database.POSTGRES)
+                    || connection.getTarget().equals(Database.REDSHIFT)) {
+                conn.setAutoCommit(false);
+            }
+
+            PreparedStatement statement = conn.prepareStatement(
+                    query,
+                    ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY);
+
+            statement.setFetchSize(fetchSize);
+
+            session.open(conn, statement, statement.executeQuery());
+            this.audit(connection, query, null);
+        } catch (SQLException ex) {
+            conn.close();
+            this.audit(connection, query, new Message().getErrorMessage(ex));
+            throw ex;
+        }
+
+        sessions.put(session.getId(), session);
+
+        return session.getId();
+    }
+
+    /**
+     * Open a session browsing a table, by keyset when it has a primary key.
+     *
+     * @param connection Connection
+     * @param catalog Catalog
+     * @param schema Schema
+     * @param table Table
+     * @param field Fields
+     * @param user User
+     * @return Session ID.
+     * @throws SQLException
+     */
+    public String open(
+            Connection connection,
+            String catalog,
+            String schema,
+            String table,
+            List<String> field,
+            User user) throws SQLException {
+
+        List<String> key = catalogService
+                .getPrimaryKey(connection, catalog, schema, table)
+                .stream()
+                .sorted(Comparator.comparingInt(Column::getPosition))
+                .map(Column::getName)
+                .collect(Collectors.toList());
+
+        String from = this.getFrom(connection, catalog, schema, table);
+
+        //Tables without primary key are read by a plain cursor.
+        if (key.isEmpty()) {
+            return this.open(
+                    connection,
+                    "SELECT " + String.join(",", field) + " FROM " + from,
+                    user);
+        }
+
+        connectionService.validate(String.join(",", field) + " " + from);
+        this.release(user.getUsername());
+
+        KeysetSession session = new KeysetSession(
+                user.getUsername(),
+                connection,
+                from,
+                field,
+                key);
+
+        sessions.put(session.getId(), session);
+        this.audit(connection, "SELECT " + String.join(",", field) + " FROM " + from, null);
+
+        return session.getId();
+    }
+
+    /**
+     * Publish the query of a session to the workbench audit trail.
+     *
+     * @param connection Connection
+     * @param query Query
+     * @param error Error or null when the session was opened.
+     */
+    private void audit(Connection connection, String query, String error) {
+        AuditorData auditorData = new AuditorData()
+                .addData("connection", connection.getName())
+                .addData("sql", query);
+
+        if (error != null) {
+            auditorData.addData("error", error);
+        }
+
+        auditorService.publish("QUERY", auditorData.getData());
+    }
+
+    /**
+     * Read the next page of a session.
+     *
+     * @param id Session ID.
+     * @param username Username.
+     * @param size Page size, limited to the workbench max rows.
+     * @return Page or null when the session does not exist.
+     * @throws SQLException
+     */
+    public Page next(String id, String username, int size) throws SQLException {
+        Session session = sessions.get(id);
+
+        if (session == null || !session.getUser().equals(username)) {
+            return null;
+        }
+
+        int limit = Math.max(1, Math.min(size, configurationService.getMaxRows()));
+
+        synchronized (session) {
+            try {
+                Page page = session.next(limit);
+
+                //Closes a session as soon as it is exhausted.
+                if (page.isLast()) {
+                    this.close(session);
+                }
+
+                return page;
+            } catch (SQLException ex) {
+                this.close(session);
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Close a session.
+     *
+     * @param id Session ID.
+     * @param username Username.
+     */
+    public void close(String id, String username) {
+        Session session = sessions.get(id);
+
+        if (session != null && session.getUser().equals(username)) {
+            synchronized (session) {
+                this.close(session);
+            }
+        }
+    }
+
+    /**
+     * Close the sessions idle longer than the timeout.
+     */
+    @Scheduled(fixedDelay = 30000)
+    public void expire() {
+        long now = System.currentTimeMillis();
+
+        sessions.values().forEach(session -> {
+            if ((now - session.getTouched()) > (idle * 1000)) {
+                synchronized (session) {
+                    LOG.log(Level.INFO, "Closing idle workbench cursor of {}", new Object[]{session.getUser()});
+                    this.close(session);
+                }
+            }
+        });
+    }
+
+    /**
+     * Close every session.
+     */
+    @PreDestroy
+    public void shutdown() {
+        sessions.values().forEach(this::close);
+    }
+
+    /**
+     * Close the oldest sessions of a user over the limit.
+     *
+     * @param username Username.
+     */
+    private void release(String username) {
+        List<Session> open = sessions.values()
+                .stream()
+                .filter(x -> x.getUser().equals(username))
+                .sorted(Comparator.comparingLong(Session::getTouched))
+                .collect(Collectors.toList());
+
+        for (int i = 0; i <= open.size() - maxPerUser; i++) {
+            synchronized (open.get(i)) {
+                this.close(open.get(i));
+            }
+        }
+    }
+
+    /**
+     * Close a session.
+     *
+     * @param session Session
+     */
+    private void close(Session session) {
+        sessions.remove(session.getId());
+        session.close();
+    }
+
+    /**
+     * Get the qualified name of a table.
+     *
+     * @param connection Connection
+     * @param catalog Catalog
+     * @param schema Schema
+     * @param table Table
+     * @return Qualified name.
+     */
+    private String getFrom(
+            Connection connection,
+            String catalog,
+            String schema,
+            String table) {
+
+        List<String> catalogSchema = new ArrayList();
+
+        if (catalog != null && !"null".equals(catalog) && !catalog.isEmpty()) {
+            catalogSchema.add(catalog);
+        }
+
+        if (schema != null && !"null".equals(schema) && !schema.isEmpty()) {
+            catalogSchema.add(schema);
+        }
+
+        if (connection.getTarget().equals(Database.HANA)) {
+            catalogSchema.add('"' + table + '"');
+        } else {
+            catalogSchema.add(table);
+        }
+
+        return String.join(".", catalogSchema);
+    }
+
+    /**
+     * Represents a resultset page.
+     */
+    public static class Page {
+
+        private final String id;
+        private final List<String> header;
+        private final List<List<String>> row;
+        private final boolean last;
+
+        public Page(String id, List<String> header, List<List<String>> row, boolean last) {
+            this.id = id;
+            this.header = header;
+            this.row = row;
+            this.last = last;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public List<String> getHeader() {
+            return header;
+        }
+
+        public List<List<String>> getRow() {
+            return row;
+        }
+
+        public boolean isLast() {
+            return last;
+        }
+    }
+
+    /**
+     * Represents a paged query session.
+     */
+    private abstract static class Session {
+
+        private final String id = UUID.randomUUID().toString();
+        private final String user;
+        private volatile long touched = System.currentTimeMillis();
+
+        Session(String user) {
+            this.user = user;
+        }
+
+        String getId() {
+            return id;
+        }
+
+        String getUser() {
+            return user;
+        }
+
+        long getTouched() {
+            return touched;
+        }
+
+        void touch() {
+            touched = System.currentTimeMillis();
+        }
+
+        abstract Page next(int size) throws SQLException;
+
+        abstract void close();
+    }
+
+    /**
+     * Session keeping the resultset open between pages.
+     */
+    private static class CursorSession extends Session {
+
+        private java.sql.Connection connection;
+        private PreparedStatement statement;
+        private ResultSet resultSet;
+        private List<String> header;
+
+        CursorSession(String user) {
+            super(user);
+        }
+
+        void open(java.sql.Connection connection, PreparedStatement statement, ResultSet resultSet) throws SQLException {
+            this.connection = connection;
+            this.statement = statement;
+            this.resultSet = resultSet;
+            this.header = new ArrayList();
+
+            ResultSetMetaData metaData = resultSet.getMetaData();
+
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                header.add(metaData.getColumnName(i));
+            }
+        }
+
+        @Override
+        Page next(int size) throws SQLException {
+            List<List<String>> rows = new ArrayList();
+            boolean last = true;
+
+            this.touch();
+
+            if (resultSet != null) {
+                while (rows.size() < size) {
+                    if (!resultSet.next()) {
+                        break;
+                    }
+
+                    List<String> row = new ArrayList(header.size());
+
+                    for (int i = 1; i <= header.size(); i++) {
+                        row.add(resultSet.getString(i));
+                    }
+
+                    rows.add(row);
+                }
+
+                last = rows.size() < size;
+            }
+
+            return new Page(this.getId(), header, rows, last);
+        }
+
+        @Override
+        void close() {
+            try {
+                if (connection != null) {
+                    connection.close();
+                }
+            } catch (SQLException ex) {
+                LOG.log(Level.ERROR, "Fail closing workbench cursor ", ex);
+            } finally {
+                connection = null;
+                statement = null;
+                resultSet = null;
+            }
+        }
+    }
+
+    /**
+     * Session reading each page after the last primary key read.
+     */
+    private class KeysetSession extends Session {
+
+        private final Connection connection;
+        private final String from;
+        private final List<String> field;
+        private final List<String> key;
+        private List<Object> after;
+
+        KeysetSession(
+                String user,
+                Connection connection,
+                String from,
+                List<String> field,
+                List<String> key) {
+
+            super(user);
+            this.connection = connection;
+            this.from = from;
+            this.field = field;
+            this.key = key;
+        }
+
+        @Override
+        Page next(int size) throws SQLException {
+            List<List<String>> rows = new ArrayList();
+            List<String> column = new ArrayList(field);
+
+            this.touch();
+
+            //Selects the key columns too, to know where the page ended.
+            key.stream()
+                    .filter(x -> !field.contains(x))
+                    .forEach(column::add);
+
+            try (java.sql.Connection conn = connectionService.getDataSource(connection).getConnection();
+                    PreparedStatement statement = conn.prepareStatement(this.getQuery(column, size))) {
+
+                if (after != null) {
+                    int parameter = 1;
+
+                    for (int i = 0; i < key.size(); i++) {
+                        for (int j = 0; j <= i; j++) {
+                            statement.setObject(parameter++, after.get(j));
+                        }
+                    }
+                }
+
+                statement.setMaxRows(size);
+
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        List<String> row = new ArrayList(field.size());
+
+                        for (int i = 1; i <= field.size(); i++) {
+                            row.add(resultSet.getString(i));
+                        }
+
+                        rows.add(row);
+
+                        //Keeps the last key with its original type.
+                        List<Object> last = new ArrayList(key.size());
+
+                        for (String name : key) {
+                            last.add(resultSet.getObject(column.indexOf(name) + 1));
+                        }
+
+                        after = last;
+                    }
+                }
+            }
+
+            return new Page(this.getId(), field, rows, rows.size() < size);
+        }
+
+        /**
+         * Build a page query, ordered by the key and starting after the last
+         * key read.
+         *
+         * @param column Selected columns.
+         * @param size Page size.
+         * @return Query.
+         */
+        private String getQuery(List<String> column, int size) {
+            StringBuilder query = new StringBuilder("SELECT ");
+            boolean top = connection.getTarget().equals(Database.MSSQL)
+                    || connection.getTarget().equals(Database.JTDS);
+
+            if (top) {
+                query.append("TOP ").append(size).append(" ");
+            }
+
+            query.append(String.join(",", column));
+            query.append(" FROM ");
+            query.append(from);
+
+            //(k1 > ?) OR (k1 = ? AND k2 > ?) ...
+            if (after != null) {
+                List<String> predicate = new ArrayList();
+
+                for (int i = 0; i < key.size(); i++) {
+                    List<String> term = new ArrayList();
+
+                    for (int j = 0; j < i; j++) {
+                        term.add(key.get(j) + " = ?");
+                    }
+
+                    term.add(key.get(i) + " > ?");
+                    predicate.add("(" + String.join(" AND ", term) + ")");
+                }
+
+                query.append(" WHERE ").append(String.join(" OR ", predicate));
+            }
+
+            query.append(" ORDER BY ").append(String.join(",", key));
+
+            if (!top) {
+                query.append(" LIMIT ").append(size);
+            }
+
+            return query.toString();
+        }
+
+        @Override
+        void close() {
+            after = null;
+        }
+    }
+}
@@ -0,0 +1,401 @@
+/*
+ * Copyright (c) 2018 Dafiti Group
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package br.com.dafiti.hanger.service;
+
+import br.com.dafiti.hanger.model.Connection;
+import br.com.dafiti.hanger.model.User;
+import br.com.dafiti.hanger.option.Status;
+import br.com.dafiti.hanger.service.ConnectionService.QueryResultSet;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Runs workbench queries in background, so they do not hold a request
+ * thread.
+ *
+ * @author Valdiney V GOMES
+ */
+@Service
+public class QueryJobService {
+
+    private final ConnectionService connectionService;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, QueryJob> jobs;
+    private final int maxPerUser;
+    private final int maxPerConnection;
+    private final long ttl;
+
+    private static final Logger LOG = LogManager.getLogger(QueryJobService.class.getName());
+
+    @Autowired
+    public QueryJobService(
+            ConnectionService connectionService,
+            @Value("${hanger.workbench.query.max.concurrent:10}") int maxConcurrent,
+            @Value("${hanger.workbench.query.max.user:3}") int maxPerUser,
+            @Value("${hanger.workbench.query.max.connection:5}") int maxPerConnection,
+            @Value("${hanger.workbench.query.ttl:600}") long ttl) {
+
+        this.connectionService = connectionService;
+        this.maxPerUser = maxPerUser;
+        this.maxPerConnection = maxPerConnection;
+        this.ttl = ttl;
+        this.jobs = new ConcurrentHashMap();
+        this.executor = new ThreadPoolExecutor(
+                maxConcurrent,
+                maxConcurrent,
+                60L,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue(),
+                new CustomizableThreadFactory("hanger_query_"));
+    }
+
+    /**
+     * Stop the query executor.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Submit a query.
+     *
+     * @param connection Connection
+     * @param query Query
+     * @param user User
+     * @return Query job or null when the user or the connection reached its
+     * limit of running queries.
+     */
+    public QueryJob submit(
+            Connection connection,
+            String query,
+            User user) {
+
+        return this.submit(connection, query, user, true);
+    }
+
+    /**
+     * Submit a query.
+     *
+     * @param connection Connection
+     * @param query Query
+     * @param user User
+     * @param cache Identifies if the result cache can be used.
+     * @return Query job or null when the user or the connection reached its
+     * limit of running queries.
+     */
+    public synchronized QueryJob submit(
+            Connection connection,
+            String query,
+            User user,
+            boolean cache) {
+
+        long byUser = jobs.values().stream()
+                .filter(x -> x.isActive() && x.getUser().equals(user.getUsername()))
+                .count();
+
+        long byConnection = jobs.values().stream()
+                .filter(x -> x.isActive() && x.getConnection().equals(connection.getId()))
+                .count();
+
+        //Identifies if there is room for another query.
+        if (byUser >= maxPerUser || byConnection >= maxPerConnection) {
+            LOG.log(Level.INFO, "Query of {} rejected on {}, {} running by user and {} by connection", new Object[]{user.getUsername(), connection.getName(), byUser, byConnection});
+            return null;
+        }
+
+        QueryJob job = new QueryJob(connection.getId(), user.getUsername());
+        jobs.put(job.getId(), job);
+
+        job.setFuture(executor.submit(() -> {
+            if (job.start()) {
+                try {
+                    connectionService.getQueryResultSet(
+                            connection,
+                            query,
+                            user,
+                            job.getId(),
+                            job.getResult(),
+                            cache);
+                } catch (Exception ex) {
+                    job.getResult().setError(String.valueOf(ex.getMessage()));
+                    LOG.log(Level.ERROR, "Fail running query " + job.getId(), ex);
+                } finally {
+                    job.finish();
+                }
+            }
+        }));
+
+        return job;
+    }
+
+    /**
+     * Get a query job of a user.
+     *
+     * @param id Query job ID.
+     * @param username Username.
+     * @return Query job or null when it does not exist or is not owned by the
+     * user.
+     */
+    public QueryJob get(String id, String username) {
+        QueryJob job = jobs.get(id);
+
+        if (job != null && job.getUser().equals(username)) {
+            return job;
+        }
+
+        return null;
+    }
+
+    /**
+     * Get a page of a query job result.
+     *
+     * @param job QueryJob
+     * @param offset First row.
+     * @param limit Row count.
+     * @return Rows.
+     */
+    public List<List<Object>> getPage(QueryJob job, int offset, int limit) {
+        List<List<Object>> page = new ArrayList();
+
+        if (job.getStatus().equals(Status.SUCCESS)) {
+            ResultSetBuffer buffer = job.getResult().getBuffer();
+
+            if (buffer != null) {
+                int end = Math.min(buffer.size(), offset + limit);
+
+                for (int i = Math.max(0, offset); i < end; i++) {
+                    page.add(new ArrayList(buffer.getRow(i)));
+                }
+            }
+        }
+
+        return page;
+    }
+
+    /**
+     * Cancel a query job.
+     *
+     * @param job QueryJob
+     * @return Identify if the query was canceled.
+     */
+    public boolean cancel(QueryJob job) {
+        boolean canceled = false;
+
+        if (job.abort()) {
+            job.getFuture().cancel(false);
+            canceled = true;
+        } else if (job.getStatus().equals(Status.RUNNING)) {
+            canceled = connectionService.queryCancel(job.getUser(), job.getId());
+
+            if (canceled) {
+                job.setCanceled(true);
+            }
+        }
+
+        return canceled;
+    }
+
+    /**
+     * Remove the query jobs finished longer than the TTL.
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void evict() {
+        long now = System.currentTimeMillis();
+
+        jobs.values().removeIf(job -> {
+            return !job.isActive()
+                    && job.getFinished() != null
+                    && (now - job.getFinished().getTime()) > (ttl * 1000);
+        });
+    }
+
+    /**
+     * Represents a query running in background.
+     */
+    public static class QueryJob {
+
+        private final String id;
+        private final Long connection;
+        private final String user;
+        private final Date submitted;
+        private final QueryResultSet result;
+        private volatile Status status;
+        private volatile Date started;
+        private volatile Date finished;
+        private volatile boolean canceled;
+        private Future<?> future;
+
+        public QueryJob(Long connection, String user) {
+            this.id = UUID.randomUUID().toString();
+            this.connection = connection;
+            this.user = user;
+            this.submitted = new Date();
+            this.result = new QueryResultSet();
+            this.status = Status.WAITING;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public Long getConnection() {
+            return connection;
+        }
+
+        public String getUser() {
+            return user;
+        }
+
+        public Date getSubmitted() {
+            return submitted;
+        }
+
+        public Date getStarted() {
+            return started;
+        }
+
+        public Date getFinished() {
+            return finished;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public void setCanceled(boolean canceled) {
+            this.canceled = canceled;
+        }
+
+        @JsonIgnore
+        public QueryResultSet getResult() {
+            return result;
+        }
+
+        @JsonIgnore
+        public Future<?> getFuture() {
+            return future;
+        }
+
+        public void setFuture(Future<?> future) {
+            this.future = future;
+        }
+
+        /**
+         * Get the rows fetched so far.
+         *
+         * @return Row count.
+         */
+        public int getRows() {
+            return result.getBuffer() == null ? 0 : result.getBuffer().size();
+        }
+
+        public List<String> getHeader() {
+            return status.equals(Status.SUCCESS) ? result.getHeader() : new ArrayList();
+        }
+
+        public Map<String, String> getType() {
+            return result.getType();
+        }
+
+        public String getError() {
+            return result.getError();
+        }
+
+        public long getElapsedTime() {
+            return result.getElapsedTime();
+        }
+
+        /**
+         * Identify if the query is waiting or running.
+         *
+         * @return Identify if the query is active.
+         */
+        @JsonIgnore
+        public boolean isActive() {
+            return status.equals(Status.WAITING) || status.equals(Status.RUNNING);
+        }
+
+        /**
+         * Start the query if it was not aborted.
+         *
+         * @return Identify if the query was started.
+         */
+        synchronized boolean start() {
+            if (status.equals(Status.WAITING)) {
+                status = Status.RUNNING;
+                started = new Date();
+                return true;
+            }
+
+            return false;
+        }
+
+        /**
+         * Abort the query if it has not started.
+         *
+         * @return Identify if the query was aborted.
+         */
+        synchronized boolean abort() {
+            if (status.equals(Status.WAITING)) {
+                status = Status.ABORTED;
+                finished = new Date();
+                return true;
+            }
+
+            return false;
+        }
+
+        /**
+         * Finish the query.
+         */
+        synchronized void finish() {
+            if (canceled) {
+                status = Status.ABORTED;
+            } else {
+                status = result.hasError() ? Status.FAILURE : Status.SUCCESS;
+            }
+
+            finished = new Date();
+        }
+    }
+}
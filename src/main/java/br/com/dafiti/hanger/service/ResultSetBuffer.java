@@ -0,0 +1,554 @@
+/*
+ * Copyright (c) 2018 Dafiti Group
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package br.com.dafiti.hanger.service;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar resultset buffer.
+ *
+ * Signed integer, decimal, floating point and timestamp columns are kept in
+ * primitive arrays with a null bitmap, any other column is kept as the driver
+ * string. Numbers are formatted without exponent, and values that do not fit
+ * their primitive, like unsigned BIGINT or huge decimals, are kept as text.
+ * Values are read by index and only formatted when they are displayed or
+ * exported.
+ *
+ * @author Valdiney V GOMES
+ */
+public class ResultSetBuffer {
+
+    private final Column[] columns;
+    private volatile int size;
+
+    private static final int CAPACITY = 64;
+
+    private ResultSetBuffer(Column[] columns) {
+        this.columns = columns;
+    }
+
+    public ResultSetBuffer(ResultSetMetaData metaData) throws SQLException {
+        this.columns = new Column[metaData.getColumnCount()];
+
+        for (int i = 0; i < columns.length; i++) {
+            switch (metaData.getColumnType(i + 1)) {
+                case Types.BIGINT:
+                    //Unsigned values could overflow a long.
+                    columns[i] = metaData.isSigned(i + 1) ? new LongColumn() : new StringColumn();
+                    break;
+                case Types.INTEGER:
+                case Types.SMALLINT:
+                case Types.TINYINT:
+                    columns[i] = new LongColumn();
+                    break;
+                case Types.DECIMAL:
+                case Types.NUMERIC:
+                    columns[i] = new DecimalColumn();
+                    break;
+                case Types.DOUBLE:
+                case Types.FLOAT:
+                    columns[i] = new DoubleColumn(false);
+                    break;
+                case Types.REAL:
+                    columns[i] = new DoubleColumn(true);
+                    break;
+                case Types.TIMESTAMP:
+                    columns[i] = new TimestampColumn();
+                    break;
+                default:
+                    columns[i] = new StringColumn();
+            }
+        }
+    }
+
+    /**
+     * Create an empty buffer keeping every column as text.
+     *
+     * @param width Column count.
+     */
+    public ResultSetBuffer(int width) {
+        this.columns = new Column[width];
+
+        for (int i = 0; i < width; i++) {
+            columns[i] = new StringColumn();
+        }
+    }
+
+    /**
+     * Rebuild a buffer written by write, every column kept as text.
+     *
+     * @param input Input.
+     * @return Buffer.
+     * @throws IOException
+     */
+    public static ResultSetBuffer read(DataInput input) throws IOException {
+        int width = input.readInt();
+        int rows = input.readInt();
+        ResultSetBuffer buffer = new ResultSetBuffer(new Column[width]);
+
+        for (int i = 0; i < width; i++) {
+            StringColumn column = new StringColumn();
+            column.value = new String[Math.max(rows, 1)];
+
+            for (int row = 0; row < rows; row++) {
+                column.value[row] = readString(input);
+            }
+
+            buffer.columns[i] = column;
+        }
+
+        buffer.size = rows;
+
+        return buffer;
+    }
+
+    /**
+     * Write the formatted values, column by column.
+     *
+     * @param output Output.
+     * @throws IOException
+     */
+    public void write(DataOutput output) throws IOException {
+        int rows = size;
+
+        output.writeInt(columns.length);
+        output.writeInt(rows);
+
+        for (Column column : columns) {
+            for (int row = 0; row < rows; row++) {
+                writeString(output, column.format(row));
+            }
+        }
+    }
+
+    /**
+     * Write a nullable string.
+     *
+     * @param output Output.
+     * @param value Value.
+     * @throws IOException
+     */
+    public static void writeString(DataOutput output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    /**
+     * Read a nullable string.
+     *
+     * @param input Input.
+     * @return Value.
+     * @throws IOException
+     */
+    public static String readString(DataInput input) throws IOException {
+        int length = input.readInt();
+
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read the current row of a resultset.
+     *
+     * @param resultSet ResultSet
+     * @throws SQLException
+     */
+    public void read(ResultSet resultSet) throws SQLException {
+        for (int i = 0; i < columns.length; i++) {
+            columns[i].read(resultSet, i + 1, size);
+        }
+
+        size++;
+    }
+
+    /**
+     * Add a row to a buffer created by width, where every column is text.
+     *
+     * @param row Column values.
+     */
+    public void add(String[] row) {
+        for (int i = 0; i < columns.length; i++) {
+            ((StringColumn) columns[i]).add(row[i], size);
+        }
+
+        size++;
+    }
+
+    /**
+     * Get the row count.
+     *
+     * @return Row count.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the column count.
+     *
+     * @return Column count.
+     */
+    public int width() {
+        return columns.length;
+    }
+
+    /**
+     * Get a formatted value.
+     *
+     * @param row Row index.
+     * @param column Column index.
+     * @return Value as the driver string representation, or null.
+     */
+    public String get(int row, int column) {
+        return columns[column].format(row);
+    }
+
+    /**
+     * Get a row as a list of formatted values.
+     *
+     * @param row Row index.
+     * @return Row values.
+     */
+    public List<Object> getRow(int row) {
+        return new AbstractList<Object>() {
+            @Override
+            public Object get(int column) {
+                return columns[column].format(row);
+            }
+
+            @Override
+            public int size() {
+                return columns.length;
+            }
+        };
+    }
+
+    /**
+     * Get a column as a list of formatted values.
+     *
+     * @param column Column index.
+     * @return Column values.
+     */
+    public List<Object> getColumn(int column) {
+        return new AbstractList<Object>() {
+            @Override
+            public Object get(int row) {
+                return columns[column].format(row);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Get the capacity of a full column.
+     *
+     * @param row Current capacity.
+     * @return New capacity.
+     */
+    private static int grow(int row) {
+        return Math.max(row + (row >> 1), row + 1);
+    }
+
+    /**
+     * Typed column.
+     */
+    private abstract static class Column {
+
+        final BitSet nulls = new BitSet();
+        Map<Integer, String> text;
+
+        abstract void read(ResultSet resultSet, int index, int row) throws SQLException;
+
+        abstract String format(int row);
+
+        /**
+         * Keep a value that does not fit the column type as text.
+         *
+         * @param row Row index.
+         * @param value Value.
+         */
+        void setText(int row, String value) {
+            if (text == null) {
+                text = new HashMap();
+            }
+
+            text.put(row, value);
+        }
+
+        /**
+         * Identify if a value was kept as text.
+         *
+         * @param row Row index.
+         * @return Identify if the value is text.
+         */
+        boolean isText(int row) {
+            return text != null && text.containsKey(row);
+        }
+    }
+
+    /**
+     * Integer column.
+     */
+    private static class LongColumn extends Column {
+
+        long[] value = new long[CAPACITY];
+
+        @Override
+        void read(ResultSet resultSet, int index, int row) throws SQLException {
+            if (row == value.length) {
+                value = Arrays.copyOf(value, grow(row));
+            }
+
+            value[row] = resultSet.getLong(index);
+
+            if (resultSet.wasNull()) {
+                nulls.set(row);
+            }
+        }
+
+        @Override
+        String format(int row) {
+            return nulls.get(row) ? null : Long.toString(value[row]);
+        }
+    }
+
+    /**
+     * Decimal column, kept as unscaled value and scale.
+     */
+    private static class DecimalColumn extends Column {
+
+        long[] value = new long[CAPACITY];
+        int[] scale = new int[CAPACITY];
+
+        @Override
+        void read(ResultSet resultSet, int index, int row) throws SQLException {
+            if (row == value.length) {
+                value = Arrays.copyOf(value, grow(row));
+                scale = Arrays.copyOf(scale, value.length);
+            }
+
+            BigDecimal decimal = resultSet.getBigDecimal(index);
+
+            if (decimal == null) {
+                nulls.set(row);
+            } else if (decimal.unscaledValue().bitLength() < 64) {
+                value[row] = decimal.unscaledValue().longValue();
+                scale[row] = decimal.scale();
+            } else {
+                //Unscaled values beyond a long.
+                this.setText(row, decimal.toPlainString());
+            }
+        }
+
+        @Override
+        String format(int row) {
+            if (nulls.get(row)) {
+                return null;
+            } else if (this.isText(row)) {
+                return text.get(row);
+            }
+
+            return BigDecimal.valueOf(value[row], scale[row]).toPlainString();
+        }
+    }
+
+    /**
+     * Floating point column.
+     */
+    private static class DoubleColumn extends Column {
+
+        final boolean single;
+        double[] value = new double[CAPACITY];
+
+        DoubleColumn(boolean single) {
+            this.single = single;
+        }
+
+        @Override
+        void read(ResultSet resultSet, int index, int row) throws SQLException {
+            if (row == value.length) {
+                value = Arrays.copyOf(value, grow(row));
+            }
+
+            value[row] = single ? resultSet.getFloat(index) : resultSet.getDouble(index);
+
+            if (resultSet.wasNull()) {
+                nulls.set(row);
+            }
+        }
+
+        @Override
+        String format(int row) {
+            if (nulls.get(row)) {
+                return null;
+            }
+
+            double number = value[row];
+
+            if (Double.isNaN(number) || Double.isInfinite(number)) {
+                return Double.toString(number);
+            }
+
+            //Uses the shortest representation of the value, without exponent.
+            return new BigDecimal(single ? Float.toString((float) number) : Double.toString(number))
+                    .stripTrailingZeros()
+                    .toPlainString();
+        }
+    }
+
+    /**
+     * Timestamp column, kept as epoch milliseconds and nanoseconds.
+     */
+    private static class TimestampColumn extends Column {
+
+        long[] value = new long[CAPACITY];
+        int[] nanos = new int[CAPACITY];
+
+        private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+        @Override
+        void read(ResultSet resultSet, int index, int row) throws SQLException {
+            if (row == value.length) {
+                value = Arrays.copyOf(value, grow(row));
+                nanos = Arrays.copyOf(nanos, value.length);
+            }
+
+            Timestamp timestamp;
+
+            try {
+                timestamp = resultSet.getTimestamp(index);
+            } catch (SQLException ex) {
+                //Values without a timestamp, like zero dates.
+                String value = resultSet.getString(index);
+
+                if (value == null) {
+                    nulls.set(row);
+                } else {
+                    this.setText(row, value);
+                }
+
+                return;
+            }
+
+            if (timestamp == null) {
+                nulls.set(row);
+            } else {
+                value[row] = timestamp.getTime();
+                nanos[row] = timestamp.getNanos();
+            }
+        }
+
+        @Override
+        String format(int row) {
+            if (nulls.get(row)) {
+                return null;
+            } else if (this.isText(row)) {
+                return text.get(row);
+            }
+
+            Timestamp timestamp = new Timestamp(value[row]);
+            timestamp.setNanos(nanos[row]);
+
+            LocalDateTime date = timestamp.toLocalDateTime();
+            StringBuilder formatted = new StringBuilder(FORMAT.format(date));
+
+            //Fractional seconds only when there are any, without trailing zeros.
+            if (date.getNano() != 0) {
+                String fraction = String.format("%09d", date.getNano());
+                int length = fraction.length();
+
+                while (fraction.charAt(length - 1) == '0') {
+                    length--;
+                }
+
+                formatted.append('.').append(fraction, 0, length);
+            }
+
+            return formatted.toString();
+        }
+    }
+
+    /**
+     * Any other column, kept as the driver string.
+     */
+    private static class StringColumn extends Column {
+
+        String[] value = new String[CAPACITY];
+
+        @Override
+        void read(ResultSet resultSet, int index, int row) throws SQLException {
+            if (row == value.length) {
+                value = Arrays.copyOf(value, grow(row));
+            }
+
+            value[row] = resultSet.getString(index);
+        }
+
+        void add(String text, int row) {
+            if (row == value.length) {
+                value = Arrays.copyOf(value, grow(row));
+            }
+
+            value[row] = text;
+        }
+
+        @Override
+        String format(int row) {
+            return value[row];
+        }
+    }
+}
@@ -0,0 +1,533 @@
+/*
+ * Copyright (c) 2018 Dafiti Group
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package br.com.dafiti.hanger.service;
+
+import br.com.dafiti.hanger.model.Job;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.DefaultExecutor;
+import org.apache.commons.exec.ExecuteWatchdog;
+import org.apache.commons.exec.PumpStreamHandler;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Run shell commands inside an isolated and bounded sandbox.
+ *
+ * @author Valdiney V GOMES
+ */
+@Service
+public class ShellCommandService {
+
+    private final Semaphore permits;
+    private final int timeout;
+    private final int headSize;
+    private final int tailSize;
+    private final long logMaxSize;
+    private final int logMaxHistory;
+    private final Path sandbox;
+    private final Path logs;
+    private final ConcurrentHashMap<Long, Set<ExecuteWatchdog>> running;
+    private final Map<Path, RotatingFile> files;
+
+    private static final Logger LOG = LogManager.getLogger(ShellCommandService.class.getName());
+
+    @Autowired
+    public ShellCommandService(
+            @Value("${hanger.shell.max.concurrent:5}") int maxConcurrent,
+            @Value("${hanger.shell.timeout:300}") int timeout,
+            @Value("${hanger.shell.log.head:32768}") int headSize,
+            @Value("${hanger.shell.log.tail:32768}") int tailSize,
+            @Value("${hanger.shell.log.max.size:10485760}") long logMaxSize,
+            @Value("${hanger.shell.log.max.history:5}") int logMaxHistory) {
+
+        this.permits = new Semaphore(maxConcurrent < 1 ? 1 : maxConcurrent, true);
+        this.timeout = timeout;
+        this.headSize = headSize;
+        this.tailSize = tailSize;
+        this.logMaxSize = logMaxSize;
+        this.logMaxHistory = logMaxHistory;
+        this.sandbox = Paths.get(System.getProperty("user.home"), ".hanger", "sandbox");
+        this.logs = Paths.get(System.getProperty("user.home"), ".hanger", "logs", "command");
+        this.running = new ConcurrentHashMap();
+        this.files = new HashMap();
+    }
+
+    /**
+     * Execute a shell script.
+     *
+     * @param job Job that owns the command.
+     * @param id Command ID, used to name the full output file.
+     * @param script Shell script.
+     * @param seconds Timeout in seconds, if empty the default is used.
+     * @return Execution result.
+     */
+    public ShellResult execute(Job job, Long id, String script, Integer seconds) {
+        Path workspace = null;
+        ExecuteWatchdog watchdog = null;
+        boolean acquired = false;
+        boolean success = false;
+        int limit = (seconds != null && seconds > 0) ? seconds : timeout;
+        Path log = logs.resolve("command_" + (id == null ? "transient" : id) + ".log");
+        BoundedOutputStream outputStream = null;
+
+        try {
+            //Waits for an execution slot.
+            acquired = permits.tryAcquire(limit, TimeUnit.SECONDS);
+
+            if (!acquired) {
+                return new ShellResult(false, "Shell command rejected: no execution slot released in " + limit + " seconds");
+            }
+
+            //Define an exclusive work directory.
+            workspace = sandbox.resolve(UUID.randomUUID().toString());
+            Files.createDirectories(workspace);
+            Files.createDirectories(logs);
+
+            //Write shell command to sh file.
+            File file = workspace.resolve("hanger.sh").toFile();
+
+            try (FileWriter writer = new FileWriter(file)) {
+                writer.write(script.replaceAll("\r", ""));
+            }
+
+            file.setExecutable(true);
+            file.setReadable(true);
+            file.setWritable(true);
+
+            //Define the executor.
+            DefaultExecutor executor = new DefaultExecutor();
+            executor.setExitValues(null);
+            executor.setWorkingDirectory(workspace.toFile());
+
+            //Define the timeout.
+            watchdog = new ExecuteWatchdog(TimeUnit.SECONDS.toMillis(limit));
+            executor.setWatchdog(watchdog);
+
+            //Define the log.
+            outputStream = new BoundedOutputStream(
+                    new RotatingFileOutputStream(log),
+                    headSize,
+                    tailSize);
+            outputStream.header(job, limit);
+            executor.setStreamHandler(new PumpStreamHandler(outputStream, outputStream, null));
+
+            //Register the process to be killed on job abort.
+            if (job != null) {
+                running.computeIfAbsent(job.getId(), k -> ConcurrentHashMap.newKeySet()).add(watchdog);
+            }
+
+            //Execute the sh file.
+            success = (executor.execute(CommandLine.parse("sh " + file)) == 0);
+
+            if (watchdog.killedProcess()) {
+                success = false;
+                outputStream.note("Shell command killed after " + limit + " seconds or by job abort");
+            }
+        } catch (IOException ex) {
+            success = false;
+            LOG.log(Level.ERROR, "Fail executing shell command " + ex.getMessage(), ex);
+
+            if (outputStream != null) {
+                outputStream.note(ex.getMessage());
+            } else {
+                return new ShellResult(false, ex.getMessage());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return new ShellResult(false, "Shell command interrupted");
+        } finally {
+            if (job != null && watchdog != null) {
+                Set<ExecuteWatchdog> watchdogs = running.get(job.getId());
+
+                if (watchdogs != null) {
+                    watchdogs.remove(watchdog);
+                }
+            }
+
+            if (outputStream != null) {
+                try {
+                    outputStream.close();
+                } catch (IOException ex) {
+                    LOG.log(Level.ERROR, "Fail closing shell command log", ex);
+                }
+            }
+
+            if (workspace != null) {
+                this.clean(workspace);
+            }
+
+            if (acquired) {
+                permits.release();
+            }
+        }
+
+        return new ShellResult(success, outputStream.toString(log));
+    }
+
+    /**
+     * Kill all shell commands running on behalf of a job.
+     *
+     * @param job Job
+     * @return Number of processes killed.
+     */
+    public int abort(Job job) {
+        int killed = 0;
+        Set<ExecuteWatchdog> watchdogs = running.get(job.getId());
+
+        if (watchdogs != null) {
+            for (ExecuteWatchdog watchdog : watchdogs) {
+                if (watchdog.isWatching()) {
+                    watchdog.destroyProcess();
+                    killed++;
+                }
+            }
+
+            LOG.log(Level.INFO, "{} shell command(s) of job {} killed", new Object[]{killed, job.getName()});
+        }
+
+        return killed;
+    }
+
+    /**
+     * Remove a work directory.
+     *
+     * @param workspace Work directory.
+     */
+    private void clean(Path workspace) {
+        try (Stream<Path> walk = Files.walk(workspace)) {
+            walk.sorted(Comparator.reverseOrder())
+                    .map(Path::toFile)
+                    .forEach(File::delete);
+        } catch (IOException ex) {
+            LOG.log(Level.ERROR, "Fail removing sandbox " + workspace, ex);
+        }
+    }
+
+    /**
+     * Shell command execution result.
+     */
+    public class ShellResult {
+
+        private final boolean success;
+        private final String log;
+
+        public ShellResult(boolean success, String log) {
+            this.success = success;
+            this.log = log;
+        }
+
+        public boolean isSuccess() {
+            return success;
+        }
+
+        public String getLog() {
+            return log;
+        }
+    }
+
+    /**
+     * Output stream that keeps only the head and the tail of the output in
+     * memory and spill the full output to a file.
+     */
+    private static class BoundedOutputStream extends OutputStream {
+
+        private final OutputStream spill;
+        private final byte[] head;
+        private final byte[] tail;
+        private int headLength;
+        private int tailPosition;
+        private long tailLength;
+        private long total;
+
+        BoundedOutputStream(OutputStream spill, int headSize, int tailSize) {
+            this.spill = spill;
+            this.head = new byte[headSize < 0 ? 0 : headSize];
+            this.tail = new byte[tailSize < 0 ? 0 : tailSize];
+        }
+
+        /**
+         * Write the execution header on the spill file.
+         *
+         * @param job Job
+         * @param timeout Timeout
+         */
+        synchronized void header(Job job, int timeout) throws IOException {
+            spill.write(("\n### " + new Date() + " | " + (job == null ? "" : job.getName()) + " | timeout " + timeout + "s\n")
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Add a message to the output.
+         *
+         * @param message Message
+         */
+        synchronized void note(String message) {
+            try {
+                this.write(("\n" + message + "\n").getBytes(StandardCharsets.UTF_8));
+            } catch (IOException ex) {
+                LOG.log(Level.ERROR, "Fail writing shell command log", ex);
+            }
+        }
+
+        @Override
+        public synchronized void write(int b) throws IOException {
+            this.write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            spill.write(b, off, len);
+            total += len;
+
+            //Fill the head first.
+            int toHead = Math.min(len, head.length - headLength);
+
+            if (toHead > 0) {
+                System.arraycopy(b, off, head, headLength, toHead);
+                headLength += toHead;
+                off += toHead;
+                len -= toHead;
+            }
+
+            //Then keep the last bytes in a circular buffer.
+            if (len > 0 && tail.length > 0) {
+                if (len >= tail.length) {
+                    System.arraycopy(b, off + len - tail.length, tail, 0, tail.length);
+                    tailPosition = 0;
+                } else {
+                    int first = Math.min(len, tail.length - tailPosition);
+                    System.arraycopy(b, off, tail, tailPosition, first);
+                    System.arraycopy(b, off + first, tail, 0, len - first);
+                    tailPosition = (tailPosition + len) % tail.length;
+                }
+
+                tailLength = Math.min(tail.length, tailLength + len);
+            }
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            spill.flush();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            spill.close();
+        }
+
+        /**
+         * Get the bounded output.
+         *
+         * @param file Full output file.
+         * @return Head and tail of the output.
+         */
+        synchronized String toString(Path file) {
+            StringBuilder output = new StringBuilder();
+            byte[] ordered = new byte[(int) tailLength];
+
+            if (tailLength < tail.length) {
+                System.arraycopy(tail, 0, ordered, 0, (int) tailLength);
+            } else {
+                System.arraycopy(tail, tailPosition, ordered, 0, tail.length - tailPosition);
+                System.arraycopy(tail, 0, ordered, tail.length - tailPosition, tailPosition);
+            }
+
+            output.append(new String(head, 0, headLength, StandardCharsets.UTF_8));
+
+            if (total > headLength + tailLength) {
+                output
+                        .append("\n[... ")
+                        .append(total - headLength - tailLength)
+                        .append(" bytes omitted, full output at ")
+                        .append(file)
+                        .append(" ...]\n");
+            }
+
+            output.append(new String(ordered, StandardCharsets.UTF_8));
+
+            return output.toString();
+        }
+    }
+
+    /**
+     * Get the rotating file of a log, shared by every run writing to it.
+     *
+     * @param file Log file.
+     * @return Rotating file.
+     * @throws IOException
+     */
+    private RotatingFile acquire(Path file) throws IOException {
+        synchronized (files) {
+            RotatingFile rotatingFile = files.get(file);
+
+            if (rotatingFile == null) {
+                rotatingFile = new RotatingFile(file);
+                files.put(file, rotatingFile);
+            }
+
+            rotatingFile.users++;
+
+            return rotatingFile;
+        }
+    }
+
+    /**
+     * Release a rotating file, closing it when no run writes to it anymore.
+     *
+     * @param rotatingFile Rotating file.
+     * @throws IOException
+     */
+    private void release(RotatingFile rotatingFile) throws IOException {
+        synchronized (files) {
+            if (--rotatingFile.users == 0) {
+                files.remove(rotatingFile.file);
+                rotatingFile.close();
+            }
+        }
+    }
+
+    /**
+     * Append only file that rotates by size.
+     */
+    private class RotatingFile {
+
+        private final Path file;
+        private OutputStream outputStream;
+        private long size;
+        private int users;
+
+        RotatingFile(Path file) throws IOException {
+            this.file = file;
+            this.open();
+        }
+
+        /**
+         * Open the file in append mode.
+         */
+        private void open() throws IOException {
+            outputStream = new FileOutputStream(file.toFile(), true);
+            size = Files.size(file);
+        }
+
+        /**
+         * Rotate the file keeping the configured history.
+         */
+        private void rotate() throws IOException {
+            outputStream.close();
+
+            for (int i = logMaxHistory - 1; i >= 1; i--) {
+                File source = Paths.get(file + "." + i).toFile();
+
+                if (source.exists()) {
+                    Files.move(source.toPath(), Paths.get(file + "." + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+
+            if (logMaxHistory > 0) {
+                Files.move(file, Paths.get(file + ".1"), StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.deleteIfExists(file);
+            }
+
+            this.open();
+        }
+
+        synchronized void write(byte[] b, int off, int len) throws IOException {
+            if (size > 0 && size + len > logMaxSize) {
+                this.rotate();
+            }
+
+            outputStream.write(b, off, len);
+            size += len;
+        }
+
+        synchronized void flush() throws IOException {
+            outputStream.flush();
+        }
+
+        synchronized void close() throws IOException {
+            outputStream.close();
+        }
+    }
+
+    /**
+     * Output stream of a run, writing to the rotating file of its log.
+     */
+    private class RotatingFileOutputStream extends OutputStream {
+
+        private final RotatingFile rotatingFile;
+        private boolean closed;
+
+        RotatingFileOutputStream(Path file) throws IOException {
+            this.rotatingFile = acquire(file);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            rotatingFile.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            rotatingFile.flush();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                release(rotatingFile);
+            }
+        }
+    }
+}
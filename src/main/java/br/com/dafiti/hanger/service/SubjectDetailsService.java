@@ -33,14 +33,30 @@ import br.com.dafiti.hanger.option.Flow;
 import br.com.dafiti.hanger.option.Phase;
 import br.com.dafiti.hanger.option.Status;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.joda.time.DateTime;
 import org.joda.time.Days;
 import org.joda.time.LocalDate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 /**
+ * Subject details.
+ *
+ * Subject counters are kept in memory, updated as job status, enabled flag
+ * or subjects change and reconciled with the database from time to time, so
+ * the monitor home page costs one lookup by subject.
  *
  * @author guilherme.almeida
  */
@@ -50,6 +66,10 @@ public class SubjectDetailsService {
     private final JobNotificationService jobNotificationService;
     private final JobService jobService;
     private final JobBuildStatusService jobBuildStatusService;
+    private final Counters counters;
+    private volatile boolean ready;
+
+    private static final Logger LOG = LogManager.getLogger(SubjectDetailsService.class.getName());
 
     @Autowired
     public SubjectDetailsService(
@@ -60,6 +80,7 @@ public class SubjectDetailsService {
         this.jobNotificationService = jobNotificationService;
         this.jobService = jobService;
         this.jobBuildStatusService = jobBuildStatusService;
+        this.counters = new Counters();
     }
 
     /**
@@ -73,83 +94,25 @@ public class SubjectDetailsService {
             Subject subject,
             List<Job> subjectJobs) {
 
-        int building = 0;
-        int success = 0;
-        int warning = 0;
-        int failure = 0;
-        int total = 0;
+        int[] count = new int[Count.values().length];
 
         for (Job job : subjectJobs) {
-            //Identifies if a job is enable and without time based restriction.
-            if (job.isEnabled()
-                    && jobBuildStatusService.isTimeRestrictionMatch(job.getTimeRestriction())) {
-
-                total += 1;
-                JobStatus jobStatus = job.getStatus();
-
-                if (jobStatus != null) {
-                    JobBuild jobBuild = jobStatus.getBuild();
-
-                    //Identify building jobs.
-                    if (jobStatus.getFlow().equals(Flow.QUEUED)
-                            || jobStatus.getFlow().equals(Flow.REBUILD)) {
-                        building += 1;
-                    } else if (jobStatus.getFlow().equals(Flow.ERROR)) {
-                        failure += 1;
-                    } else if (jobBuild != null) {
-                        int lastBuild = Days.daysBetween(
-                                new LocalDate(new DateTime(jobBuild.getDate()).plusHours(job.getTolerance())),
-                                new LocalDate()).getDays();
-
-                        if (lastBuild == 0) {
-                            //Identify running jobs.
-                            if ((jobBuild.getPhase().equals(Phase.STARTED) || jobBuild.getPhase().equals(Phase.QUEUED))
-                                    && jobBuild.getStatus().equals(Status.SUCCESS)) {
-
-                                building += 1;
-
-                                //Identify success jobs.
-                            } else if (jobBuild.getPhase().equals(Phase.FINALIZED)
-                                    && jobBuild.getStatus().equals(Status.SUCCESS)
-                                    && (jobStatus.getFlow().equals(Flow.NORMAL) || jobStatus.getFlow().equals(Flow.APPROVED))) {
-
-                                if (jobNotificationService.isNotified(job)) {
-                                    warning += 1;
-                                } else {
-                                    success += 1;
-                                }
-
-                                //Identify unhealthy jobs.
-                            } else if (jobBuild.getPhase().equals(Phase.FINALIZED)
-                                    && jobBuild.getStatus().equals(Status.SUCCESS)
-                                    && (jobStatus.getFlow().equals(Flow.UNHEALTHY) || jobStatus.getFlow().equals(Flow.DISAPPROVED) || jobStatus.getFlow().equals(Flow.BLOCKED))) {
-
-                                failure += 1;
-
-                                //Identify failure jobs.
-                            } else if (jobBuild.getStatus().equals(Status.FAILURE)
-                                    || jobBuild.getStatus().equals(Status.ABORTED)
-                                    || jobStatus.getFlow().equals(Flow.ERROR)) {
-
-                                failure += 1;
-
-                                //Identify warning jobs.
-                            } else if (jobNotificationService.isNotified(job)) {
-                                warning += 1;
-                            }
-                        }
-                    }
-                }
-            }
+            count[this.classify(job).ordinal()]++;
         }
 
-        return new SubjectDetails(
-                subject,
-                building,
-                success,
-                warning,
-                failure,
-                total);
+        return this.getDetailsOf(subject, count);
+    }
+
+    /**
+     * Get the detail of a subject from its counters.
+     *
+     * @param subject Subject.
+     * @return Subject details.
+     */
+    public SubjectDetails getDetailsOf(Subject subject) {
+        this.ready();
+
+        return this.getDetailsOf(subject, counters.get(subject.getId()));
     }
 
     /**
@@ -162,10 +125,7 @@ public class SubjectDetailsService {
         List<SubjectDetails> subjectDetails = new ArrayList<>();
 
         subjects.stream().forEach((subject) -> {
-            SubjectDetails details = this.getDetailsOf(
-                    subject,
-                    jobService.findBySubjectOrderByName(subject));
-            subjectDetails.add(details);
+            subjectDetails.add(this.getDetailsOf(subject));
         });
 
         return subjectDetails;
@@ -187,4 +147,378 @@ public class SubjectDetailsService {
 
         return subjectSummary;
     }
+
+    /**
+     * Update the counters of jobs whose status changed.
+     *
+     * @param change Change.
+     */
+    @EventListener
+    public void statusChanged(JobStatusService.Change change) {
+        if (ready) {
+            jobService.findByStatus(change.getId()).forEach(this::update);
+        }
+    }
+
+    /**
+     * Update the counters of jobs changed or removed.
+     *
+     * @param change Change.
+     */
+    @EventListener
+    public void jobChanged(JobService.Change change) {
+        if (ready) {
+            Set<Long> removed = new HashSet(change.getId());
+
+            jobService.load(change.getId()).forEach(job -> {
+                removed.remove(job.getId());
+                this.update(job);
+            });
+
+            removed.forEach(counters::remove);
+        }
+    }
+
+    /**
+     * Update the counters of jobs whose warnings changed.
+     *
+     * @param change Change.
+     */
+    @EventListener
+    public void notified(JobNotificationService.Change change) {
+        if (ready) {
+            jobService.load(change.getId()).forEach(this::update);
+        }
+    }
+
+    /**
+     * Update the counters of jobs with a time restriction, whose windows open
+     * and close without any change.
+     */
+    @Scheduled(cron = "0 * * * * ?")
+    public void restrict() {
+        if (ready) {
+            List<Long> restricted = counters.getRestricted();
+
+            if (!restricted.isEmpty()) {
+                jobService.load(restricted).forEach(this::update);
+            }
+        }
+    }
+
+    /**
+     * Rebuild the counters from the database.
+     *
+     * Also runs at midnight, when every build becomes a previous day one.
+     */
+    @Scheduled(fixedDelayString = "${hanger.subject.reconcile:900000}", initialDelayString = "${hanger.subject.reconcile:900000}")
+    @Scheduled(cron = "0 0 0 * * ?")
+    public void reconcile() {
+        Counters reconciled = new Counters();
+
+        //Jobs updated while the counters are rebuilt are kept as they are.
+        counters.rebuild();
+
+        try {
+            jobService.list().forEach(job -> reconciled.put(
+                    job.getId(),
+                    this.classify(job),
+                    this.getSubjects(job),
+                    this.isRestricted(job)));
+        } catch (RuntimeException ex) {
+            counters.release();
+            throw ex;
+        }
+
+        int drift = counters.replace(reconciled);
+
+        if (ready && drift != 0) {
+            LOG.log(Level.INFO, "Subject counters reconciled, {} subjects changed", new Object[]{drift});
+        }
+
+        ready = true;
+    }
+
+    /**
+     * Build the counters on first use.
+     */
+    private void ready() {
+        if (!ready) {
+            synchronized (counters) {
+                if (!ready) {
+                    this.reconcile();
+                }
+            }
+        }
+    }
+
+    /**
+     * Update the counters of a job.
+     *
+     * @param job Job
+     */
+    private void update(Job job) {
+        counters.put(
+                job.getId(),
+                this.classify(job),
+                this.getSubjects(job),
+                this.isRestricted(job));
+    }
+
+    /**
+     * Get the subjects of a job.
+     *
+     * @param job Job
+     * @return Subject ID set.
+     */
+    private Set<Long> getSubjects(Job job) {
+        return job.getSubject()
+                .stream()
+                .map(Subject::getId)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Identify if a job has a time restriction.
+     *
+     * @param job Job
+     * @return Identify if a job has a time restriction.
+     */
+    private boolean isRestricted(Job job) {
+        return job.getTimeRestriction() != null
+                && !job.getTimeRestriction().isEmpty();
+    }
+
+    /**
+     * Build the subject details from its counters.
+     *
+     * @param subject Subject.
+     * @param count Counters.
+     * @return Subject details.
+     */
+    private SubjectDetails getDetailsOf(Subject subject, int[] count) {
+        return new SubjectDetails(
+                subject,
+                count[Count.BUILDING.ordinal()],
+                count[Count.SUCCESS.ordinal()],
+                count[Count.WARNING.ordinal()],
+                count[Count.FAILURE.ordinal()],
+                Arrays.stream(count, 0, Count.NONE.ordinal()).sum());
+    }
+
+    /**
+     * Classify a job by its current status.
+     *
+     * @param job Job
+     * @return Count.
+     */
+    private Count classify(Job job) {
+        //Identifies if a job is enable and without time based restriction.
+        if (!job.isEnabled()
+                || !jobBuildStatusService.isTimeRestrictionMatch(job.getTimeRestriction())) {
+            return Count.NONE;
+        }
+
+        JobStatus jobStatus = job.getStatus();
+
+        if (jobStatus != null) {
+            JobBuild jobBuild = jobStatus.getBuild();
+
+            //Identify building jobs.
+            if (jobStatus.getFlow().equals(Flow.QUEUED)
+                    || jobStatus.getFlow().equals(Flow.REBUILD)) {
+                return Count.BUILDING;
+            } else if (jobStatus.getFlow().equals(Flow.ERROR)) {
+                return Count.FAILURE;
+            } else if (jobBuild != null) {
+                int lastBuild = Days.daysBetween(
+                        new LocalDate(new DateTime(jobBuild.getDate()).plusHours(job.getTolerance())),
+                        new LocalDate()).getDays();
+
+                if (lastBuild == 0) {
+                    //Identify running jobs.
+                    if ((jobBuild.getPhase().equals(Phase.STARTED) || jobBuild.getPhase().equals(Phase.QUEUED))
+                            && jobBuild.getStatus().equals(Status.SUCCESS)) {
+
+                        return Count.BUILDING;
+
+                        //Identify success jobs.
+                    } else if (jobBuild.getPhase().equals(Phase.FINALIZED)
+                            && jobBuild.getStatus().equals(Status.SUCCESS)
+                            && (jobStatus.getFlow().equals(Flow.NORMAL) || jobStatus.getFlow().equals(Flow.APPROVED))) {
+
+                        return jobNotificationService.isNotified(job) ? Count.WARNING : Count.SUCCESS;
+
+                        //Identify unhealthy jobs.
+                    } else if (jobBuild.getPhase().equals(Phase.FINALIZED)
+                            && jobBuild.getStatus().equals(Status.SUCCESS)
+                            && (jobStatus.getFlow().equals(Flow.UNHEALTHY) || jobStatus.getFlow().equals(Flow.DISAPPROVED) || jobStatus.getFlow().equals(Flow.BLOCKED))) {
+
+                        return Count.FAILURE;
+
+                        //Identify failure jobs.
+                    } else if (jobBuild.getStatus().equals(Status.FAILURE)
+                            || jobBuild.getStatus().equals(Status.ABORTED)
+                            || jobStatus.getFlow().equals(Flow.ERROR)) {
+
+                        return Count.FAILURE;
+
+                        //Identify warning jobs.
+                    } else if (jobNotificationService.isNotified(job)) {
+                        return Count.WARNING;
+                    }
+                }
+            }
+        }
+
+        return Count.WAITING;
+    }
+
+    /**
+     * Job classification, NONE are the jobs left out of the total.
+     */
+    private enum Count {
+        WAITING, BUILDING, SUCCESS, WARNING, FAILURE, NONE
+    }
+
+    /**
+     * Job classification and subject counters.
+     */
+    private static class Counters {
+
+        private final Map<Long, Count> count = new HashMap();
+        private final Map<Long, Set<Long>> subjects = new HashMap();
+        private final Set<Long> restricted = new HashSet();
+        private final Map<Long, int[]> counter = new HashMap();
+        private Set<Long> changed;
+        private int rebuilding;
+
+        /**
+         * Set the classification of a job, moving it between counters.
+         *
+         * @param job Job ID.
+         * @param classification Count.
+         * @param subject Subject ID set.
+         * @param time Identify if the job has a time restriction.
+         */
+        synchronized void put(Long job, Count classification, Set<Long> subject, boolean time) {
+            this.remove(job);
+
+            count.put(job, classification);
+            subjects.put(job, subject);
+
+            if (time) {
+                restricted.add(job);
+            }
+
+            subject.forEach(id -> counter.computeIfAbsent(id, x -> new int[Count.values().length])[classification.ordinal()]++);
+        }
+
+        /**
+         * Remove a job from the counters.
+         *
+         * @param job Job ID.
+         */
+        synchronized void remove(Long job) {
+            if (changed != null) {
+                changed.add(job);
+            }
+
+            Count classification = count.remove(job);
+            Set<Long> subject = subjects.remove(job);
+
+            restricted.remove(job);
+
+            if (classification != null) {
+                subject.forEach(id -> counter.get(id)[classification.ordinal()]--);
+            }
+        }
+
+        /**
+         * Get the counters of a subject.
+         *
+         * @param subject Subject ID.
+         * @return Counters by classification.
+         */
+        synchronized int[] get(Long subject) {
+            int[] value = counter.get(subject);
+
+            return value == null ? new int[Count.values().length] : value.clone();
+        }
+
+        /**
+         * Get the jobs with a time restriction.
+         *
+         * @return Job ID list.
+         */
+        synchronized List<Long> getRestricted() {
+            return new ArrayList(restricted);
+        }
+
+        /**
+         * Start tracking the jobs updated until the next replace.
+         */
+        synchronized void rebuild() {
+            if (changed == null) {
+                changed = new HashSet();
+            }
+
+            rebuilding++;
+        }
+
+        /**
+         * Stop tracking the jobs updated after a failed rebuild.
+         */
+        synchronized void release() {
+            if (changed != null && --rebuilding == 0) {
+                changed = null;
+            }
+        }
+
+        /**
+         * Replace every counter, keeping the jobs updated since the rebuild
+         * started.
+         *
+         * @param other Counters.
+         * @return Count of subjects whose counters changed.
+         */
+        synchronized int replace(Counters other) {
+            int drift = 0;
+
+            if (changed != null) {
+                for (Long job : changed) {
+                    if (count.containsKey(job)) {
+                        other.put(job, count.get(job), subjects.get(job), restricted.contains(job));
+                    } else {
+                        other.remove(job);
+                    }
+                }
+
+            }
+
+            this.release();
+
+            Set<Long> subject = new HashSet(counter.keySet());
+            subject.addAll(other.counter.keySet());
+
+            for (Long id : subject) {
+                if (!Arrays.equals(
+                        counter.getOrDefault(id, new int[Count.values().length]),
+                        other.counter.getOrDefault(id, new int[Count.values().length]))) {
+                    drift++;
+                }
+            }
+
+            count.clear();
+            count.putAll(other.count);
+            subjects.clear();
+            subjects.putAll(other.subjects);
+            restricted.clear();
+            restricted.addAll(other.restricted);
+            counter.clear();
+            counter.putAll(other.counter);
+
+            return drift;
+        }
+    }
 }
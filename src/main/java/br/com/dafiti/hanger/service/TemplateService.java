@@ -25,7 +25,12 @@ package br.com.dafiti.hanger.service;
 
 import br.com.dafiti.hanger.model.Template;
 import br.com.dafiti.hanger.repository.TemplateRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -46,10 +51,16 @@ import org.springframework.stereotype.Service;
 public class TemplateService {
 
     private final TemplateRepository templateRepository;
+    private final Cache<String, CompiledTemplate> compiled;
+
+    private static final Pattern PARAMETER = Pattern.compile("\\$\\{\\{(.*?(::\\{.*?\\})?)\\}\\}");
 
     @Autowired
     public TemplateService(TemplateRepository templateRepository) {
         this.templateRepository = templateRepository;
+        this.compiled = Caffeine.newBuilder()
+                .maximumSize(1000)
+                .build();
     }
 
     @Cacheable(value = "templates")
@@ -80,45 +91,7 @@ public class TemplateService {
      * @return Template parameters and type list.
      */
     public Map<String, Map<String, String>> getParameters(String template) {
-        Map<String, Map<String, String>> parameter = new HashMap();
-        Matcher m = Pattern.compile("\\$\\{\\{(.*?(::\\{.*?\\})?)\\}\\}").matcher(template);
-
-        while (m.find()) {
-            String name = m.group(1);
-
-            if (!parameter.containsKey(name)) {
-                Map<String, String> attributes = new HashMap();
-                String[] split = name.split("::");
-
-                attributes.put("name", split[0]);
-
-                if (split.length == 2) {
-                    String type;
-                    String defaultValue;
-
-                    try {
-                        JSONObject object = new JSONObject(split[1]);
-                        type = object.optString("type", "text");
-                        defaultValue = String.valueOf(object.opt("default"));
-                    } catch (JSONException ex) {
-                        type = "text";
-                        defaultValue = "";
-                    }
-
-                    attributes.put("type", type);
-                    attributes.put("default", defaultValue);
-
-                    parameter.put(name, attributes);
-                } else {
-                    attributes.put("type", "text");
-                    attributes.put("default", "");
-
-                    parameter.put(name, attributes);
-                }
-            }
-        }
-
-        return parameter;
+        return new HashMap(this.compile(template).getParameter());
     }
 
     /**
@@ -132,18 +105,167 @@ public class TemplateService {
         if (parameters != null
                 && !parameters.isEmpty()) {
 
+            Map<String, String> values = new HashMap();
+
             for (Object parameter : parameters) {
                 JSONObject object = (JSONObject) parameter;
-                template = template.replaceAll(
-                        "\\$\\{\\{"
-                                .concat(object.getString("name")
-                                        .replace("{", "\\{")
-                                        .replace("}", "\\}")).concat("\\}\\}"),
-                        object.getString("value")
-                );
+                values.put(object.getString("name"), object.getString("value"));
             }
+
+            template = this.setParameters(template, values);
         }
 
         return template;
     }
+
+    /**
+     * Replace dynamic template parameters.
+     *
+     * @param template Template
+     * @param values Value of each parameter, by parameter name.
+     * @return Template final
+     */
+    public String setParameters(String template, Map<String, String> values) {
+        if (values != null
+                && !values.isEmpty()) {
+
+            template = this.compile(template).render(values);
+        }
+
+        return template;
+    }
+
+    /**
+     * Parse a template once into literal and parameter segments.
+     *
+     * @param template Template
+     * @return Compiled template
+     */
+    private CompiledTemplate compile(String template) {
+        return compiled.get(template, CompiledTemplate::new);
+    }
+
+    /**
+     * Represents a template parsed into literal and parameter segments.
+     */
+    private static class CompiledTemplate {
+
+        private final String template;
+        private final int[] start;
+        private final int[] end;
+        private final String[] name;
+        private final Map<String, Map<String, String>> parameter;
+
+        CompiledTemplate(String template) {
+            List<int[]> bounds = new ArrayList();
+            List<String> names = new ArrayList();
+            Map<String, Map<String, String>> parameters = new HashMap();
+            Matcher m = PARAMETER.matcher(template);
+
+            while (m.find()) {
+                String key = m.group(1);
+
+                bounds.add(new int[]{m.start(), m.end()});
+                names.add(key);
+
+                if (!parameters.containsKey(key)) {
+                    parameters.put(key, Collections.unmodifiableMap(this.getAttributes(key)));
+                }
+            }
+
+            this.template = template;
+            this.start = new int[bounds.size()];
+            this.end = new int[bounds.size()];
+            this.name = names.toArray(new String[0]);
+            this.parameter = Collections.unmodifiableMap(parameters);
+
+            for (int i = 0; i < bounds.size(); i++) {
+                this.start[i] = bounds.get(i)[0];
+                this.end[i] = bounds.get(i)[1];
+            }
+        }
+
+        /**
+         * Extract the parameter attributes.
+         *
+         * @param key Parameter with metadata.
+         * @return Parameter name, type and default value.
+         */
+        private Map<String, String> getAttributes(String key) {
+            Map<String, String> attributes = new HashMap();
+            String[] split = key.split("::");
+
+            attributes.put("name", split[0]);
+
+            if (split.length == 2) {
+                String type;
+                String defaultValue;
+
+                try {
+                    JSONObject object = new JSONObject(split[1]);
+                    type = object.optString("type", "text");
+                    defaultValue = String.valueOf(object.opt("default"));
+                } catch (JSONException ex) {
+                    type = "text";
+                    defaultValue = "";
+                }
+
+                attributes.put("type", type);
+                attributes.put("default", defaultValue);
+            } else {
+                attributes.put("type", "text");
+                attributes.put("default", "");
+            }
+
+            return attributes;
+        }
+
+        public Map<String, Map<String, String>> getParameter() {
+            return parameter;
+        }
+
+        /**
+         * Render the template in a single pass.
+         *
+         * @param values Value of each parameter, by parameter name.
+         * @return Template final
+         */
+        public String render(Map<String, String> values) {
+            if (name.length == 0) {
+                return template;
+            }
+
+            int position = 0;
+            int capacity = template.length();
+            String[] value = new String[name.length];
+
+            //Resolves the values and the final size.
+            for (int i = 0; i < name.length; i++) {
+                value[i] = values.get(name[i]);
+
+                if (value[i] != null) {
+                    capacity += value[i].length() - (end[i] - start[i]);
+                }
+            }
+
+            StringBuilder builder = new StringBuilder(Math.max(capacity, 16));
+
+            //Copies literals and replaces parameters.
+            for (int i = 0; i < name.length; i++) {
+                builder.append(template, position, start[i]);
+
+                if (value[i] == null) {
+                    builder.append(template, start[i], end[i]);
+                } else {
+                    builder.append(value[i]);
+                }
+
+                position = end[i];
+            }
+
+            builder.append(template, position, template.length());
+
+            return builder.toString();
+        }
+    }
 }
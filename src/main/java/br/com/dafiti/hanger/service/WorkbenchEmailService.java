@@ -29,13 +29,26 @@ import br.com.dafiti.hanger.model.WorkbenchEmail;
 import br.com.dafiti.hanger.model.User;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.security.Principal;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
+import org.apache.commons.mail.EmailException;
 import org.apache.commons.mail.HtmlEmail;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import br.com.dafiti.hanger.repository.WorkbenchEmailRepository;
 import org.apache.commons.lang.StringUtils;
@@ -43,6 +56,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.Logger;
 import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
 /**
  *
@@ -52,30 +66,70 @@ import org.springframework.scheduling.annotation.Async;
 @Service
 public class WorkbenchEmailService {
 
-    private final ConnectionService connectionService;
     private final MailService mailService;
     private final WorkbenchEmailRepository workbenchEmailRepository;
     private final UserService userService;
     private final ExportService exportService;
     private final ConfigurationService configurationService;
-    
+    private final ThreadPoolExecutor queryExecutor;
+    private final ThreadPoolExecutor mailExecutor;
+    private final int retry;
+    private final boolean zip;
+    private final long limit;
+    private final String link;
+    private final long linkTtl;
+
+    private static final int PREVIEW = 31;
     private static final Logger LOG = LogManager.getLogger(WorkbenchEmailService.class.getName());
 
     @Autowired
     public WorkbenchEmailService(
-            ConnectionService connectionService,
             WorkbenchEmailRepository workbenchEmailRepository,
             MailService mailService,
             UserService userService,
             ExportService exportService,
-            ConfigurationService configurationService) {
+            ConfigurationService configurationService,
+            @Value("${hanger.email.max.query:2}") int maxQuery,
+            @Value("${hanger.email.max.smtp:4}") int maxSmtp,
+            @Value("${hanger.email.retry:3}") int retry,
+            @Value("${hanger.email.attachment.format:gzip}") String format,
+            @Value("${hanger.email.attachment.max:10485760}") long limit,
+            @Value("${hanger.email.attachment.link:}") String link,
+            @Value("${hanger.email.attachment.link.ttl:604800}") long linkTtl) {
 
-        this.connectionService = connectionService;
         this.workbenchEmailRepository = workbenchEmailRepository;
         this.mailService = mailService;
         this.userService = userService;
         this.exportService = exportService;
         this.configurationService = configurationService;
+        this.retry = Math.max(retry, 1);
+        this.zip = format.equalsIgnoreCase("zip");
+        this.limit = limit;
+        this.link = StringUtils.removeEnd(link.trim(), "/");
+        this.linkTtl = linkTtl;
+        this.queryExecutor = new ThreadPoolExecutor(
+                maxQuery,
+                maxQuery,
+                60L,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue(),
+                new CustomizableThreadFactory("hanger_email_query_"));
+        this.mailExecutor = new ThreadPoolExecutor(
+                maxSmtp,
+                maxSmtp,
+                60L,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue(),
+                new CustomizableThreadFactory("hanger_email_smtp_"));
+    }
+
+    /**
+     * Stop the e-mail executors.
+     */
+    @PreDestroy
+    public void shutdown() {
+        queryExecutor.shutdownNow();
+        mailExecutor.shutdownNow();
     }
 
     /**
@@ -150,42 +204,18 @@ public class WorkbenchEmailService {
             throws IOException, Exception {
         boolean sent = false;
 
-        //Get User object from logged user.
-        //User user = userService.findByUsername(principal.getName());
-        ConnectionService.QueryResultSet queryResultSet = this.connectionService
-                .getQueryResultSet(
-                        email.getConnection(),
-                        email.getQuery(),
-                        user);
-
-        if (!queryResultSet.hasError()) {
-            String fileName = exportService.toCSV(queryResultSet, email.getConnection());
-
-            File file = new File(System.getProperty("java.io.tmpdir")
-                    .concat("/")
-                    .concat(fileName));
-
-            Blueprint blueprint = new Blueprint(email.getSubject(), "exportQuery");
-            blueprint.setFile(file);
-            blueprint.addVariable("query", email.getQuery());
-            blueprint.addVariable("connection", email.getConnection());
-            blueprint.addVariable("content", email.getContent());
-            blueprint.addVariable("queryResultSet", queryResultSet);
-            blueprint.addVariable("subject", email.getSubject());
-            blueprint.addVariable("user", user.getEmail());
-
-            HtmlEmail mail = new HtmlEmail();
-
-            if (email.getAllRecipients().size() > 0) {
-                for (String recipient : email.getAllRecipients()) {
-                    mail.addBcc(recipient);
-                }
-            }
+        try {
+            ExportService.Attachment attachment = this.attach(email, user);
+            String url = this.publish(attachment, user);
 
-            sent = this.mailService.send(blueprint, mail, log);
+            sent = this.deliver(email, user, log, attachment, url, 1);
 
-            //Delete temp file.
-            Files.deleteIfExists(file.toPath());
+            //Delete temp files.
+            if (url == null) {
+                attachment.delete();
+            }
+        } catch (SQLException ex) {
+            LOG.log(Level.ERROR, "Fail running query of e-mail " + email.getSubject(), ex);
         }
 
         return sent;
@@ -207,9 +237,7 @@ public class WorkbenchEmailService {
                 if (!email.isEmpty()) {
                     User user = userService.findByEmail(email);
                     if (user != null) {
-                        for (WorkbenchEmail workBenchEmail : job.getEmail()) {
-                            this.toEmail(workBenchEmail, user, job.getName());
-                        }
+                        this.toEmail(job.getEmail(), user, job.getName()).join();
                     }
                 }
             } catch (Exception ex) {
@@ -218,6 +246,234 @@ public class WorkbenchEmailService {
         }
     }
 
+    /**
+     * Send a set of e-mails.
+     *
+     * E-mails sharing a connection and query run it once and share its
+     * attachment. Queries and deliveries run in parallel, each one limited by
+     * its own executor, and each delivery is retried on failure.
+     *
+     * @param emails E-mails.
+     * @param user User
+     * @param log Extra log information.
+     * @return Future completed when every e-mail was handled.
+     */
+    public CompletableFuture<Void> toEmail(
+            Collection<WorkbenchEmail> emails,
+            User user,
+            String log) {
+
+        Map<String, List<WorkbenchEmail>> groups = emails
+                .stream()
+                .collect(Collectors.groupingBy(
+                        x -> x.getConnection().getId() + ":" + QueryCacheService.normalize(x.getQuery()),
+                        LinkedHashMap::new,
+                        Collectors.toList()));
+
+        List<CompletableFuture<Void>> delivery = new ArrayList();
+
+        groups.values().forEach(group -> {
+            WorkbenchEmail first = group.get(0);
+
+            delivery.add(CompletableFuture
+                    .supplyAsync(() -> {
+                        try {
+                            return this.attach(first, user);
+                        } catch (SQLException | IOException ex) {
+                            throw new CompletionException(ex);
+                        }
+                    }, queryExecutor)
+                    .thenCompose(attachment -> {
+                        String url = this.publish(attachment, user);
+
+                        return CompletableFuture
+                                .allOf(group
+                                        .stream()
+                                        .map(email -> CompletableFuture.runAsync(
+                                        () -> this.deliver(email, user, log, attachment, url, retry),
+                                        mailExecutor))
+                                        .toArray(CompletableFuture[]::new))
+                                .whenComplete((result, ex) -> {
+                                    //A published attachment is removed when it expires.
+                                    if (url == null) {
+                                        attachment.delete();
+                                    }
+                                });
+                    })
+                    .exceptionally(ex -> {
+                        LOG.log(Level.ERROR, "Fail sending e-mails " + this.getSubjects(group), ex);
+                        return null;
+                    }));
+        });
+
+        return CompletableFuture.allOf(delivery.toArray(new CompletableFuture[delivery.size()]));
+    }
+
+    /**
+     * Run the query of an e-mail writing it as compressed attachment parts.
+     *
+     * When a download link is configured the resultset is kept in a single
+     * file, otherwise it is split in parts within the attachment size limit.
+     *
+     * @param email WorkbenchEmail
+     * @param user User
+     * @return Attachment.
+     * @throws SQLException
+     * @throws IOException
+     */
+    private ExportService.Attachment attach(WorkbenchEmail email, User user)
+            throws SQLException, IOException {
+
+        String name = email.getSubject().replaceAll("[^A-Za-z0-9_ -]", "").trim();
+
+        return exportService.toAttachment(
+                email.getConnection(),
+                email.getQuery(),
+                user,
+                name.isEmpty() ? "resultset" : name,
+                zip,
+                link.isEmpty() ? limit : 0,
+                PREVIEW);
+    }
+
+    /**
+     * Publish an attachment over the size limit as a download link.
+     *
+     * @param attachment Attachment.
+     * @param user User
+     * @return Download link or null when the attachment should be sent.
+     */
+    private String publish(ExportService.Attachment attachment, User user) {
+        if (link.isEmpty()
+                || attachment.getParts().isEmpty()
+                || attachment.getSize() <= limit) {
+            return null;
+        }
+
+        return link
+                .concat("/export/download/")
+                .concat(exportService.publish(
+                        attachment.getParts().get(0),
+                        attachment.getExtension(),
+                        user,
+                        attachment.getRows(),
+                        linkTtl).getId());
+    }
+
+    /**
+     * Send an e-mail, one for each attachment part, retrying when it fails.
+     *
+     * @param email WorkbenchEmail
+     * @param user User
+     * @param log Extra log information.
+     * @param attachment Attachment.
+     * @param url Download link, null when the parts are attached.
+     * @param attempts Attempts for each part.
+     * @return Identifies if every part was sent.
+     */
+    private boolean deliver(
+            WorkbenchEmail email,
+            User user,
+            String log,
+            ExportService.Attachment attachment,
+            String url,
+            int attempts) {
+
+        List<File> parts = url == null ? attachment.getParts() : Collections.emptyList();
+
+        for (int part = 1; part <= Math.max(parts.size(), 1); part++) {
+            File file = parts.isEmpty() ? null : parts.get(part - 1);
+            boolean sent = false;
+
+            for (int attempt = 1; attempt <= attempts && !sent; attempt++) {
+                try {
+                    sent = this.send(email, user, log, attachment.getPreview(), file, url, part, parts.size());
+                } catch (Exception ex) {
+                    LOG.log(Level.ERROR, "Fail sending e-mail " + email.getSubject(), ex);
+                }
+
+                if (!sent && attempt < attempts) {
+                    try {
+                        //Waits a little longer after each attempt.
+                        Thread.sleep(attempt * 5000L);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                }
+            }
+
+            if (!sent) {
+                LOG.log(Level.ERROR, "E-mail {} not sent after {} attempts", new Object[]{email.getSubject(), attempts});
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Render and send an e-mail.
+     *
+     * @param email WorkbenchEmail
+     * @param user User
+     * @param log Extra log information.
+     * @param queryResultSet Query resultset preview.
+     * @param file Attachment, null when there is none.
+     * @param url Download link, null when there is none.
+     * @param part Attachment part.
+     * @param parts Attachment part count.
+     * @return Identifies if it was sent sucessfully.
+     * @throws EmailException
+     */
+    private boolean send(
+            WorkbenchEmail email,
+            User user,
+            String log,
+            ConnectionService.QueryResultSet queryResultSet,
+            File file,
+            String url,
+            int part,
+            int parts) throws EmailException {
+
+        Blueprint blueprint = new Blueprint(
+                parts > 1 ? email.getSubject() + " (" + part + "/" + parts + ")" : email.getSubject(),
+                "exportQuery");
+        blueprint.setFile(file);
+        blueprint.addVariable("link", url);
+        blueprint.addVariable("part", part);
+        blueprint.addVariable("parts", parts);
+        blueprint.addVariable("query", email.getQuery());
+        blueprint.addVariable("connection", email.getConnection());
+        blueprint.addVariable("content", email.getContent());
+        blueprint.addVariable("queryResultSet", queryResultSet);
+        blueprint.addVariable("subject", email.getSubject());
+        blueprint.addVariable("user", user.getEmail());
+
+        HtmlEmail mail = new HtmlEmail();
+
+        if (email.getAllRecipients().size() > 0) {
+            for (String recipient : email.getAllRecipients()) {
+                mail.addBcc(recipient);
+            }
+        }
+
+        return this.mailService.send(blueprint, mail, log);
+    }
+
+    /**
+     * Get the subjects of a set of e-mails.
+     *
+     * @param emails E-mails.
+     * @return Subjects.
+     */
+    private String getSubjects(List<WorkbenchEmail> emails) {
+        return emails
+                .stream()
+                .map(WorkbenchEmail::getSubject)
+                .collect(Collectors.joining(", "));
+    }
+
     /**
      * Check e-mail domain.
      *
@@ -38,12 +38,15 @@ import br.com.dafiti.hanger.repository.WorkbenchQueryRepository;
 public class WorkbenchQueryService {
 
     private final WorkbenchQueryRepository workbenchQueryRepository;
+    private final QueryCacheService queryCacheService;
 
     @Autowired
     public WorkbenchQueryService(
-            WorkbenchQueryRepository connectionRepository) {
+            WorkbenchQueryRepository connectionRepository,
+            QueryCacheService queryCacheService) {
 
         this.workbenchQueryRepository = connectionRepository;
+        this.queryCacheService = queryCacheService;
     }
 
     public Iterable<WorkbenchQuery> list() {
@@ -60,9 +63,11 @@ public class WorkbenchQueryService {
 
     public void save(WorkbenchQuery workbenchQuery) {
         workbenchQueryRepository.save(workbenchQuery);
+        queryCacheService.reload();
     }
 
     public void delete(Long id) {
         workbenchQueryRepository.deleteById(id);
+        queryCacheService.reload();
     }
 }
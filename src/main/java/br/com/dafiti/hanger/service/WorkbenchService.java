@@ -25,9 +25,11 @@ package br.com.dafiti.hanger.service;
 
 import br.com.dafiti.hanger.model.Connection;
 import br.com.dafiti.hanger.option.Database;
+import br.com.dafiti.hanger.service.CatalogService.TablePage;
 import java.util.ArrayList;
 import java.util.List;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 /**
@@ -37,16 +39,19 @@ import org.springframework.stereotype.Service;
 @Service
 public class WorkbenchService {
 
-    private final ConnectionService connectionService;
+    private final CatalogService catalogService;
     private final ConfigurationService configurationService;
+    private final int page;
 
     @Autowired
     public WorkbenchService(
-            ConnectionService connectionService,
-            ConfigurationService configurationService) {
+            CatalogService catalogService,
+            ConfigurationService configurationService,
+            @Value("${hanger.workbench.tree.page:500}") int page) {
 
-        this.connectionService = connectionService;
+        this.catalogService = catalogService;
         this.configurationService = configurationService;
+        this.page = page;
     }
 
     /**
@@ -64,6 +69,27 @@ public class WorkbenchService {
             String catalog,
             String schema) {
 
+        return JSTreeExchange(connection, catalog, schema, "", 0);
+    }
+
+    /**
+     * Identify if should load schema or table list.
+     *
+     * @param connection Connection
+     * @param catalog
+     * @param schema
+     * @param prefix Table name prefix.
+     * @param offset First table of the page.
+     *
+     * @return List Tree
+     */
+    public List<Tree> JSTreeExchange(
+            Connection connection,
+            String catalog,
+            String schema,
+            String prefix,
+            int offset) {
+
         List<Tree> tree = new ArrayList();
 
         //Whether catalog and schema are empty, get catalogs.
@@ -78,7 +104,7 @@ public class WorkbenchService {
 
         //Whether tree is empty, get tables.
         if (tree.isEmpty()) {
-            tree = JSTreeTableList(connection, catalog, schema);
+            tree = JSTreeTableList(connection, catalog, schema, prefix, offset);
         }
 
         return tree;
@@ -93,7 +119,7 @@ public class WorkbenchService {
     public List<Tree> JSTreeCatalogList(Connection connection) {
         List<Tree> tree = new ArrayList();
 
-        connectionService.getCatalogs(connection).forEach((catalogEntity) -> {
+        catalogService.getCatalogs(connection).forEach((catalogEntity) -> {
             tree.add(
                     new Tree(
                             catalogEntity.getCatalog(),
@@ -130,7 +156,7 @@ public class WorkbenchService {
 
         String parent = ((catalog == null) || (catalog.isEmpty())) ? "#" : catalog;
 
-        connectionService.getSchemas(connection).forEach((schemaEntity) -> {
+        catalogService.getSchemas(connection).forEach((schemaEntity) -> {
             tree.add(
                     new Tree(
                             schemaEntity.getSchema(),
@@ -161,9 +187,32 @@ public class WorkbenchService {
             String catalog,
             String schema) {
 
+        return JSTreeTableList(connection, catalog, schema, "", 0);
+    }
+
+    /**
+     * Table name list page, ended by a node loading the next page when
+     * there are more tables.
+     *
+     * @param connection Connection
+     * @param catalog Catalog
+     * @param schema Schema
+     * @param prefix Table name prefix.
+     * @param offset First table of the page.
+     * @return Table list
+     */
+    public List<Tree> JSTreeTableList(
+            Connection connection,
+            String catalog,
+            String schema,
+            String prefix,
+            int offset) {
+
         List tree = new ArrayList();
+        TablePage tables = catalogService.getTables(connection, catalog, schema, prefix, offset, page);
+        String parent = ((schema == null) || (schema.isEmpty()) || "null".equals(schema)) ? catalog : schema;
 
-        connectionService.getTables(connection, catalog, schema).forEach((tableEntity) -> {
+        tables.getTable().forEach((tableEntity) -> {
             tree.add(
                     new Tree(
                             tableEntity.getTable(),
@@ -181,6 +230,25 @@ public class WorkbenchService {
             );
         });
 
+        if (tables.hasMore()) {
+            int next = offset + tables.getTable().size();
+            TreeAttribute attribute = new TreeAttribute(catalog, schema);
+
+            attribute.setPrefix(prefix);
+            attribute.setOffset(next);
+
+            tree.add(
+                    new Tree(
+                            parent + "#" + prefix + "#" + next,
+                            "Load more (" + (tables.getTotal() - next) + ")",
+                            parent,
+                            "glyphicon glyphicon-option-horizontal",
+                            false,
+                            attribute
+                    )
+            );
+        }
+
         return tree;
     }
 
@@ -329,6 +397,8 @@ public class WorkbenchService {
         String schema;
         String table;
         Database target;
+        String prefix;
+        Integer offset;
 
         public TreeAttribute(String catalog) {
             this.catalog = catalog;
@@ -377,5 +447,21 @@ public class WorkbenchService {
         public void setTarget(Database target) {
             this.target = target;
         }
+
+        public String getPrefix() {
+            return prefix;
+        }
+
+        public void setPrefix(String prefix) {
+            this.prefix = prefix;
+        }
+
+        public Integer getOffset() {
+            return offset;
+        }
+
+        public void setOffset(Integer offset) {
+            this.offset = offset;
+        }
     }
 }